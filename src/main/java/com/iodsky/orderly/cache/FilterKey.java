@@ -0,0 +1,32 @@
+package com.iodsky.orderly.cache;
+
+import com.iodsky.orderly.request.ProductFilter;
+import org.springframework.util.StringUtils;
+
+import java.math.BigDecimal;
+
+/*
+    Cache key form of a ProductFilter: filters that select the same rows produce equal keys.
+    Blank values are ignored by the listing query, and prices compare numerically.
+ */
+public record FilterKey(String name, String category, String brand, BigDecimal minPrice,
+                        BigDecimal maxPrice, boolean inStock) {
+
+    public static FilterKey of(ProductFilter filter) {
+        return new FilterKey(
+                normalize(filter.getName()),
+                normalize(filter.getCategory()),
+                normalize(filter.getBrand()),
+                normalize(filter.getMinPrice()),
+                normalize(filter.getMaxPrice()),
+                filter.isInStock());
+    }
+
+    private static String normalize(String value) {
+        return StringUtils.hasText(value) ? value : null;
+    }
+
+    private static BigDecimal normalize(BigDecimal value) {
+        return value != null ? value.stripTrailingZeros() : null;
+    }
+}
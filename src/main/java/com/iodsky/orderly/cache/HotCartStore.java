@@ -0,0 +1,390 @@
+package com.iodsky.orderly.cache;
+
+import com.iodsky.orderly.event.OrderPlacedEvent;
+import com.iodsky.orderly.model.Money;
+import com.iodsky.orderly.model.Product;
+import com.iodsky.orderly.repository.CartBatchWriter;
+import com.iodsky.orderly.repository.CartRepository;
+import com.iodsky.orderly.repository.CartRepository.CartLineView;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/*
+    Optional in-memory tier for active carts with write-behind to carts/cart_items.
+    -------------------------------------------------------------------------------
+    - Enabled with orderly.cart.write-behind.enabled; CartService uses the database directly otherwise.
+    - Carts are keyed by user id and loaded from the database on a miss. Operations on one
+      cart are serialized on that cart; different carts never contend.
+    - Changed lines are marked dirty and written in one batch for all carts every flush
+      interval and on shutdown. Several changes to a line between flushes cost one write.
+      Writes of one cart are serialized on that cart's write lock; the periodic flush passes
+      over a cart whose lock is taken, as its owner is writing it already.
+    - A failed write keeps the lines dirty, so they are retried on the next flush.
+    - Cart compaction skips the carts held here. Should a cart row still be gone when its
+      lines are written, the cart is created again and all of its lines are written to it.
+    - Checkout flushes and evicts the user's cart before its transaction starts, so it reads
+      what the user sees without holding a connection while it waits for the write.
+      A copy loaded while the checkout was running still holds the ordered items once the
+      order commits. Those lines are dropped from it and their removal is written with the
+      next flush, which also deletes any line an in-flight write put back.
+    - Clean carts idle for longer than the idle timeout are dropped.
+    A user without a cart is held as an empty cart without id; the first add creates the cart.
+ */
+@Component
+public class HotCartStore {
+
+    private final Logger logger = LoggerFactory.getLogger(HotCartStore.class);
+
+    private final boolean enabled;
+    private final long idleTimeoutNanos;
+    private final CartBatchWriter cartBatchWriter;
+    private final CartRepository cartRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Map<UUID, HotCart> carts = new ConcurrentHashMap<>();
+
+    public HotCartStore(@Value("${orderly.cart.write-behind.enabled}") boolean enabled,
+                        @Value("${orderly.cart.write-behind.idle-timeout}") Duration idleTimeout,
+                        CartBatchWriter cartBatchWriter,
+                        CartRepository cartRepository,
+                        PlatformTransactionManager transactionManager,
+                        MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.idleTimeoutNanos = idleTimeout.toNanos();
+        this.cartBatchWriter = cartBatchWriter;
+        this.cartRepository = cartRepository;
+        // Writes never join the caller's transaction: a rolled back checkout must not undo a flush.
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+        meterRegistry.gaugeMapSize("orderly.carts.hot", Tags.empty(), carts);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Runs the action on the user's cart while holding it, loading the cart's lines on a miss.
+    public <T> T withCart(UUID userId, Supplier<List<CartLineView>> loader, Function<HotCart, T> action) {
+        while (true) {
+            HotCart cart = carts.get(userId);
+            if (cart == null) {
+                HotCart loaded = new HotCart(userId, loader.get());
+                cart = carts.putIfAbsent(userId, loaded);
+                cart = cart != null ? cart : loaded;
+            }
+
+            synchronized (cart) {
+                // Evicted between the lookup and the lock; the next lookup loads a fresh copy.
+                if (!cart.evicted) {
+                    cart.touchedAt = System.nanoTime();
+                    return action.apply(cart);
+                }
+            }
+        }
+    }
+
+    // Ids of the carts held here, which may have lines not written yet.
+    public Set<UUID> heldCartIds() {
+        Set<UUID> ids = new HashSet<>();
+        for (HotCart cart : carts.values()) {
+            synchronized (cart) {
+                if (cart.cartId != null) {
+                    ids.add(cart.cartId);
+                }
+            }
+        }
+        return ids;
+    }
+
+    @Scheduled(fixedDelayString = "${orderly.cart.write-behind.flush-interval}")
+    public void flush() {
+        if (!enabled) {
+            return;
+        }
+
+        List<HotCart> locked = new ArrayList<>();
+        for (HotCart cart : carts.values()) {
+            if (cart.writeLock.tryLock()) {
+                locked.add(cart);
+            }
+        }
+        try {
+            write(locked);
+            evictIdle();
+        } catch (RuntimeException ex) {
+            logger.warn("Flushing carts failed, retrying on the next flush", ex);
+        } finally {
+            locked.forEach(cart -> cart.writeLock.unlock());
+        }
+    }
+
+    /*
+        Writes the user's pending changes and drops the cart, failing if the write fails.
+        Call it outside of any transaction: the write takes a connection of its own, and waits
+        for a periodic flush that is writing this cart.
+     */
+    public void flushAndEvict(UUID userId) {
+        HotCart cart = carts.get(userId);
+        if (cart == null) {
+            return;
+        }
+
+        cart.writeLock.lock();
+        try {
+            synchronized (cart) {
+                write(List.of(cart));
+                cart.evicted = true;
+                carts.remove(userId, cart);
+            }
+        } finally {
+            cart.writeLock.unlock();
+        }
+    }
+
+    // Runs within the order's commit, so it neither writes nor waits for a write; see the class comment.
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrderPlaced(OrderPlacedEvent event) {
+        HotCart cart = carts.get(event.userId());
+        if (cart == null) {
+            return;
+        }
+
+        synchronized (cart) {
+            if (cart.cartId == null) {
+                return;
+            }
+            for (UUID productId : event.productIds()) {
+                cart.lines.remove(productId);
+                cart.dirty.add(productId);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    // The caller holds the write locks of the targets.
+    private void write(Collection<HotCart> targets) {
+        Map<HotCart, Set<UUID>> drained = new IdentityHashMap<>();
+        List<CartBatchWriter.Line> lines = new ArrayList<>();
+        List<CartBatchWriter.Removal> removals = new ArrayList<>();
+
+        for (HotCart cart : targets) {
+            synchronized (cart) {
+                if (cart.dirty.isEmpty()) {
+                    continue;
+                }
+                for (UUID productId : cart.dirty) {
+                    Line line = cart.lines.get(productId);
+                    if (line != null) {
+                        lines.add(new CartBatchWriter.Line(line.itemId(), cart.cartId, productId,
+                                line.quantity(), line.unitPrice()));
+                    } else {
+                        removals.add(new CartBatchWriter.Removal(cart.cartId, productId));
+                    }
+                }
+                drained.put(cart, Set.copyOf(cart.dirty));
+                cart.dirty.clear();
+            }
+        }
+
+        if (drained.isEmpty()) {
+            return;
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                Set<UUID> missingCarts = cartBatchWriter.write(lines, removals);
+                if (!missingCarts.isEmpty()) {
+                    recreate(drained.keySet(), missingCarts);
+                }
+            });
+        } catch (RuntimeException ex) {
+            drained.forEach((cart, products) -> {
+                synchronized (cart) {
+                    cart.dirty.addAll(products);
+                }
+            });
+            throw ex;
+        }
+    }
+
+    /*
+        The cart rows were deleted while the carts were held, so none of their lines is in the
+        database. Each cart is created again (or the user's cart is taken, if another instance
+        created one) and all of its lines are written to it, in the same transaction.
+     */
+    private void recreate(Collection<HotCart> targets, Set<UUID> missingCarts) {
+        List<CartBatchWriter.Line> lines = new ArrayList<>();
+        for (HotCart cart : targets) {
+            synchronized (cart) {
+                if (!missingCarts.contains(cart.cartId)) {
+                    continue;
+                }
+                logger.warn("Cart {} of user {} was deleted while held in memory, creating it again",
+                        cart.cartId, cart.userId);
+                cartRepository.insertIfAbsent(UUID.randomUUID(), cart.userId);
+                cart.rebind(cartRepository.findIdByUserId(cart.userId).orElseThrow());
+                for (Line line : cart.lines.values()) {
+                    lines.add(new CartBatchWriter.Line(line.itemId(), cart.cartId, line.productId(),
+                            line.quantity(), line.unitPrice()));
+                }
+            }
+        }
+
+        if (!cartBatchWriter.write(lines, List.of()).isEmpty()) {
+            throw new IllegalStateException("Recreated carts were deleted again before their lines were written");
+        }
+    }
+
+    private void evictIdle() {
+        long now = System.nanoTime();
+        carts.values().removeIf(cart -> {
+            synchronized (cart) {
+                if (cart.dirty.isEmpty() && now - cart.touchedAt > idleTimeoutNanos) {
+                    cart.evicted = true;
+                }
+                return cart.evicted;
+            }
+        });
+    }
+
+    public record Line(UUID cartId, UUID itemId, UUID productId, String productName, int quantity,
+                       Money unitPrice) implements CartLineView {
+
+        public UUID getCartId() {
+            return cartId;
+        }
+
+        public UUID getItemId() {
+            return itemId;
+        }
+
+        public UUID getProductId() {
+            return productId;
+        }
+
+        public String getProductName() {
+            return productName;
+        }
+
+        public Integer getQuantity() {
+            return quantity;
+        }
+
+        public Money getUnitPrice() {
+            return unitPrice;
+        }
+    }
+
+    // Only accessed through withCart, which holds the cart's lock.
+    public static final class HotCart {
+        private final UUID userId;
+        private UUID cartId;
+        private final Map<UUID, Line> lines = new LinkedHashMap<>();
+        private final Set<UUID> dirty = new HashSet<>();
+        private final ReentrantLock writeLock = new ReentrantLock();
+        private long touchedAt;
+        private boolean evicted;
+
+        private HotCart(UUID userId, List<CartLineView> rows) {
+            this.userId = userId;
+            this.cartId = rows.isEmpty() ? null : rows.getFirst().getCartId();
+            for (CartLineView row : rows) {
+                if (row.getItemId() != null) {
+                    lines.put(row.getProductId(), new Line(cartId, row.getItemId(), row.getProductId(),
+                            row.getProductName(), row.getQuantity(), row.getUnitPrice()));
+                }
+            }
+        }
+
+        public Optional<Line> get(UUID productId) {
+            return Optional.ofNullable(lines.get(productId));
+        }
+
+        // Adding to an existing line keeps its unit price, as in the database.
+        public Line add(Product product, int quantity, Supplier<UUID> createCart) {
+            if (cartId == null) {
+                cartId = createCart.get();
+            }
+
+            Line line = lines.get(product.getId());
+            if (line == null) {
+                return put(new Line(cartId, UUID.randomUUID(), product.getId(), product.getName(), quantity,
+                        product.getPrice()));
+            }
+            return put(withQuantity(line, line.quantity() + quantity));
+        }
+
+        public Optional<Line> setQuantity(UUID productId, int quantity) {
+            if (quantity <= 0) {
+                return remove(productId);
+            }
+            return get(productId).map(line -> put(withQuantity(line, quantity)));
+        }
+
+        public Optional<Line> remove(UUID productId) {
+            Line line = lines.remove(productId);
+            if (line != null) {
+                dirty.add(productId);
+            }
+            return Optional.ofNullable(line);
+        }
+
+        // Lines in the shape of CartRepository.findLinesByUserId, a lone item-less row for an empty cart.
+        public List<CartLineView> lines() {
+            if (cartId == null) {
+                return List.of();
+            }
+            if (lines.isEmpty()) {
+                return List.of(new Line(cartId, null, null, null, 0, null));
+            }
+            return List.copyOf(lines.values());
+        }
+
+        private void rebind(UUID cartId) {
+            this.cartId = cartId;
+            lines.replaceAll((productId, line) -> new Line(cartId, line.itemId(), productId, line.productName(),
+                    line.quantity(), line.unitPrice()));
+        }
+
+        private Line put(Line line) {
+            lines.put(line.productId(), line);
+            dirty.add(line.productId());
+            return line;
+        }
+
+        private static Line withQuantity(Line line, int quantity) {
+            return new Line(line.cartId(), line.itemId(), line.productId(), line.productName(), quantity,
+                    line.unitPrice());
+        }
+    }
+}
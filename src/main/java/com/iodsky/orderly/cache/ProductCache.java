@@ -0,0 +1,90 @@
+package com.iodsky.orderly.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.iodsky.orderly.event.CategoryRenamedEvent;
+import com.iodsky.orderly.event.ProductDeletedEvent;
+import com.iodsky.orderly.event.ProductImagesChangedEvent;
+import com.iodsky.orderly.event.ProductSavedEvent;
+import com.iodsky.orderly.event.ProductsSavedEvent;
+import com.iodsky.orderly.model.Product;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Function;
+
+/*
+    Bounded read-through cache of products by id.
+    ---------------------------------------------
+    - Entries are evicted by size and by age, so a missed invalidation heals itself.
+    - Concurrent misses for the same id share one load: the first caller runs the loader,
+      the others wait for its result instead of querying as well.
+    - Entries are dropped once a change to the product is committed. A load racing with
+      that invalidation cannot re-insert the old value, the invalidation waits for it.
+    - Hits, misses, loads and evictions are published as the "products" cache metrics.
+    Cached products are detached and shared between requests: treat them as read-only.
+ */
+@Component
+public class ProductCache {
+
+    private final Cache<UUID, Product> cache;
+
+    public ProductCache(@Value("${orderly.cache.products.maximum-size}") long maximumSize,
+                        @Value("${orderly.cache.products.time-to-live}") Duration timeToLive,
+                        MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(timeToLive)
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "products");
+    }
+
+    public Product get(UUID id, Function<UUID, Product> loader) {
+        return cache.get(id, loader);
+    }
+
+    // Cached products as they are, the misses in one load; ids the loader does not return are left out.
+    public Map<UUID, Product> getAll(Collection<UUID> ids, Function<Set<UUID>, Map<UUID, Product>> loader) {
+        return cache.getAll(ids, keys -> loader.apply(Set.copyOf(keys)));
+    }
+
+    public void invalidate(UUID id) {
+        cache.invalidate(id);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductSaved(ProductSavedEvent event) {
+        invalidate(event.product().getId());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductsSaved(ProductsSavedEvent event) {
+        cache.invalidateAll(event.products().stream().map(Product::getId).toList());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductDeleted(ProductDeletedEvent event) {
+        invalidate(event.productId());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductImagesChanged(ProductImagesChangedEvent event) {
+        invalidate(event.productId());
+    }
+
+    // Every cached product of the renamed category carries the old name.
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCategoryRenamed(CategoryRenamedEvent event) {
+        cache.invalidateAll();
+    }
+}
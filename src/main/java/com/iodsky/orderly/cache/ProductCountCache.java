@@ -0,0 +1,73 @@
+package com.iodsky.orderly.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.iodsky.orderly.event.CategoryRenamedEvent;
+import com.iodsky.orderly.event.ProductDeletedEvent;
+import com.iodsky.orderly.event.ProductSavedEvent;
+import com.iodsky.orderly.event.ProductsSavedEvent;
+import com.iodsky.orderly.request.ProductFilter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/*
+    Exact listing totals per filter. Like ProductListingCache, entries are keyed by a
+    generation that every committed product change bumps, so a count taken while a
+    change commits is never reused.
+ */
+@Component
+public class ProductCountCache {
+
+    private record Key(long generation, FilterKey filter) { }
+
+    private final AtomicLong generation = new AtomicLong();
+    private final Cache<Key, Long> cache;
+
+    public ProductCountCache(@Value("${orderly.cache.counts.maximum-size}") long maximumSize,
+                             @Value("${orderly.cache.counts.time-to-live}") Duration timeToLive,
+                             MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(timeToLive)
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "product-counts");
+    }
+
+    public long get(ProductFilter filter, LongSupplier counter) {
+        return cache.get(new Key(generation.get(), FilterKey.of(filter)), key -> counter.getAsLong());
+    }
+
+    @Order(ProductListingCache.SOURCE_ORDER)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductSaved(ProductSavedEvent event) {
+        generation.incrementAndGet();
+    }
+
+    @Order(ProductListingCache.SOURCE_ORDER)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductsSaved(ProductsSavedEvent event) {
+        generation.incrementAndGet();
+    }
+
+    @Order(ProductListingCache.SOURCE_ORDER)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductDeleted(ProductDeletedEvent event) {
+        generation.incrementAndGet();
+    }
+
+    @Order(ProductListingCache.SOURCE_ORDER)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCategoryRenamed(CategoryRenamedEvent event) {
+        generation.incrementAndGet();
+    }
+}
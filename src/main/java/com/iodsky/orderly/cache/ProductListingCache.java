@@ -0,0 +1,99 @@
+package com.iodsky.orderly.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.iodsky.orderly.event.CategoryRenamedEvent;
+import com.iodsky.orderly.event.ProductDeletedEvent;
+import com.iodsky.orderly.event.ProductImagesChangedEvent;
+import com.iodsky.orderly.event.ProductSavedEvent;
+import com.iodsky.orderly.event.ProductsSavedEvent;
+import com.iodsky.orderly.request.CountStrategy;
+import com.iodsky.orderly.request.ProductFilter;
+import com.iodsky.orderly.request.ProductSort;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/*
+    Cache of serialized product listing responses.
+    ----------------------------------------------
+    - Keys combine the normalized listing parameters with the catalog version at the time the
+      request started; any committed catalog change bumps the version, so older entries are
+      never read again and simply age out. A response computed while a change commits is
+      stored under the old version and is therefore never served as current.
+    - What a listing is built from beyond the database (facet index, count cache) is updated by
+      listeners ordered at SOURCE_ORDER, ahead of the version bump, so a request that reads the
+      new version also reads their update.
+    - Values are the JSON bytes, bounded by total size, so a hit costs no query, no mapping
+      and no serialization.
+ */
+@Component
+public class ProductListingCache {
+
+    public record Key(long version, FilterKey filter, int page, int limit, ProductSort sort, boolean facets,
+                      CountStrategy count) { }
+
+    public static final int SOURCE_ORDER = Ordered.LOWEST_PRECEDENCE - 1;
+
+    private final AtomicLong catalogVersion = new AtomicLong();
+    private final Cache<Key, byte[]> cache;
+
+    public ProductListingCache(@Value("${orderly.cache.listings.maximum-bytes}") long maximumBytes,
+                               @Value("${orderly.cache.listings.time-to-live}") Duration timeToLive,
+                               MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maximumBytes)
+                .<Key, byte[]>weigher((key, body) -> body.length)
+                .expireAfterWrite(timeToLive)
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "product-listings");
+    }
+
+    public Key key(ProductFilter filter, int page, int limit, ProductSort sort, boolean facets, CountStrategy count) {
+        return new Key(catalogVersion.get(), FilterKey.of(filter), page, limit, sort, facets, count);
+    }
+
+    public byte[] get(Key key, Supplier<byte[]> loader) {
+        return cache.get(key, k -> loader.get());
+    }
+
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductSaved(ProductSavedEvent event) {
+        catalogVersion.incrementAndGet();
+    }
+
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductsSaved(ProductsSavedEvent event) {
+        catalogVersion.incrementAndGet();
+    }
+
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductDeleted(ProductDeletedEvent event) {
+        catalogVersion.incrementAndGet();
+    }
+
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductImagesChanged(ProductImagesChangedEvent event) {
+        catalogVersion.incrementAndGet();
+    }
+
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCategoryRenamed(CategoryRenamedEvent event) {
+        catalogVersion.incrementAndGet();
+    }
+}
@@ -58,6 +58,8 @@ public class SecurityConfig {
                                 "/swagger-ui.html"
                         )
                         .permitAll()
+                        .requestMatchers("/actuator/**")
+                        .hasRole("ADMIN")
                         .anyRequest()
                         .authenticated()
                 )
@@ -0,0 +1,20 @@
+package com.iodsky.orderly.config;
+
+import com.iodsky.orderly.request.CountStrategy;
+import com.iodsky.orderly.request.ProductFileFormat;
+import com.iodsky.orderly.request.ProductSort;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.format.FormatterRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+public class WebConfig implements WebMvcConfigurer {
+
+    // Lets query parameters use lower-case enum values, e.g. count=estimated.
+    @Override
+    public void addFormatters(FormatterRegistry registry) {
+        registry.addConverter(String.class, CountStrategy.class, CountStrategy::from);
+        registry.addConverter(String.class, ProductFileFormat.class, ProductFileFormat::from);
+        registry.addConverter(String.class, ProductSort.class, ProductSort::from);
+    }
+}
@@ -6,9 +6,12 @@ import com.iodsky.orderly.dto.CartItemDto;
 import com.iodsky.orderly.dto.mapper.CartItemMapper;
 import com.iodsky.orderly.model.CartItem;
 import com.iodsky.orderly.model.User;
+import com.iodsky.orderly.request.UpdateCartItemsRequest;
 import com.iodsky.orderly.service.CartService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Min;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
@@ -35,8 +38,7 @@ public class CartController {
   )
   @GetMapping()
   public ResponseEntity<CartDto> getUserCart(@AuthenticationPrincipal User user) {
-    Cart cart = cartService.getCartByUser(user);
-    return ResponseEntity.ok(cartMapper.toDto(cart));
+    return ResponseEntity.ok(cartMapper.toDto(cartService.getCartLines(user)));
   }
 
   @Operation(
@@ -54,6 +56,7 @@ public class CartController {
   )
   @PutMapping("clear")
   public ResponseEntity<CartDto> clearCart(@AuthenticationPrincipal User user) {
+    cartService.flushCart(user);
     Cart cart = cartService.clearCart(user);
     return ResponseEntity.ok(cartMapper.toDto(cart));
   }
@@ -65,12 +68,25 @@ public class CartController {
   public ResponseEntity<CartItemDto> addItemToCart(
           @AuthenticationPrincipal User user,
           @PathVariable UUID productId,
-          @RequestParam(required = false, defaultValue = "1") int quantity) {
+          @RequestParam(required = false, defaultValue = "1")
+          @Min(value = 1, message = "Quantity must be positive to add") int quantity) {
 
     CartItem item = cartService.addItemToCart(user, productId, quantity);
     return ResponseEntity.ok(cartItemMapper.toDto(item));
   }
 
+  @Operation(
+          summary = "Applies a batch of add, set and remove item operations to the authenticated user's cart."
+  )
+  @PatchMapping("items")
+  public ResponseEntity<CartDto> updateItems(
+          @AuthenticationPrincipal User user,
+          @Valid @RequestBody UpdateCartItemsRequest request) {
+    cartService.flushCart(user);
+    Cart cart = cartService.updateItems(user, request.getOperations());
+    return ResponseEntity.ok(cartMapper.toDto(cart));
+  }
+
   @Operation(
           summary = "Fetches a cart item by cart Id for the authenticated user."
   )
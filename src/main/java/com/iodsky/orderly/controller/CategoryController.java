@@ -5,9 +5,12 @@ import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
 import com.iodsky.orderly.dto.CategoryDto;
+import com.iodsky.orderly.dto.ResourceVersion;
 import com.iodsky.orderly.dto.mapper.CategoryMapper;
+import com.iodsky.orderly.model.Category;
 import com.iodsky.orderly.service.CategoryService;
 
 import jakarta.validation.Valid;
@@ -46,13 +49,22 @@ public class CategoryController {
   }
 
   @Operation(
-          summary = "Fetches all product categories. Only Admin can perform this action."
+          summary = "Fetches all product categories. Only Admin can perform this action. Honors If-None-Match and If-Modified-Since with 304 Not Modified."
   )
   @GetMapping
-  public ResponseEntity<List<CategoryDto>> getCategories() {
-    List<CategoryDto> categories = categoryService.getAllCategories().stream().map(categoryMapper::toDto).toList();
+  public ResponseEntity<List<CategoryDto>> getCategories(WebRequest request) {
+    // Revalidation only needs an aggregate over the version columns, not the rows.
+    if (ConditionalRequests.isConditional(request)) {
+      ResourceVersion version = categoryService.getCategoriesVersion();
+      if (request.checkNotModified(version.etag(), version.lastModifiedMillis())) {
+        return null;
+      }
+    }
 
-    return ResponseEntity.ok(categories);
+    List<Category> categories = categoryService.getAllCategories();
+
+    return ConditionalRequests.ok(ResourceVersion.of(categories))
+        .body(categories.stream().map(categoryMapper::toDto).toList());
   }
 
   @Operation(
@@ -4,6 +4,7 @@ import com.iodsky.orderly.dto.mapper.OrderMapper;
 import com.iodsky.orderly.dto.OrderDto;
 import com.iodsky.orderly.model.Order;
 import com.iodsky.orderly.model.User;
+import com.iodsky.orderly.service.CartService;
 import com.iodsky.orderly.service.CheckoutService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
@@ -20,6 +21,7 @@ import org.springframework.web.bind.annotation.*;
 public class CheckoutController {
 
     private final CheckoutService checkoutService;
+    private final CartService cartService;
     private final OrderMapper orderMapper;
 
     @Operation(
@@ -27,6 +29,7 @@ public class CheckoutController {
     )
     @PostMapping()
     public ResponseEntity<OrderDto> checkoutOrder(@AuthenticationPrincipal User user) {
+        cartService.flushCart(user);
         Order order = checkoutService.placeOrder(user);
 
         return new ResponseEntity<>(orderMapper.toDto(order), HttpStatus.CREATED);
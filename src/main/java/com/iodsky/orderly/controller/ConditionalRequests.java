@@ -0,0 +1,24 @@
+package com.iodsky.orderly.controller;
+
+import com.iodsky.orderly.dto.ResourceVersion;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.WebRequest;
+
+final class ConditionalRequests {
+
+    private ConditionalRequests() {}
+
+    static boolean isConditional(WebRequest request) {
+        return request.getHeader(HttpHeaders.IF_NONE_MATCH) != null
+                || request.getHeader(HttpHeaders.IF_MODIFIED_SINCE) != null;
+    }
+
+    static ResponseEntity.BodyBuilder ok(ResourceVersion version) {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok().eTag(version.etag());
+        if (version.lastModified() != null) {
+            builder.lastModified(version.lastModified().toInstant());
+        }
+        return builder;
+    }
+}
@@ -1,30 +1,58 @@
 package com.iodsky.orderly.controller;
 
+import java.io.InputStream;
+import java.math.BigDecimal;
 import java.util.List;
 import java.util.UUID;
+import java.util.function.Function;
 
+import com.iodsky.orderly.dto.CursorPaginationDto;
 import com.iodsky.orderly.dto.PaginationDto;
+import com.iodsky.orderly.dto.ProductCursor;
 import com.iodsky.orderly.dto.mapper.PageMapper;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
-import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import com.iodsky.orderly.dto.mapper.ProductMapper;
 import com.iodsky.orderly.dto.ProductDto;
+import com.iodsky.orderly.dto.ProductImportReportDto;
+import com.iodsky.orderly.dto.ProductSearchHitDto;
+import com.iodsky.orderly.dto.ProductSuggestionDto;
+import com.iodsky.orderly.dto.ResourceVersion;
+import com.iodsky.orderly.request.CountStrategy;
+import com.iodsky.orderly.request.ProductFilter;
+import com.iodsky.orderly.request.ProductFileFormat;
 import com.iodsky.orderly.request.ProductRequest;
+import com.iodsky.orderly.request.ProductSort;
 import com.iodsky.orderly.model.Product;
+import com.iodsky.orderly.service.ProductExportService;
+import com.iodsky.orderly.service.ProductImportService;
+import com.iodsky.orderly.service.ProductListingService;
+import com.iodsky.orderly.service.ProductRecommendationService;
+import com.iodsky.orderly.service.ProductSearchService;
 import com.iodsky.orderly.service.ProductService;
+import com.iodsky.orderly.service.ProductSuggestService;
 
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
@@ -41,6 +69,12 @@ public class ProductController {
 
   private final ProductService productService;
   private final ProductMapper productMapper;
+  private final ProductSearchService productSearchService;
+  private final ProductSuggestService productSuggestService;
+  private final ProductListingService productListingService;
+  private final ProductImportService productImportService;
+  private final ProductExportService productExportService;
+  private final ProductRecommendationService productRecommendationService;
 
   @Operation(
           summary = "Creates a new product. Only Admins can perform this action."
@@ -53,29 +87,141 @@ public class ProductController {
   }
 
   @Operation(
-          summary = "Fetches products filtered by optional category, brand, or name."
+          summary = "Imports products from a CSV (with header row) or NDJSON stream and reports rows that were skipped. "
+                  + "Only Admins can perform this action."
+  )
+  @PostMapping(path = "/import", consumes = {"text/csv", "application/x-ndjson"})
+  @PreAuthorize("hasRole('ADMIN')")
+  public ResponseEntity<ProductImportReportDto> importProducts(
+      @RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+      InputStream body
+  ) {
+    return ResponseEntity.ok(productImportService.importProducts(body, ProductFileFormat.from(contentType)));
+  }
+
+  @Operation(
+          summary = "Streams the whole catalog, with categories and image metadata, as NDJSON or CSV. "
+                  + "Only Admins can perform this action."
+  )
+  @GetMapping("/export")
+  @PreAuthorize("hasRole('ADMIN')")
+  public ResponseEntity<StreamingResponseBody> exportProducts(
+      @RequestParam(defaultValue = "ndjson") ProductFileFormat format
+  ) {
+    ContentDisposition disposition = ContentDisposition.attachment()
+        .filename("products." + format.getFileExtension())
+        .build();
+
+    return ResponseEntity.ok()
+        .contentType(format.getMediaType())
+        .header(HttpHeaders.CONTENT_DISPOSITION, disposition.toString())
+        .body(output -> productExportService.exportProducts(output, format));
+  }
+
+  @Operation(
+          summary = "Fetches products filtered by any combination of category, brand, name, price range and availability, "
+                  + "with category, brand and price bucket counts unless facets=false. "
+                  + "Sorted by sort=newest|price_asc|price_desc|name|stock. "
+                  + "count=cached|estimated trades an exact total for a cheaper one, see totalExact."
   )
 
   @GetMapping
-  public ResponseEntity<PaginationDto<ProductDto>> getProducts(
+  @ApiResponse(responseCode = "200", content = @Content(
+          mediaType = MediaType.APPLICATION_JSON_VALUE, schema = @Schema(implementation = PaginationDto.class)))
+  public ResponseEntity<byte[]> getProducts(
       @RequestParam(required = false) String category,
       @RequestParam(required = false) String brand,
       @RequestParam(required = false) String name,
+      @RequestParam(required = false) @Min(0) BigDecimal minPrice,
+      @RequestParam(required = false) @Min(0) BigDecimal maxPrice,
+      @RequestParam(defaultValue = "false") boolean inStock,
       @RequestParam(defaultValue = "0") @Min(0) int page,
+      @RequestParam(defaultValue = "10") @Min(1) @Max(100) int limit,
+      @RequestParam(defaultValue = "newest") ProductSort sort,
+      @RequestParam(defaultValue = "true") boolean facets,
+      @RequestParam(defaultValue = "exact") CountStrategy count
+  ) {
+
+    ProductFilter filter = toFilter(name, category, brand, minPrice, maxPrice, inStock);
+    return ResponseEntity.ok()
+        .contentType(MediaType.APPLICATION_JSON)
+        .body(productListingService.getProductsJson(filter, page, limit, sort, facets, count));
+  }
+
+  @Operation(
+          summary = "Fetches products using keyset pagination. Pass an empty cursor for the first page, then the returned nextCursor."
+  )
+  @GetMapping(params = "cursor")
+  public ResponseEntity<CursorPaginationDto<ProductDto>> getProductsByCursor(
+      @RequestParam(required = false) String category,
+      @RequestParam(required = false) String brand,
+      @RequestParam(required = false) String name,
+      @RequestParam(required = false) @Min(0) BigDecimal minPrice,
+      @RequestParam(required = false) @Min(0) BigDecimal maxPrice,
+      @RequestParam(defaultValue = "false") boolean inStock,
+      @RequestParam String cursor,
       @RequestParam(defaultValue = "10") @Min(1) @Max(100) int limit
   ) {
 
-    Page<Product> products = productService.getProducts(name, category, brand, page, limit);
-    return ResponseEntity.ok(PageMapper.map(products, productMapper::toDto));
+    ProductFilter filter = toFilter(name, category, brand, minPrice, maxPrice, inStock);
+    Slice<ProductDto> products = productService.getProductsAfter(filter, cursor, limit);
+    String nextCursor = products.hasNext()
+        ? ProductCursor.of(products.getContent().getLast()).encode()
+        : null;
+
+    return ResponseEntity.ok(PageMapper.map(products, Function.identity(), nextCursor));
   }
 
   @Operation(
-          summary = "Fetches a product by it's ID."
+          summary = "Searches products by free text over name, brand and description, ranked by relevance."
+  )
+  @GetMapping("/search")
+  public ResponseEntity<List<ProductSearchHitDto>> searchProducts(
+      @RequestParam String q,
+      @RequestParam(defaultValue = "10") @Min(1) @Max(100) int limit
+  ) {
+    return ResponseEntity.ok(productSearchService.search(q, limit));
+  }
+
+  @Operation(
+          summary = "Suggests product names and brands starting with the given prefix, most stocked first."
+  )
+  @GetMapping("/suggest")
+  public ResponseEntity<List<ProductSuggestionDto>> suggestProducts(
+      @RequestParam String q,
+      @RequestParam(defaultValue = "10") @Min(1) @Max(ProductSuggestService.MAX_SUGGESTIONS) int limit
+  ) {
+    return ResponseEntity.ok(productSuggestService.suggest(q, limit));
+  }
+
+  @Operation(
+          summary = "Fetches a product by it's ID. Honors If-None-Match and If-Modified-Since with 304 Not Modified."
   )
   @GetMapping("/{id}")
-  public ResponseEntity<ProductDto> getProductById(@PathVariable UUID id) {
+  public ResponseEntity<ProductDto> getProductById(@PathVariable UUID id, WebRequest request) {
+    // Revalidation only needs the version columns, the product itself is loaded on a mismatch.
+    if (ConditionalRequests.isConditional(request)) {
+      ResourceVersion version = productService.getProductVersion(id);
+      if (request.checkNotModified(version.etag(), version.lastModifiedMillis())) {
+        return null;
+      }
+    }
+
     Product product = productService.getProduct(id);
-    return ResponseEntity.ok(productMapper.toDto(product));
+    return ConditionalRequests.ok(ResourceVersion.of(product)).body(productMapper.toDto(product));
+  }
+
+  @Operation(
+          summary = "Fetches the products most often ordered together with the given product."
+  )
+  @GetMapping("/{id}/related")
+  public ResponseEntity<List<ProductDto>> getRelatedProducts(
+      @PathVariable UUID id,
+      @RequestParam(defaultValue = "10") @Min(1) @Max(ProductRecommendationService.MAX_RELATED) int limit
+  ) {
+    return ResponseEntity.ok(productRecommendationService.getRelatedProducts(id, limit).stream()
+        .map(productMapper::toDto)
+        .toList());
   }
 
   @Operation(
@@ -99,4 +245,16 @@ public class ProductController {
     return ResponseEntity.ok("Product deleted successfully");
   }
 
+  private ProductFilter toFilter(String name, String category, String brand,
+      BigDecimal minPrice, BigDecimal maxPrice, boolean inStock) {
+    return ProductFilter.builder()
+        .name(name)
+        .category(category)
+        .brand(brand)
+        .minPrice(minPrice)
+        .maxPrice(maxPrice)
+        .inStock(inStock)
+        .build();
+  }
+
 }
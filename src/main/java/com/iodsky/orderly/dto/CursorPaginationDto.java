@@ -0,0 +1,15 @@
+package com.iodsky.orderly.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+public class CursorPaginationDto<T> {
+    private List<T> content;
+    private int size;
+    private String nextCursor;
+    private boolean hasNext;
+}
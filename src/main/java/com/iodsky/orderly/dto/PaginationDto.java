@@ -1,9 +1,11 @@
 package com.iodsky.orderly.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Builder;
 import lombok.Data;
 
 import java.util.List;
+import java.util.Map;
 
 @Data
 @Builder
@@ -12,7 +14,11 @@ public class PaginationDto<T> {
     private int page;
     private int size;
     private long totalElements;
+    // False when totalElements is an estimate, see CountStrategy.
+    private boolean totalExact;
     private int totalPages;
     private boolean first;
     private boolean last;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Map<String, Map<String, Long>> facets;
 }
@@ -0,0 +1,45 @@
+package com.iodsky.orderly.dto;
+
+import com.iodsky.orderly.exception.InvalidCursorException;
+import com.iodsky.orderly.model.Product;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
+import java.util.UUID;
+
+/*
+    Keyset position inside the product listing.
+    The cursor handed to clients is the base64url form of "<createdAt millis>.<id>",
+    i.e. the sort key of the last row they received plus the id as a tie-breaker.
+ */
+public record ProductCursor(Date createdAt, UUID id) {
+
+    private static final String SEPARATOR = ".";
+
+    public static ProductCursor of(Product product) {
+        return new ProductCursor(product.getCreatedAt(), product.getId());
+    }
+
+    public static ProductCursor of(ProductDto product) {
+        return new ProductCursor(product.getCreatedAt(), product.getId());
+    }
+
+    public String encode() {
+        String raw = createdAt.getTime() + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static ProductCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.indexOf(SEPARATOR);
+
+            return new ProductCursor(
+                    new Date(Long.parseLong(raw.substring(0, separator))),
+                    UUID.fromString(raw.substring(separator + 1)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException ex) {
+            throw new InvalidCursorException(cursor);
+        }
+    }
+}
@@ -4,6 +4,7 @@ import lombok.Builder;
 import lombok.Data;
 
 import java.math.BigDecimal;
+import java.util.Date;
 import java.util.List;
 import java.util.UUID;
 
@@ -18,4 +19,5 @@ public class ProductDto {
     private int stock;
     private String category;
     private List<ImageDto> images;
+    private Date createdAt;
 }
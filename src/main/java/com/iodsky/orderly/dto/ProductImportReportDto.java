@@ -0,0 +1,20 @@
+package com.iodsky.orderly.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+public class ProductImportReportDto {
+    private long rows;
+    private long imported;
+    private long failed;
+    // Capped, see orderly.import.max-reported-errors; failed holds the full count.
+    private List<Error> errors;
+    private boolean errorsTruncated;
+    private long durationMillis;
+
+    public record Error(long row, String message) { }
+}
@@ -0,0 +1,19 @@
+package com.iodsky.orderly.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+@Data
+@Builder
+public class ProductSearchHitDto {
+    private UUID id;
+    private String name;
+    private String brand;
+    private String category;
+    private BigDecimal price;
+    private int stock;
+    private float score;
+}
@@ -0,0 +1,11 @@
+package com.iodsky.orderly.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class ProductSuggestionDto {
+    private String text;
+    private long weight;
+}
@@ -0,0 +1,65 @@
+package com.iodsky.orderly.dto;
+
+import com.iodsky.orderly.model.Category;
+import com.iodsky.orderly.model.Product;
+
+import java.util.Collection;
+import java.util.Date;
+
+/*
+    Validators for conditional GETs: a strong ETag plus the Last-Modified date.
+      - a product's representation includes its category name, so its tag is
+        "<product version>.<category version>"
+      - a collection's tag is "<row count>.<sum of versions>.<latest update>", which changes
+        whenever a row is added, removed or updated
+ */
+public record ResourceVersion(String etag, Date lastModified) {
+
+    public static ResourceVersion of(Product product) {
+        return ofProduct(
+                product.getVersion(),
+                product.getCategory() != null ? product.getCategory().getVersion() : null,
+                product.getUpdatedAt(),
+                product.getCategory() != null ? product.getCategory().getUpdatedAt() : null);
+    }
+
+    public static ResourceVersion ofProduct(Long version, Long categoryVersion, Date updatedAt, Date categoryUpdatedAt) {
+        return new ResourceVersion(
+                quote(valueOf(version) + "." + valueOf(categoryVersion)),
+                latest(updatedAt, categoryUpdatedAt));
+    }
+
+    public static ResourceVersion of(Collection<Category> categories) {
+        long versionSum = 0;
+        Date lastUpdated = null;
+        for (Category category : categories) {
+            versionSum += valueOf(category.getVersion());
+            lastUpdated = latest(lastUpdated, category.getUpdatedAt());
+        }
+        return ofCollection(categories.size(), versionSum, lastUpdated);
+    }
+
+    public static ResourceVersion ofCollection(long count, Long versionSum, Date lastUpdated) {
+        long updated = lastUpdated != null ? lastUpdated.getTime() : 0;
+        return new ResourceVersion(quote(count + "." + valueOf(versionSum) + "." + updated), lastUpdated);
+    }
+
+    public long lastModifiedMillis() {
+        return lastModified != null ? lastModified.getTime() : -1;
+    }
+
+    private static long valueOf(Long version) {
+        return version != null ? version : 0;
+    }
+
+    private static Date latest(Date first, Date second) {
+        if (first == null || second == null) {
+            return first != null ? first : second;
+        }
+        return first.after(second) ? first : second;
+    }
+
+    private static String quote(String tag) {
+        return "\"" + tag + "\"";
+    }
+}
@@ -19,7 +19,7 @@ public class CartItemMapper {
         .productId(cartItem.getProduct().getId())
         .productName(cartItem.getProduct().getName())
         .quantity(cartItem.getQuantity())
-        .unitPrice(cartItem.getUnitPrice())
+        .unitPrice(cartItem.getUnitPrice().toBigDecimal())
         .build();
   }
 
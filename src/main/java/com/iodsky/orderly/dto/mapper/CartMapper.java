@@ -1,9 +1,14 @@
 package com.iodsky.orderly.dto.mapper;
 
+import java.util.List;
+
 import org.springframework.stereotype.Component;
 
 import com.iodsky.orderly.dto.CartDto;
+import com.iodsky.orderly.dto.CartItemDto;
 import com.iodsky.orderly.model.Cart;
+import com.iodsky.orderly.model.Money;
+import com.iodsky.orderly.repository.CartRepository.CartLineView;
 
 import lombok.RequiredArgsConstructor;
 
@@ -21,7 +26,45 @@ public class CartMapper {
     return CartDto.builder()
         .id(cart.getId())
         .items(cart.getItems().stream().map(cartItemMapper::toDto).toList())
-        .totalAmount(cart.getTotalAmount())
+        .totalAmount(cart.getTotalAmount().toBigDecimal())
         .build();
   }
+
+  // No lines at all is a user without a cart, shown as an empty cart without id.
+  public CartDto toDto(List<CartLineView> lines) {
+    if (lines.isEmpty()) {
+      return CartDto.builder()
+          .items(List.of())
+          .totalAmount(Money.ZERO.toBigDecimal())
+          .build();
+    }
+
+    List<CartItemDto> items = lines.stream()
+        .filter(line -> line.getItemId() != null)
+        .map(line -> CartItemDto.builder()
+            .id(line.getItemId())
+            .cartId(line.getCartId())
+            .productId(line.getProductId())
+            .productName(line.getProductName())
+            .quantity(line.getQuantity())
+            .unitPrice(line.getUnitPrice().toBigDecimal())
+            .build())
+        .toList();
+
+    return CartDto.builder()
+        .id(lines.getFirst().getCartId())
+        .items(items)
+        .totalAmount(total(lines).toBigDecimal())
+        .build();
+  }
+
+  private static Money total(List<CartLineView> lines) {
+    long cents = 0;
+    for (CartLineView line : lines) {
+      if (line.getItemId() != null) {
+        cents = Math.addExact(cents, Math.multiplyExact(line.getUnitPrice().cents(), line.getQuantity()));
+      }
+    }
+    return new Money(cents);
+  }
 }
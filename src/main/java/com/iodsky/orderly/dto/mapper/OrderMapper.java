@@ -17,14 +17,14 @@ public class OrderMapper {
         return OrderDto.builder()
                 .id(order.getId())
                 .createdAt(order.getCreatedAt())
-                .totalAmount(order.getTotalAmount())
+                .totalAmount(order.getTotalAmount().toBigDecimal())
                 .status(order.getOrderStatus())
                 .items(order.getItems()
                         .stream()
                         .map(item -> OrderItemDto.builder()
                                 .id(order.getId())
                                 .productId(item.getProduct().getId())
-                                .price(item.getPrice())
+                                .price(item.getPrice().toBigDecimal())
                                 .quantity(item.getQuantity())
                                 .productName(item.getProduct().getName())
                                 .build())
@@ -1,7 +1,9 @@
 package com.iodsky.orderly.dto.mapper;
 
+import com.iodsky.orderly.dto.CursorPaginationDto;
 import com.iodsky.orderly.dto.PaginationDto;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
 
 import java.util.function.Function;
 
@@ -10,13 +12,27 @@ public class PageMapper {
     private PageMapper(){}
 
     public static <T, U>PaginationDto<U> map(Page<T> page, Function<T, U> mapper) {
+        return map(page, mapper, true);
+    }
+
+    public static <T, U> PaginationDto<U> map(Page<T> page, Function<T, U> mapper, boolean totalExact) {
         return PaginationDto.<U>builder()
                 .content(page.getContent().stream().map(mapper).toList())
                 .page(page.getNumber())
                 .size(page.getSize())
                 .totalElements(page.getTotalElements())
+                .totalExact(totalExact)
                 .first(page.isFirst())
                 .last(page.isLast())
                 .build();
     }
+
+    public static <T, U> CursorPaginationDto<U> map(Slice<T> slice, Function<T, U> mapper, String nextCursor) {
+        return CursorPaginationDto.<U>builder()
+                .content(slice.getContent().stream().map(mapper).toList())
+                .size(slice.getSize())
+                .nextCursor(nextCursor)
+                .hasNext(slice.hasNext())
+                .build();
+    }
 }
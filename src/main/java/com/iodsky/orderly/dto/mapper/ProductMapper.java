@@ -6,6 +6,7 @@ import org.springframework.stereotype.Component;
 
 import com.iodsky.orderly.dto.ProductDto;
 import com.iodsky.orderly.request.ProductRequest;
+import com.iodsky.orderly.model.Money;
 import com.iodsky.orderly.model.Product;
 
 import lombok.RequiredArgsConstructor;
@@ -28,8 +29,9 @@ public class ProductMapper {
         .brand(product.getBrand())
         .category(product.getCategory().getName())
         .images(product.getImages().stream().map(imageMapper::toDto).toList())
-        .price(product.getPrice())
+        .price(product.getPrice() != null ? product.getPrice().toBigDecimal() : null)
         .stock(product.getStock())
+        .createdAt(product.getCreatedAt())
         .build();
   }
 
@@ -42,7 +44,7 @@ public class ProductMapper {
         .name(dto.getName())
         .description(dto.getDescription())
         .brand(dto.getBrand())
-        .price(dto.getPrice())
+        .price(Money.of(dto.getPrice()))
         .stock(dto.getStock())
         .images(new ArrayList<>())
         .build();
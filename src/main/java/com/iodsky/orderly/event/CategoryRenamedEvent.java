@@ -0,0 +1,3 @@
+package com.iodsky.orderly.event;
+
+public record CategoryRenamedEvent(String previousName, String name) { }
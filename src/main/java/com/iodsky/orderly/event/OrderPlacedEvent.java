@@ -0,0 +1,6 @@
+package com.iodsky.orderly.event;
+
+import java.util.List;
+import java.util.UUID;
+
+public record OrderPlacedEvent(UUID orderId, UUID userId, List<UUID> productIds) { }
@@ -0,0 +1,5 @@
+package com.iodsky.orderly.event;
+
+import java.util.UUID;
+
+public record ProductDeletedEvent(UUID productId) { }
@@ -0,0 +1,5 @@
+package com.iodsky.orderly.event;
+
+import com.iodsky.orderly.model.Product;
+
+public record ProductSavedEvent(Product product) { }
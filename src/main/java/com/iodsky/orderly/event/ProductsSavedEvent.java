@@ -0,0 +1,8 @@
+package com.iodsky.orderly.event;
+
+import com.iodsky.orderly.model.Product;
+
+import java.util.List;
+
+// Products written together, e.g. one import batch; listeners apply them in one go.
+public record ProductsSavedEvent(List<Product> products) { }
@@ -6,6 +6,7 @@ import java.util.List;
 import com.iodsky.orderly.response.ErrorResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.dao.ConcurrencyFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.converter.HttpMessageNotReadableException;
@@ -14,6 +15,8 @@ import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.method.annotation.HandlerMethodValidationException;
+import org.springframework.web.method.annotation.MethodArgumentTypeMismatchException;
 import org.springframework.web.multipart.support.MissingServletRequestPartException;
 
 @ControllerAdvice
@@ -60,6 +63,30 @@ public class GlobalExceptionHandler {
     return new ResponseEntity<>(response, HttpStatus.BAD_REQUEST);
   }
 
+  // Constraints on request parameters, such as @Min on a quantity.
+  @ExceptionHandler(HandlerMethodValidationException.class)
+  public ResponseEntity<ErrorResponse> handleHandlerMethodValidationException(HandlerMethodValidationException ex) {
+    List<ErrorResponse.FieldValidationError> fieldErrors = ex.getParameterValidationResults()
+        .stream()
+        .flatMap(result -> result.getResolvableErrors().stream()
+            .map(error -> new ErrorResponse.FieldValidationError(
+                result.getMethodParameter().getParameterName(), error.getDefaultMessage())))
+        .toList();
+
+    logger.warn("Validation failed for parameters: {}",
+        fieldErrors.stream()
+            .map(ErrorResponse.FieldValidationError::getField)
+            .toList());
+
+    ErrorResponse response = new ErrorResponse(
+        LocalDateTime.now(),
+        HttpStatus.BAD_REQUEST.value(),
+        "Validation Failed",
+        fieldErrors);
+
+    return new ResponseEntity<>(response, HttpStatus.BAD_REQUEST);
+  }
+
   @ExceptionHandler(DuplicateResourceException.class)
   public ResponseEntity<ErrorResponse> handleDuplicateResourceException(DuplicateResourceException ex) {
     logger.warn("Duplicate resource detected: {}", ex.getMessage());
@@ -68,6 +95,16 @@ public class GlobalExceptionHandler {
     return new ResponseEntity<>(error, HttpStatus.CONFLICT);
   }
 
+  // Still conflicting after ConflictRetryAspect gave up; the client may send the request again.
+  @ExceptionHandler(ConcurrencyFailureException.class)
+  public ResponseEntity<ErrorResponse> handleConcurrencyFailureException(ConcurrencyFailureException ex) {
+    logger.warn("Concurrent modification: {}", ex.getMessage());
+
+    ErrorResponse error = new ErrorResponse(LocalDateTime.now(), 409,
+        "The resource was modified concurrently, please retry", null);
+    return new ResponseEntity<>(error, HttpStatus.CONFLICT);
+  }
+
   @ExceptionHandler(ResourceInUseException.class)
   public ResponseEntity<ErrorResponse> handleResourceInUserException(ResourceInUseException ex) {
     logger.warn("Resource in use: {}", ex.getMessage());
@@ -92,6 +129,31 @@ public class GlobalExceptionHandler {
     return new ResponseEntity<>(error, HttpStatus.BAD_REQUEST);
   }
 
+  @ExceptionHandler(InvalidQuantityException.class)
+  public ResponseEntity<ErrorResponse> handleInvalidQuantityException(InvalidQuantityException ex) {
+    logger.warn("Invalid quantity: {}", ex.getMessage());
+
+    ErrorResponse error = new ErrorResponse(LocalDateTime.now(), 400, ex.getMessage(), null);
+    return new ResponseEntity<>(error, HttpStatus.BAD_REQUEST);
+  }
+
+  @ExceptionHandler(InvalidCursorException.class)
+  public ResponseEntity<ErrorResponse> handleInvalidCursorException(InvalidCursorException ex) {
+    logger.warn("Invalid cursor: {}", ex.getMessage());
+
+    ErrorResponse error = new ErrorResponse(LocalDateTime.now(), 400, ex.getMessage(), null);
+    return new ResponseEntity<>(error, HttpStatus.BAD_REQUEST);
+  }
+
+  @ExceptionHandler(MethodArgumentTypeMismatchException.class)
+  public ResponseEntity<ErrorResponse> handleMethodArgumentTypeMismatchException(MethodArgumentTypeMismatchException ex) {
+    logger.warn("Invalid value for parameter {}: {}", ex.getName(), ex.getValue());
+
+    ErrorResponse error = new ErrorResponse(LocalDateTime.now(), 400,
+        "Invalid value '" + ex.getValue() + "' for parameter " + ex.getName(), null);
+    return new ResponseEntity<>(error, HttpStatus.BAD_REQUEST);
+  }
+
   @ExceptionHandler(AccessDeniedException.class)
   public ResponseEntity<ErrorResponse> handleAccessDeniedException(AccessDeniedException ex) {
     logger.warn("Access denied: {}", ex.getMessage());
@@ -0,0 +1,9 @@
+package com.iodsky.orderly.exception;
+
+import java.util.UUID;
+
+public class InvalidQuantityException extends RuntimeException {
+  public InvalidQuantityException(UUID productId, int quantity) {
+    super("Quantity " + quantity + " of product " + productId + " must be positive");
+  }
+}
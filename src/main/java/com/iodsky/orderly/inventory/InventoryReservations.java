@@ -0,0 +1,250 @@
+package com.iodsky.orderly.inventory;
+
+import com.iodsky.orderly.event.ProductDeletedEvent;
+import com.iodsky.orderly.event.ProductSavedEvent;
+import com.iodsky.orderly.exception.ProductOutOfStockException;
+import com.iodsky.orderly.model.Product;
+import com.iodsky.orderly.repository.ProductRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/*
+    In-memory stock admission for checkout, with time-limited holds.
+    ----------------------------------------------------------------
+    - Enabled with orderly.inventory.reservations.enabled; checkout relies on the conditional
+      stock update in ProductService.decreaseStock alone otherwise.
+    - Each product has one AtomicReference to its stored stock, the quantity held by running
+      checkouts and the product version the stock was read at. Granting, returning and re-syncing
+      are single compare-and-sets, so checkouts never lock, and different products never share a
+      counter.
+    - A checkout holds its quantities before it touches the database. When a product has less
+      left than asked for, the checkout fails right there, so a sold-out product no longer has
+      every checkout queueing on its row.
+    - Holds end with the checkout's transaction and give their quantities back either way: a
+      committed order lowers the stored stock through the ProductSavedEvent it publishes.
+      A hold whose transaction never completes is returned once it is older than the hold TTL.
+    - Stored stock is reconciled from the products table at startup and every reconcile
+      interval, and follows ProductSavedEvent in between. Products are loaded on first use.
+      After-commit events of concurrent checkouts can arrive out of order, so a snapshot older
+      than the version already applied is ignored instead of raising the stock back up or
+      turning checkouts away until the next reconcile.
+    The counters are a gate, not the source of truth: the conditional update still decides,
+    also between several instances of the application.
+ */
+@Component
+public class InventoryReservations {
+
+    private final Logger logger = LoggerFactory.getLogger(InventoryReservations.class);
+
+    private final boolean enabled;
+    private final long holdTtlNanos;
+    private final ProductRepository productRepository;
+    private final MeterRegistry meterRegistry;
+    private final Map<UUID, AtomicReference<Level>> counters = new ConcurrentHashMap<>();
+    private final Map<UUID, Hold> holds = new ConcurrentHashMap<>();
+
+    public record Hold(UUID id, Map<UUID, Integer> quantities, long expiresAtNanos) { }
+
+    private record Level(int stock, int held, long version) {
+
+        Level withHeld(int held) {
+            return new Level(stock, held, version);
+        }
+    }
+
+    public InventoryReservations(@Value("${orderly.inventory.reservations.enabled}") boolean enabled,
+                                 @Value("${orderly.inventory.reservations.hold-ttl}") Duration holdTtl,
+                                 ProductRepository productRepository,
+                                 MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.holdTtlNanos = holdTtl.toNanos();
+        this.productRepository = productRepository;
+        this.meterRegistry = meterRegistry;
+
+        meterRegistry.gaugeMapSize("orderly.inventory.holds.active", Tags.empty(), holds);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Holds the quantities until the current transaction completes; consumed on commit, returned on rollback.
+    public void holdForTransaction(Map<UUID, Integer> quantities) {
+        if (!enabled) {
+            return;
+        }
+
+        Hold hold = hold(quantities);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    commit(hold.id());
+                } else {
+                    release(hold.id());
+                }
+            }
+        });
+    }
+
+    // All lines or none: a line that cannot be held returns the ones held before it.
+    public Hold hold(Map<UUID, Integer> quantities) {
+        loadMissing(quantities.keySet());
+
+        Map<UUID, Integer> held = new HashMap<>();
+        for (Map.Entry<UUID, Integer> line : quantities.entrySet()) {
+            AtomicReference<Level> counter = counters.get(line.getKey());
+            if (counter == null || !tryHold(counter, line.getValue())) {
+                held.forEach(this::giveBack);
+                count("rejected");
+                throw new ProductOutOfStockException(line.getKey());
+            }
+            held.put(line.getKey(), line.getValue());
+        }
+
+        Hold hold = new Hold(UUID.randomUUID(), Map.copyOf(quantities), System.nanoTime() + holdTtlNanos);
+        holds.put(hold.id(), hold);
+        count("granted");
+        return hold;
+    }
+
+    // The stored stock catches up through the ProductSavedEvent of the order, see the class comment.
+    public void commit(UUID holdId) {
+        end(holdId, "committed");
+    }
+
+    public void release(UUID holdId) {
+        end(holdId, "released");
+    }
+
+    // Quantity that can still be held, empty for a product not loaded yet.
+    public Integer available(UUID productId) {
+        AtomicReference<Level> counter = counters.get(productId);
+        if (counter == null) {
+            return null;
+        }
+        Level level = counter.get();
+        return level.stock() - level.held();
+    }
+
+    @Scheduled(fixedDelayString = "${orderly.inventory.reservations.sweep-interval}")
+    public void expireHolds() {
+        long now = System.nanoTime();
+        for (Hold hold : holds.values()) {
+            if (now - hold.expiresAtNanos() > 0 && holds.remove(hold.id(), hold)) {
+                hold.quantities().forEach(this::giveBack);
+                count("expired");
+                logger.warn("Inventory hold {} expired before its checkout completed", hold.id());
+            }
+        }
+    }
+
+    /*
+        A checkout committing while the table is read may count twice until its hold ends, which
+        only holds back stock for a moment. Products no longer in the table are dropped.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${orderly.inventory.reservations.reconcile-interval}",
+            initialDelayString = "${orderly.inventory.reservations.reconcile-interval}")
+    public void reconcile() {
+        if (!enabled) {
+            return;
+        }
+
+        long started = System.currentTimeMillis();
+        Set<UUID> stored = new HashSet<>();
+        for (ProductRepository.StockLevel level : productRepository.findAllStockLevels()) {
+            setStock(level.getId(), level.getStock(), level.getVersion());
+            stored.add(level.getId());
+        }
+        counters.keySet().retainAll(stored);
+        logger.info("Reconciled stock of {} products in {} ms", stored.size(), System.currentTimeMillis() - started);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductSaved(ProductSavedEvent event) {
+        Product product = event.product();
+        if (enabled) {
+            setStock(product.getId(), product.getStock(), product.getVersion());
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductDeleted(ProductDeletedEvent event) {
+        counters.remove(event.productId());
+    }
+
+    private void end(UUID holdId, String outcome) {
+        Hold hold = holds.remove(holdId);
+        if (hold != null) {
+            hold.quantities().forEach(this::giveBack);
+            count(outcome);
+        }
+    }
+
+    private void loadMissing(Collection<UUID> productIds) {
+        List<UUID> missing = productIds.stream().filter(id -> !counters.containsKey(id)).toList();
+        if (!missing.isEmpty()) {
+            for (ProductRepository.StockLevel level : productRepository.findStockLevelsByIdIn(missing)) {
+                setStock(level.getId(), level.getStock(), level.getVersion());
+            }
+        }
+    }
+
+    // A snapshot without a version, such as one of a product not saved yet, is applied as is.
+    private void setStock(UUID productId, int stock, Long version) {
+        counters.computeIfAbsent(productId, id -> new AtomicReference<>(new Level(stock, 0, versionOf(version))))
+                .updateAndGet(level -> version != null && version < level.version()
+                        ? level
+                        : new Level(stock, level.held(), Math.max(level.version(), versionOf(version))));
+    }
+
+    private static long versionOf(Long version) {
+        return version != null ? version : Long.MIN_VALUE;
+    }
+
+    private static boolean tryHold(AtomicReference<Level> counter, int quantity) {
+        while (true) {
+            Level level = counter.get();
+            if (level.stock() - level.held() < quantity) {
+                return false;
+            }
+            if (counter.compareAndSet(level, level.withHeld(level.held() + quantity))) {
+                return true;
+            }
+        }
+    }
+
+    // Never below zero, in case the counter was dropped and reloaded while the hold was running.
+    private void giveBack(UUID productId, int quantity) {
+        AtomicReference<Level> counter = counters.get(productId);
+        if (counter != null) {
+            counter.updateAndGet(level -> level.withHeld(Math.max(0, level.held() - quantity)));
+        }
+    }
+
+    private void count(String outcome) {
+        meterRegistry.counter("orderly.inventory.holds", "outcome", outcome).increment();
+    }
+}
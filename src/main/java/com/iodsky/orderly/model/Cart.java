@@ -1,12 +1,13 @@
 package com.iodsky.orderly.model;
 
-import java.math.BigDecimal;
+import java.util.Date;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.UUID;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.CascadeType;
+import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
@@ -16,7 +17,10 @@ import jakarta.persistence.OneToMany;
 import jakarta.persistence.OneToOne;
 import jakarta.persistence.Table;
 import jakarta.persistence.Transient;
+import jakarta.persistence.Version;
 import lombok.*;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.CreationTimestamp;
 
 @Getter
 @Setter
@@ -35,6 +39,15 @@ public class Cart {
   @JsonIgnore
   private User user;
 
+  @CreationTimestamp
+  private Date createdAt;
+
+  // Also bumped when items are added or removed; the default covers rows inserted natively.
+  @Version
+  @ColumnDefault("0")
+  @Column(nullable = false)
+  private Long version;
+
   @OneToMany(mappedBy = "cart", cascade = CascadeType.ALL, orphanRemoval = true)
   @JsonIgnore
   private Set<CartItem> items = new HashSet<>();
@@ -43,11 +56,14 @@ public class Cart {
     this.user=user;
   }
 
+  // Summed in cents, without an intermediate amount per item.
   @Transient
-  public BigDecimal getTotalAmount() {
-    return this.items.stream()
-        .map(CartItem::getTotalPrice)
-        .reduce(BigDecimal.ZERO, BigDecimal::add);
+  public Money getTotalAmount() {
+    long cents = 0;
+    for (CartItem item : this.items) {
+      cents = Math.addExact(cents, Math.multiplyExact(item.getUnitPrice().cents(), item.getQuantity()));
+    }
+    return new Money(cents);
   }
 
   public void addItem(CartItem item) {
@@ -1,18 +1,24 @@
 package com.iodsky.orderly.model;
 
-import java.math.BigDecimal;
+import java.util.Date;
 import java.util.UUID;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.Table;
 import jakarta.persistence.Transient;
+import jakarta.persistence.UniqueConstraint;
+import jakarta.persistence.Version;
 import lombok.*;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.UpdateTimestamp;
 
 @Entity
 @Getter
@@ -20,9 +26,15 @@ import lombok.*;
 @AllArgsConstructor
 @NoArgsConstructor
 @Builder
-@Table(name = "cart_items")
+// One row per product in a cart, which the item upserts in CartItemRepository rely on.
+@Table(name = "cart_items",
+        uniqueConstraints = @UniqueConstraint(
+                name = CartItem.PRODUCT_CONSTRAINT, columnNames = {"cart_id", "product_id"}),
+        indexes = @Index(name = "idx_cart_items_updated_at", columnList = "updated_at"))
 public class CartItem {
 
+  public static final String PRODUCT_CONSTRAINT = "uk_cart_items_cart_product";
+
   @Id
   @GeneratedValue(strategy = GenerationType.UUID)
   private UUID id;
@@ -39,11 +51,21 @@ public class CartItem {
 
   private int quantity;
 
-  private BigDecimal unitPrice;
+  private Money unitPrice;
+
+  // Also set by the native item statements; stale items are expired by CartCompactionService.
+  @UpdateTimestamp
+  private Date updatedAt;
+
+  // Bumped by the native item statements too, so that entity updates notice their changes.
+  @Version
+  @ColumnDefault("0")
+  @Column(nullable = false)
+  private Long version;
 
   @Transient
-  public BigDecimal getTotalPrice() {
-    return this.unitPrice.multiply(BigDecimal.valueOf(quantity));
+  public Money getTotalPrice() {
+    return this.unitPrice.times(quantity);
   }
 
 }
@@ -3,6 +3,7 @@ package com.iodsky.orderly.model;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.ColumnDefault;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
 
@@ -29,10 +30,15 @@ public class Category {
             @JsonIgnore
     List<Product> products;
 
+    // Bumped by Hibernate on every update, feeds the ETag of the category list.
+    @Version
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private Long version;
+
     @CreationTimestamp
     private Date createdAt;
 
     @UpdateTimestamp
-    @Column(updatable = false)
     private Date updatedAt;
 }
@@ -0,0 +1,51 @@
+package com.iodsky.orderly.model;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/*
+    An amount of money as a whole number of cents.
+    ----------------------------------------------
+    - Sums and line totals are plain long arithmetic; only the result is a new object.
+    - Overflow throws instead of wrapping, as BigDecimal arithmetic would never wrap.
+    - Amounts enter and leave as BigDecimal with two decimals, the scale of the price columns.
+      Finer amounts are rounded half up, as Postgres does when storing them.
+ */
+public record Money(long cents) implements Comparable<Money> {
+
+    public static final int SCALE = 2;
+    public static final Money ZERO = new Money(0);
+
+    public static Money of(BigDecimal amount) {
+        if (amount == null) {
+            return null;
+        }
+        return new Money(amount.setScale(SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact());
+    }
+
+    public static Money of(long units) {
+        return new Money(Math.multiplyExact(units, 100));
+    }
+
+    public Money plus(Money other) {
+        return new Money(Math.addExact(cents, other.cents));
+    }
+
+    public Money times(int quantity) {
+        return new Money(Math.multiplyExact(cents, quantity));
+    }
+
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(cents, SCALE);
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        return Long.compare(cents, other.cents);
+    }
+
+    @Override
+    public String toString() {
+        return toBigDecimal().toPlainString();
+    }
+}
@@ -0,0 +1,21 @@
+package com.iodsky.orderly.model;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+import java.math.BigDecimal;
+
+// Stores Money in the existing numeric columns, so the schema is unchanged.
+@Converter(autoApply = true)
+public class MoneyConverter implements AttributeConverter<Money, BigDecimal> {
+
+    @Override
+    public BigDecimal convertToDatabaseColumn(Money money) {
+        return money == null ? null : money.toBigDecimal();
+    }
+
+    @Override
+    public Money convertToEntityAttribute(BigDecimal amount) {
+        return Money.of(amount);
+    }
+}
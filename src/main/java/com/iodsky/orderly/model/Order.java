@@ -1,6 +1,5 @@
 package com.iodsky.orderly.model;
 
-import java.math.BigDecimal;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.Set;
@@ -34,7 +33,7 @@ public class Order {
   @JsonIgnore
   private User user;
 
-  private BigDecimal totalAmount;
+  private Money totalAmount;
 
   @Enumerated(EnumType.STRING)
   private OrderStatus orderStatus;
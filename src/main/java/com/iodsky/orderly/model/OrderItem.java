@@ -1,6 +1,5 @@
 package com.iodsky.orderly.model;
 
-import java.math.BigDecimal;
 import java.util.UUID;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
@@ -38,5 +37,5 @@ public class OrderItem {
   private Product product;
 
   private int quantity;
-  private BigDecimal price;
+  private Money price;
 }
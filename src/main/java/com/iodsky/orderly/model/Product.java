@@ -3,10 +3,11 @@ package com.iodsky.orderly.model;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.ColumnDefault;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
 
-import java.math.BigDecimal;
 import java.util.Date;
 import java.util.List;
 import java.util.UUID;
@@ -16,8 +17,26 @@ import java.util.UUID;
 @Entity
 @NoArgsConstructor
 @AllArgsConstructor
-@Builder
-@Table(name = "products")
+@Builder(toBuilder = true)
+/*
+    One index per listing order (see ProductSort), alone and behind each equality filter that
+    commonly narrows a listing, so a sorted page is read in index order without a sort step.
+    The leading columns also serve the plain name, brand, category and price filters.
+ */
+@Table(name = "products", indexes = {
+        @Index(name = "idx_products_created_at_id", columnList = "created_at, id"),
+        @Index(name = "idx_products_price_id", columnList = "price, id"),
+        @Index(name = "idx_products_name_id", columnList = "name, id"),
+        @Index(name = "idx_products_stock_id", columnList = "stock, id"),
+        @Index(name = "idx_products_category_created_at_id", columnList = "category_id, created_at, id"),
+        @Index(name = "idx_products_category_price_id", columnList = "category_id, price, id"),
+        @Index(name = "idx_products_category_name_id", columnList = "category_id, name, id"),
+        @Index(name = "idx_products_category_stock_id", columnList = "category_id, stock, id"),
+        @Index(name = "idx_products_brand_created_at_id", columnList = "brand, created_at, id"),
+        @Index(name = "idx_products_brand_price_id", columnList = "brand, price, id"),
+        @Index(name = "idx_products_brand_name_id", columnList = "brand, name, id"),
+        @Index(name = "idx_products_brand_stock_id", columnList = "brand, stock, id")
+})
 public class Product {
     @Id
     @GeneratedValue(strategy = GenerationType.UUID)
@@ -25,7 +44,7 @@ public class Product {
     private String name;
     private String description;
     private String brand;
-    private BigDecimal price;
+    private Money price;
     private int stock;
 
     @ManyToOne()
@@ -33,14 +52,21 @@ public class Product {
     @JsonIgnore
     private Category category;
 
+    // Loaded for up to a full page of products in one query when first accessed.
     @OneToMany(mappedBy = "product", cascade = CascadeType.ALL, orphanRemoval = true)
+    @BatchSize(size = 100)
     @JsonIgnore
     private List<Image> images;
 
+    // Bumped by Hibernate on every update and explicitly when images change; see ResourceVersion.
+    @Version
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private Long version;
+
     @CreationTimestamp
     private Date createdAt;
 
     @UpdateTimestamp
-    @Column(updatable = false)
     private Date updatedAt;
 }
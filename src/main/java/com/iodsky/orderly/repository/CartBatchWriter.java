@@ -0,0 +1,66 @@
+package com.iodsky.orderly.repository;
+
+import com.iodsky.orderly.model.Money;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/*
+    Plain JDBC batches that write the state of cart lines held in memory, see HotCartStore.
+    Lines are written with their absolute quantity, so writing the same line twice is harmless.
+    Lines whose cart row no longer exists are not written; write returns those carts' ids.
+ */
+@Repository
+@RequiredArgsConstructor
+public class CartBatchWriter {
+
+    // Selecting the cart writes no row, instead of failing the batch, if compaction deleted the cart.
+    private static final String UPSERT = """
+            insert into cart_items (id, cart_id, product_id, quantity, unit_price, updated_at)
+            select ?, c.id, ?, ?, ?, now() from carts c where c.id = ?
+            on conflict (cart_id, product_id)
+            do update set quantity = excluded.quantity, updated_at = excluded.updated_at,
+                          version = cart_items.version + 1""";
+
+    private static final String DELETE = "delete from cart_items where cart_id = ? and product_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public record Line(UUID id, UUID cartId, UUID productId, int quantity, Money unitPrice) { }
+
+    public record Removal(UUID cartId, UUID productId) { }
+
+    public Set<UUID> write(List<Line> lines, List<Removal> removals) {
+        Set<UUID> missingCarts = new HashSet<>();
+        if (!lines.isEmpty()) {
+            int[][] counts = jdbcTemplate.batchUpdate(UPSERT, lines, lines.size(), (ps, line) -> {
+                ps.setObject(1, line.id());
+                ps.setObject(2, line.productId());
+                ps.setInt(3, line.quantity());
+                ps.setBigDecimal(4, line.unitPrice().toBigDecimal());
+                ps.setObject(5, line.cartId());
+            });
+            int index = 0;
+            for (int[] batch : counts) {
+                for (int count : batch) {
+                    if (count == 0) {
+                        missingCarts.add(lines.get(index).cartId());
+                    }
+                    index++;
+                }
+            }
+        }
+        if (!removals.isEmpty()) {
+            jdbcTemplate.batchUpdate(DELETE, removals, removals.size(), (ps, removal) -> {
+                ps.setObject(1, removal.cartId());
+                ps.setObject(2, removal.productId());
+            });
+        }
+        return missingCarts;
+    }
+}
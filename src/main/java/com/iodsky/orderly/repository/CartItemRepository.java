@@ -1,13 +1,93 @@
 package com.iodsky.orderly.repository;
 
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.Optional;
 import java.util.UUID;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.iodsky.orderly.model.CartItem;
+import com.iodsky.orderly.model.Money;
 
+/*
+    Item mutations are single statements that find the cart through its user and return the
+    affected row, so neither the cart nor its items are loaded. They rely on Postgres
+    (ON CONFLICT, RETURNING) and the unique (cart_id, product_id) constraint on CartItem.
+ */
 @Repository
 public interface CartItemRepository extends JpaRepository<CartItem, UUID> {
 
+  interface CartItemView {
+    UUID getId();
+    UUID getCartId();
+    UUID getProductId();
+    int getQuantity();
+    // Native results bypass MoneyConverter, so the column is read as is and wrapped below.
+    BigDecimal getUnitPriceAmount();
+
+    default Money getUnitPrice() {
+      return Money.of(getUnitPriceAmount());
+    }
+  }
+
+  // Adding to an existing item keeps its unit price.
+  default Optional<CartItemView> addQuantity(UUID id, UUID userId, UUID productId, int quantity, Money unitPrice) {
+    return addQuantity(id, userId, productId, quantity, unitPrice.toBigDecimal());
+  }
+
+  /*
+      Empty when the user has no cart yet. MoneyConverter does not apply to native query parameters,
+      so the price is bound as the column's BigDecimal; callers use the Money overload above.
+   */
+  @Transactional
+  @Query(nativeQuery = true, value = """
+          insert into cart_items (id, cart_id, product_id, quantity, unit_price, updated_at)
+          select :id, c.id, :productId, :quantity, :unitPrice, now() from carts c where c.user_id = :userId
+          on conflict (cart_id, product_id)
+          do update set quantity = cart_items.quantity + excluded.quantity, updated_at = excluded.updated_at,
+                        version = cart_items.version + 1
+          returning id, cart_id as "cartId", product_id as "productId", quantity, unit_price as "unitPriceAmount\"""")
+  Optional<CartItemView> addQuantity(UUID id, UUID userId, UUID productId, int quantity, BigDecimal unitPrice);
+
+  @Transactional
+  @Query(nativeQuery = true, value = """
+          update cart_items set quantity = :quantity, updated_at = now(), version = version + 1
+          where cart_id = (select c.id from carts c where c.user_id = :userId) and product_id = :productId
+          returning id, cart_id as "cartId", product_id as "productId", quantity, unit_price as "unitPriceAmount\"""")
+  Optional<CartItemView> setQuantity(UUID userId, UUID productId, int quantity);
+
+  @Transactional
+  @Query(nativeQuery = true, value = """
+          delete from cart_items
+          where cart_id = (select c.id from carts c where c.user_id = :userId) and product_id = :productId
+          returning id, cart_id as "cartId", product_id as "productId", quantity, unit_price as "unitPriceAmount\"""")
+  Optional<CartItemView> deleteByUserIdAndProductId(UUID userId, UUID productId);
+
+  @Query(nativeQuery = true, value = """
+          select i.id, i.cart_id as "cartId", i.product_id as "productId", i.quantity, i.unit_price as "unitPriceAmount"
+          from cart_items i join carts c on c.id = i.cart_id
+          where c.user_id = :userId and i.product_id = :productId""")
+  Optional<CartItemView> findViewByUserIdAndProductId(UUID userId, UUID productId);
+
+  // Compaction batches, see CartCompactionService. Each call is one bounded statement and transaction.
+  @Transactional
+  @Modifying
+  @Query(nativeQuery = true, value = """
+          update cart_items set updated_at = :now
+          where id in (select i.id from cart_items i where i.updated_at is null limit :limit)""")
+  int stampUndatedItems(Date now, int limit);
+
+  // Walks the updated_at index from the oldest item.
+  @Transactional
+  @Modifying
+  @Query(nativeQuery = true, value = """
+          delete from cart_items
+          where id in (select i.id from cart_items i
+                       where i.updated_at < :cutoff order by i.updated_at limit :limit)""")
+  int deleteItemsUpdatedBefore(Date cutoff, int limit);
 }
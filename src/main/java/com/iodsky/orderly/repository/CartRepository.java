@@ -1,15 +1,80 @@
 package com.iodsky.orderly.repository;
 
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.iodsky.orderly.model.Cart;
+import com.iodsky.orderly.model.Money;
 
 @Repository
 public interface CartRepository extends JpaRepository<Cart, UUID> {
 
+    // One row per cart item with its product name; an empty cart yields a single row without an item.
+    interface CartLineView {
+        UUID getCartId();
+        UUID getItemId();
+        UUID getProductId();
+        String getProductName();
+        Integer getQuantity();
+        Money getUnitPrice();
+    }
+
     Optional<Cart> findByUserId(UUID userId);
+
+    @Query("select c.id from Cart c where c.user.id = :userId")
+    Optional<UUID> findIdByUserId(UUID userId);
+
+    // Concurrent first requests of a user all succeed; only one of them creates the cart.
+    @Transactional
+    @Modifying
+    @Query(nativeQuery = true, value = """
+            insert into carts (id, user_id, created_at) values (:id, :userId, now()) on conflict do nothing""")
+    int insertIfAbsent(UUID id, UUID userId);
+
+    /*
+        For changing the cart's items. Item changes leave the cart row alone, so its version is
+        bumped on flush explicitly; two such changes to a cart then conflict instead of merging.
+     */
+    @Lock(LockModeType.OPTIMISTIC_FORCE_INCREMENT)
+    @Query("""
+            select distinct c from Cart c
+            left join fetch c.items i left join fetch i.product p left join fetch p.category
+            where c.user.id = :userId""")
+    Optional<Cart> findWithItemsByUserId(UUID userId);
+
+    @Query("""
+            select c.id as cartId, i.id as itemId, p.id as productId, p.name as productName,
+                   i.quantity as quantity, i.unitPrice as unitPrice
+            from Cart c left join c.items i left join i.product p
+            where c.user.id = :userId
+            order by p.name, i.id""")
+    List<CartLineView> findLinesByUserId(UUID userId);
+
+    // Empty carts older than the cutoff, in id order after the given id; see CartCompactionService.
+    @Query("""
+            select c.id from Cart c
+            where c.id > :after and (c.createdAt is null or c.createdAt < :cutoff)
+              and not exists (select 1 from CartItem i where i.cart = c)
+            order by c.id
+            limit :limit""")
+    List<UUID> findEmptyCartIds(UUID after, Date cutoff, int limit);
+
+    // Checks emptiness again, as an item may have been added since the carts were found.
+    @Transactional
+    @Modifying
+    @Query(nativeQuery = true, value = """
+            delete from carts c
+            where c.id in (:ids) and not exists (select 1 from cart_items i where i.cart_id = c.id)""")
+    int deleteEmptyCarts(Collection<UUID> ids);
 }
@@ -1,9 +1,11 @@
 package com.iodsky.orderly.repository;
 
+import java.util.Date;
 import java.util.Optional;
 import java.util.UUID;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import com.iodsky.orderly.model.Category;
@@ -13,4 +15,13 @@ public interface CategoryRepository extends JpaRepository<Category, UUID> {
 
   Optional<Category> findByName(String name);
 
+  interface CollectionVersionView {
+    long getCount();
+    Long getVersionSum();
+    Date getLastUpdated();
+  }
+
+  @Query("select count(c) as count, sum(c.version) as versionSum, max(c.updatedAt) as lastUpdated from Category c")
+  CollectionVersionView findCollectionVersion();
+
 }
@@ -1,13 +1,32 @@
 package com.iodsky.orderly.repository;
 
 import com.iodsky.orderly.model.Order;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 @Repository
 public interface OrderRepository extends JpaRepository<Order, UUID> {
     List<Order> findAllByUserId(UUID userId);
+
+    interface OrderProductView {
+        UUID getOrderId();
+        UUID getProductId();
+    }
+
+    // Items of one order arrive consecutively; must be consumed inside a transaction.
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("""
+            select i.order.id as orderId, i.product.id as productId
+            from OrderItem i
+            where i.product is not null
+            order by i.order.id""")
+    Stream<OrderProductView> streamOrderProducts();
 }
@@ -0,0 +1,60 @@
+package com.iodsky.orderly.repository;
+
+import com.iodsky.orderly.model.Product;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.UUID;
+
+/*
+    Plain JDBC batches for bulk imports and checkout, bypassing the persistence context.
+    Inserted products must arrive with their id, version and timestamps already set.
+    With reWriteBatchedInserts the Postgres driver sends each batch as multi-row inserts.
+ */
+@Repository
+@RequiredArgsConstructor
+public class ProductBatchWriter {
+
+    private static final String INSERT = """
+            insert into products (id, name, description, brand, price, stock, category_id, version, created_at, updated_at)
+            values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)""";
+
+    // Never takes stock below zero: a line asking for more than is left updates no row.
+    private static final String DECREASE_STOCK = """
+            update products set stock = stock - ?, version = version + 1, updated_at = ?
+            where id = ? and stock >= ?""";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public record StockLine(UUID productId, int quantity) { }
+
+    public void insert(List<Product> products) {
+        jdbcTemplate.batchUpdate(INSERT, products, products.size(), (ps, product) -> {
+            ps.setObject(1, product.getId());
+            ps.setString(2, product.getName());
+            ps.setString(3, product.getDescription());
+            ps.setString(4, product.getBrand());
+            ps.setBigDecimal(5, product.getPrice().toBigDecimal());
+            ps.setInt(6, product.getStock());
+            ps.setObject(7, product.getCategory().getId());
+            ps.setLong(8, product.getVersion());
+            ps.setTimestamp(9, new Timestamp(product.getCreatedAt().getTime()));
+            ps.setTimestamp(10, new Timestamp(product.getUpdatedAt().getTime()));
+        });
+    }
+
+    // All lines in one batch, returning the updated row count of each line in order (1 or 0).
+    public int[] decreaseStock(List<StockLine> lines) {
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        int[][] counts = jdbcTemplate.batchUpdate(DECREASE_STOCK, lines, lines.size(), (ps, line) -> {
+            ps.setInt(1, line.quantity());
+            ps.setTimestamp(2, now);
+            ps.setObject(3, line.productId());
+            ps.setInt(4, line.quantity());
+        });
+        return counts.length == 0 ? new int[0] : counts[0];
+    }
+}
@@ -0,0 +1,72 @@
+package com.iodsky.orderly.repository;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.iodsky.orderly.request.ProductFilter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+    Estimates how many products match a filter from the Postgres planner statistics
+    ("Plan Rows" of EXPLAIN), without executing the query.
+    The WHERE clause mirrors ProductSpecifications.matching and has to be kept in line with it.
+ */
+@Repository
+@RequiredArgsConstructor
+public class ProductCountEstimator {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+
+    public long estimate(ProductFilter filter) {
+        StringBuilder sql = new StringBuilder("EXPLAIN (FORMAT JSON) SELECT 1 FROM products p");
+        List<String> conditions = new ArrayList<>();
+        List<Object> args = new ArrayList<>();
+
+        if (StringUtils.hasText(filter.getCategory())) {
+            sql.append(" JOIN categories c ON c.id = p.category_id");
+            conditions.add("c.name = ?");
+            args.add(filter.getCategory());
+        }
+        if (StringUtils.hasText(filter.getName())) {
+            conditions.add("p.name = ?");
+            args.add(filter.getName());
+        }
+        if (StringUtils.hasText(filter.getBrand())) {
+            conditions.add("p.brand = ?");
+            args.add(filter.getBrand());
+        }
+        if (filter.getMinPrice() != null) {
+            conditions.add("p.price >= ?");
+            args.add(filter.getMinPrice());
+        }
+        if (filter.getMaxPrice() != null) {
+            conditions.add("p.price <= ?");
+            args.add(filter.getMaxPrice());
+        }
+        if (filter.isInStock()) {
+            conditions.add("p.stock > 0");
+        }
+        if (!conditions.isEmpty()) {
+            sql.append(" WHERE ").append(String.join(" AND ", conditions));
+        }
+
+        String plan = jdbcTemplate.queryForObject(sql.toString(), String.class, args.toArray());
+        return planRows(plan);
+    }
+
+    private long planRows(String plan) {
+        try {
+            JsonNode rows = objectMapper.readTree(plan).path(0).path("Plan").path("Plan Rows");
+            return Math.max(0, rows.asLong());
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("Unreadable query plan", ex);
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.iodsky.orderly.repository;
+
+import com.iodsky.orderly.dto.ProductDto;
+import com.iodsky.orderly.model.Product;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.domain.Specification;
+
+/*
+    Read path for product listings that selects ProductDto columns directly
+    instead of hydrating managed Product entities.
+ */
+public interface ProductListingRepository {
+
+    Page<ProductDto> findDtoPage(Specification<Product> spec, Pageable pageable);
+
+    Slice<ProductDto> findDtoSlice(Specification<Product> spec, Pageable pageable);
+}
@@ -0,0 +1,150 @@
+package com.iodsky.orderly.repository;
+
+import com.iodsky.orderly.dto.ImageDto;
+import com.iodsky.orderly.dto.ProductDto;
+import com.iodsky.orderly.model.Category;
+import com.iodsky.orderly.model.Money;
+import com.iodsky.orderly.model.Product;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.JoinType;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/*
+    Listing rows are read as tuples of exactly the ProductDto columns (category name via a
+    left join), so no entity, proxy or dirty-checking snapshot is created per row.
+    Images of the whole page are then attached with one IN query on images.product_id.
+ */
+@Transactional(readOnly = true)
+public class ProductListingRepositoryImpl implements ProductListingRepository {
+
+    private static final String IMAGES_QUERY = """
+            select i.id as id, i.fileName as fileName, i.fileType as fileType, i.product.id as productId
+            from Image i
+            where i.product.id in :productIds
+            order by i.createdAt""";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Page<ProductDto> findDtoPage(Specification<Product> spec, Pageable pageable) {
+        List<ProductDto> content = select(spec, pageable, pageable.getPageSize());
+        return PageableExecutionUtils.getPage(content, pageable, () -> count(spec));
+    }
+
+    @Override
+    public Slice<ProductDto> findDtoSlice(Specification<Product> spec, Pageable pageable) {
+        // One extra row tells whether another slice follows, without a count query.
+        List<ProductDto> content = select(spec, pageable, pageable.getPageSize() + 1);
+        boolean hasNext = content.size() > pageable.getPageSize();
+
+        return new SliceImpl<>(hasNext ? content.subList(0, pageable.getPageSize()) : content, pageable, hasNext);
+    }
+
+    private List<ProductDto> select(Specification<Product> spec, Pageable pageable, int maxResults) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<Product> root = query.from(Product.class);
+        Join<Product, Category> category = root.join("category", JoinType.LEFT);
+
+        query.multiselect(
+                root.get("id").alias("id"),
+                root.get("name").alias("name"),
+                root.get("description").alias("description"),
+                root.get("brand").alias("brand"),
+                root.get("price").alias("price"),
+                root.get("stock").alias("stock"),
+                root.get("createdAt").alias("createdAt"),
+                category.get("name").alias("category"));
+
+        Predicate predicate = spec.toPredicate(root, query, cb);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        if (pageable.getSort().isSorted()) {
+            query.orderBy(QueryUtils.toOrders(pageable.getSort(), root, cb));
+        }
+
+        List<Tuple> rows = entityManager.createQuery(query)
+                .setFirstResult((int) pageable.getOffset())
+                .setMaxResults(maxResults)
+                .getResultList();
+
+        List<ProductDto> products = new ArrayList<>(rows.size());
+        for (Tuple row : rows) {
+            products.add(ProductDto.builder()
+                    .id(row.get("id", UUID.class))
+                    .name(row.get("name", String.class))
+                    .description(row.get("description", String.class))
+                    .brand(row.get("brand", String.class))
+                    .price(row.get("price", Money.class).toBigDecimal())
+                    .stock(row.get("stock", Integer.class))
+                    .createdAt(row.get("createdAt", Date.class))
+                    .category(row.get("category", String.class))
+                    .images(new ArrayList<>())
+                    .build());
+        }
+
+        attachImages(products);
+        return products;
+    }
+
+    private void attachImages(List<ProductDto> products) {
+        if (products.isEmpty()) {
+            return;
+        }
+
+        Map<UUID, ProductDto> byId = new HashMap<>(products.size() * 2);
+        products.forEach(product -> byId.put(product.getId(), product));
+
+        List<Tuple> rows = entityManager.createQuery(IMAGES_QUERY, Tuple.class)
+                .setParameter("productIds", byId.keySet())
+                .getResultList();
+
+        for (Tuple row : rows) {
+            UUID productId = row.get("productId", UUID.class);
+            byId.get(productId).getImages().add(ImageDto.builder()
+                    .id(row.get("id", UUID.class))
+                    .fileName(row.get("fileName", String.class))
+                    .fileType(row.get("fileType", String.class))
+                    .productId(productId)
+                    .build());
+        }
+    }
+
+    private long count(Specification<Product> spec) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        Root<Product> root = query.from(Product.class);
+
+        query.select(cb.count(root));
+        Predicate predicate = spec.toPredicate(root, query, cb);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+
+        return entityManager.createQuery(query).getSingleResult();
+    }
+}
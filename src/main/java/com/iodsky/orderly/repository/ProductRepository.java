@@ -1,26 +1,98 @@
 package com.iodsky.orderly.repository;
 
 import com.iodsky.orderly.model.Product;
-import org.springframework.data.domain.Page;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 @Repository
-public interface ProductRepository extends JpaRepository<Product, UUID> {
-    Page<Product> findByCategoryName(String category, Pageable pageable);
+public interface ProductRepository extends JpaRepository<Product, UUID>, JpaSpecificationExecutor<Product>,
+        ProductListingRepository {
 
-    Page<Product> findByBrand(String brand, Pageable pageable);
+    Long countByBrandAndName(String brand, String name);
 
-    Page<Product> findByName(String name, Pageable pageable);
+    @EntityGraph(attributePaths = {"category", "images"})
+    Optional<Product> findWithDetailsById(UUID id);
 
-    Page<Product> findByCategoryNameAndBrand(String category, String brand, Pageable pageable);
+    @EntityGraph(attributePaths = {"category", "images"})
+    List<Product> findWithDetailsByIdIn(Collection<UUID> ids);
 
-    Page<Product> findByBrandAndName(String brand, String name, Pageable pageable);
+    interface VersionView {
+        Long getVersion();
+        Long getCategoryVersion();
+        Date getUpdatedAt();
+        Date getCategoryUpdatedAt();
+    }
 
-    Long countByBrandAndName(String brand, String name);
+    @Query("""
+            select p.version as version, c.version as categoryVersion,
+                   p.updatedAt as updatedAt, c.updatedAt as categoryUpdatedAt
+            from Product p left join p.category c
+            where p.id = :id""")
+    Optional<VersionView> findVersionById(UUID id);
+
+    // For changes that do not touch the products row itself, such as its images.
+    @Transactional
+    @Modifying
+    @Query("update Product p set p.version = p.version + 1, p.updatedAt = current_timestamp where p.id = :id")
+    int incrementVersion(UUID id);
+
+    interface StockView {
+        Product getProduct();
+        int getStock();
+        long getVersion();
+    }
+
+    // The stock and version as stored, next to the product, which may be an older managed copy.
+    @Query("""
+            select p as product, p.stock as stock, p.version as version
+            from Product p left join fetch p.category where p.id in :ids""")
+    List<StockView> findStockByIdIn(Collection<UUID> ids);
+
+    interface StockLevel {
+        UUID getId();
+        int getStock();
+        long getVersion();
+    }
+
+    // Stock of the whole catalog without loading entities, for InventoryReservations.
+    @Query("select p.id as id, p.stock as stock, p.version as version from Product p")
+    List<StockLevel> findAllStockLevels();
+
+    @Query("select p.id as id, p.stock as stock, p.version as version from Product p where p.id in :ids")
+    List<StockLevel> findStockLevelsByIdIn(Collection<UUID> ids);
+
+    /*
+        Forward-only read of the whole catalog for exports. Rows arrive from the driver in chunks
+        of the fetch size (Postgres only honours it inside a transaction), and entities are read-only
+        so Hibernate keeps no snapshots; callers still have to clear the persistence context.
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("select p from Product p left join fetch p.category order by p.createdAt, p.id")
+    Stream<Product> streamAll();
+
+    default Slice<Product> findSlice(Specification<Product> spec, Pageable pageable) {
+        return findBy(spec, query -> query.project("category").slice(pageable));
+    }
 
 }
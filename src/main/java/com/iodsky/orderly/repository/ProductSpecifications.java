@@ -0,0 +1,59 @@
+package com.iodsky.orderly.repository;
+
+import com.iodsky.orderly.dto.ProductCursor;
+import com.iodsky.orderly.model.Money;
+import com.iodsky.orderly.model.Product;
+import com.iodsky.orderly.request.ProductFilter;
+import jakarta.persistence.criteria.Predicate;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+/*
+    Every product listing goes through these specifications so that any subset of
+    filters ends up as a single WHERE clause of plain equality/range predicates,
+    each of which is backed by an index declared on Product.
+ */
+public class ProductSpecifications {
+
+    private ProductSpecifications() {}
+
+    public static Specification<Product> matching(ProductFilter filter) {
+        return (root, query, cb) -> {
+            List<Predicate> predicates = new ArrayList<>();
+
+            if (StringUtils.hasText(filter.getName())) {
+                predicates.add(cb.equal(root.get("name"), filter.getName()));
+            }
+            if (StringUtils.hasText(filter.getCategory())) {
+                predicates.add(cb.equal(root.join("category").get("name"), filter.getCategory()));
+            }
+            if (StringUtils.hasText(filter.getBrand())) {
+                predicates.add(cb.equal(root.get("brand"), filter.getBrand()));
+            }
+            if (filter.getMinPrice() != null) {
+                predicates.add(cb.greaterThanOrEqualTo(root.<Money>get("price"), Money.of(filter.getMinPrice())));
+            }
+            if (filter.getMaxPrice() != null) {
+                predicates.add(cb.lessThanOrEqualTo(root.<Money>get("price"), Money.of(filter.getMaxPrice())));
+            }
+            if (filter.isInStock()) {
+                predicates.add(cb.greaterThan(root.<Integer>get("stock"), 0));
+            }
+
+            return cb.and(predicates.toArray(Predicate[]::new));
+        };
+    }
+
+    public static Specification<Product> after(ProductCursor cursor) {
+        return (root, query, cb) -> cb.or(
+                cb.greaterThan(root.<Date>get("createdAt"), cursor.createdAt()),
+                cb.and(
+                        cb.equal(root.get("createdAt"), cursor.createdAt()),
+                        cb.greaterThan(root.<UUID>get("id"), cursor.id())));
+    }
+}
@@ -0,0 +1,39 @@
+package com.iodsky.orderly.request;
+
+import java.util.UUID;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.validation.constraints.AssertTrue;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CartItemOperation {
+
+  public enum Type {
+    ADD, SET, REMOVE
+  }
+
+  @NotNull(message = "Operation type is required")
+  private Type type;
+
+  @NotNull(message = "Product id is required")
+  private UUID productId;
+
+  // Added for ADD, the new quantity for SET (0 or less removes the item), ignored for REMOVE.
+  @Builder.Default
+  private int quantity = 1;
+
+  // A zero or negative ADD would create a non-positive line or quietly shrink an existing one.
+  @JsonIgnore
+  @AssertTrue(message = "Quantity must be positive to add")
+  public boolean isQuantityValid() {
+    return type != Type.ADD || quantity > 0;
+  }
+}
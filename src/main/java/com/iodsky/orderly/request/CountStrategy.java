@@ -0,0 +1,19 @@
+package com.iodsky.orderly.request;
+
+import java.util.Locale;
+
+/*
+    How the total of a paginated listing is obtained:
+      - EXACT: a count query per request
+      - CACHED: an exact count reused per filter until the catalog changes or it expires
+      - ESTIMATED: the row estimate of the Postgres planner, exact only for small results
+ */
+public enum CountStrategy {
+    EXACT,
+    CACHED,
+    ESTIMATED;
+
+    public static CountStrategy from(String value) {
+        return valueOf(value.trim().toUpperCase(Locale.ROOT));
+    }
+}
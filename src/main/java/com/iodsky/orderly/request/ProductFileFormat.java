@@ -0,0 +1,38 @@
+package com.iodsky.orderly.request;
+
+import org.springframework.http.MediaType;
+
+import java.util.Locale;
+
+// Formats of bulk product import and export.
+public enum ProductFileFormat {
+    CSV("text/csv"),
+    NDJSON("application/x-ndjson");
+
+    private final MediaType mediaType;
+
+    ProductFileFormat(String mediaType) {
+        this.mediaType = MediaType.valueOf(mediaType);
+    }
+
+    public MediaType getMediaType() {
+        return mediaType;
+    }
+
+    public String getFileExtension() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+
+    public static ProductFileFormat from(MediaType contentType) {
+        for (ProductFileFormat format : values()) {
+            if (format.mediaType.includes(contentType)) {
+                return format;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported import format " + contentType);
+    }
+
+    public static ProductFileFormat from(String value) {
+        return valueOf(value.trim().toUpperCase(Locale.ROOT));
+    }
+}
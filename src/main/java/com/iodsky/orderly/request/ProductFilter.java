@@ -0,0 +1,17 @@
+package com.iodsky.orderly.request;
+
+import java.math.BigDecimal;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class ProductFilter {
+  private String name;
+  private String category;
+  private String brand;
+  private BigDecimal minPrice;
+  private BigDecimal maxPrice;
+  private boolean inStock;
+}
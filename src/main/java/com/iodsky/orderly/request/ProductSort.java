@@ -0,0 +1,32 @@
+package com.iodsky.orderly.request;
+
+import org.springframework.data.domain.Sort;
+
+import java.util.Locale;
+
+/*
+    Orders of product listings. Ties break on id in the same direction, so the order is total
+    and stable across pages, and every order matches one of the (…, key, id) indexes on Product
+    scanned forwards or backwards.
+ */
+public enum ProductSort {
+    NEWEST(Sort.Direction.DESC, "createdAt"),
+    PRICE_ASC(Sort.Direction.ASC, "price"),
+    PRICE_DESC(Sort.Direction.DESC, "price"),
+    NAME(Sort.Direction.ASC, "name"),
+    STOCK(Sort.Direction.DESC, "stock");
+
+    private final Sort sort;
+
+    ProductSort(Sort.Direction direction, String property) {
+        this.sort = Sort.by(direction, property, "id");
+    }
+
+    public Sort getSort() {
+        return sort;
+    }
+
+    public static ProductSort from(String value) {
+        return valueOf(value.trim().toUpperCase(Locale.ROOT));
+    }
+}
@@ -0,0 +1,18 @@
+package com.iodsky.orderly.request;
+
+import java.util.List;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+@Data
+public class UpdateCartItemsRequest {
+
+  public static final int MAX_OPERATIONS = 100;
+
+  @NotEmpty(message = "At least one operation is required")
+  @Size(max = MAX_OPERATIONS, message = "At most " + MAX_OPERATIONS + " operations are allowed")
+  private List<@Valid CartItemOperation> operations;
+}
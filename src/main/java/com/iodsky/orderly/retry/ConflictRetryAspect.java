@@ -0,0 +1,96 @@
+package com.iodsky.orderly.retry;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+    Retries methods annotated with @RetryOnConflict that fail with a ConcurrencyFailureException.
+    --------------------------------------------------------------------------------------------
+    - Runs outside of the method's own transaction (highest precedence), so every attempt gets a
+      new transaction that reads the current rows; nothing is locked while waiting.
+    - Called inside a caller's transaction it does not retry: that transaction is rolled back
+      already, and only the caller can start over. An EntityManager open for the whole request
+      is cleared before the next attempt, so it reads the rows again.
+    - Waits a random time up to an exponentially growing bound between attempts (full jitter),
+      so requests that collided once do not collide again in lockstep.
+    - After max-attempts the last failure is rethrown; GlobalExceptionHandler answers 409.
+    Attempts are counted in orderly.retry.conflicts, tagged by method and outcome.
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class ConflictRetryAspect {
+
+    private final Logger logger = LoggerFactory.getLogger(ConflictRetryAspect.class);
+
+    private final int maxAttempts;
+    private final long initialBackoffNanos;
+    private final long maxBackoffNanos;
+    private final MeterRegistry meterRegistry;
+
+    public ConflictRetryAspect(@Value("${orderly.retry.max-attempts}") int maxAttempts,
+                               @Value("${orderly.retry.initial-backoff}") Duration initialBackoff,
+                               @Value("${orderly.retry.max-backoff}") Duration maxBackoff,
+                               MeterRegistry meterRegistry) {
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffNanos = initialBackoff.toNanos();
+        this.maxBackoffNanos = maxBackoff.toNanos();
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Around("@annotation(com.iodsky.orderly.retry.RetryOnConflict)")
+    public Object retry(ProceedingJoinPoint joinPoint) throws Throwable {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return joinPoint.proceed();
+        }
+
+        String method = joinPoint.getSignature().toShortString();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return joinPoint.proceed();
+            } catch (ConcurrencyFailureException ex) {
+                if (attempt >= maxAttempts) {
+                    meterRegistry.counter("orderly.retry.conflicts", "method", method, "outcome", "exhausted")
+                            .increment();
+                    logger.warn("{} still conflicting after {} attempts", method, attempt);
+                    throw ex;
+                }
+                meterRegistry.counter("orderly.retry.conflicts", "method", method, "outcome", "retried").increment();
+                logger.debug("{} conflicted on attempt {}: {}", method, attempt, ex.getMessage());
+                clearBoundEntityManagers();
+                backoff(attempt);
+            }
+        }
+    }
+
+    // An EntityManager kept open for the request (open in view) still holds the stale rows.
+    private void clearBoundEntityManagers() {
+        for (Object resource : TransactionSynchronizationManager.getResourceMap().values()) {
+            if (resource instanceof EntityManagerHolder holder) {
+                holder.getEntityManager().clear();
+            }
+        }
+    }
+
+    private void backoff(int attempt) {
+        long bound = Math.min(maxBackoffNanos, initialBackoffNanos << Math.min(attempt - 1, 30));
+        if (bound > 0) {
+            LockSupport.parkNanos(ThreadLocalRandom.current().nextLong(bound + 1));
+        }
+    }
+}
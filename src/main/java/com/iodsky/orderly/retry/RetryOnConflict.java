@@ -0,0 +1,17 @@
+package com.iodsky.orderly.retry;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/*
+    Reruns the method when it fails on a concurrent change (a stale @Version, a lost race for a
+    unique row), see ConflictRetryAspect. The method must be safe to run again from the start.
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface RetryOnConflict {
+}
@@ -0,0 +1,165 @@
+package com.iodsky.orderly.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/*
+    Item-to-item co-occurrence counts ("bought together") with a bounded neighbour list per item.
+    --------------------------------------------------------------------------------------------
+    - Items are addressed by dense int ids; each item keeps parallel int arrays of neighbour ids
+      and counts, ordered by count (descending), so the top K are simply the first K entries.
+    - A list holds at most `capacity` neighbours. When it is full, a new neighbour replaces the
+      weakest one and inherits its count plus one (the Space-Saving scheme), so a pair that keeps
+      co-occurring climbs back in while one-off pairs are pushed out.
+    - Removed items keep their id, so stale references in other lists are skipped, never misread.
+ */
+public class CoOccurrenceIndex {
+
+    private final int capacity;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<UUID, Integer> ids = new HashMap<>();
+
+    private UUID[] keys = new UUID[1024];
+    private Neighbours[] neighbours = new Neighbours[1024];
+    private int maxId;
+
+    public record Neighbour(UUID key, int count) { }
+
+    public CoOccurrenceIndex(int capacity) {
+        this.capacity = capacity;
+    }
+
+    // Counts each pair of distinct items in the basket once, in the lists of both items.
+    public void add(List<UUID> items) {
+        lock.writeLock().lock();
+        try {
+            int[] basket = new LinkedHashSet<>(items).stream().mapToInt(this::idOf).toArray();
+
+            for (int i = 0; i < basket.length; i++) {
+                for (int j = 0; j < basket.length; j++) {
+                    if (i != j) {
+                        neighbours[basket[i]].increment(basket[j], capacity);
+                    }
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(UUID key) {
+        lock.writeLock().lock();
+        try {
+            Integer id = ids.remove(key);
+            if (id != null) {
+                keys[id] = null;
+                neighbours[id] = null;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public List<Neighbour> top(UUID key, int limit) {
+        lock.readLock().lock();
+        try {
+            Integer id = ids.get(key);
+            if (id == null) {
+                return List.of();
+            }
+
+            Neighbours list = neighbours[id];
+            List<Neighbour> top = new ArrayList<>(Math.min(limit, list.size));
+            for (int i = 0; i < list.size && top.size() < limit; i++) {
+                UUID neighbour = keys[list.ids[i]];
+                if (neighbour != null) {
+                    top.add(new Neighbour(neighbour, list.counts[i]));
+                }
+            }
+            return top;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return ids.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int idOf(UUID key) {
+        Integer existing = ids.get(key);
+        if (existing != null) {
+            return existing;
+        }
+
+        int id = maxId++;
+        if (id == keys.length) {
+            keys = Arrays.copyOf(keys, id * 2);
+            neighbours = Arrays.copyOf(neighbours, id * 2);
+        }
+        keys[id] = key;
+        neighbours[id] = new Neighbours();
+        ids.put(key, id);
+        return id;
+    }
+
+    private static final class Neighbours {
+        private int[] ids = new int[4];
+        private int[] counts = new int[4];
+        private int size;
+
+        void increment(int id, int capacity) {
+            int index = indexOf(id);
+
+            if (index < 0 && size < capacity) {
+                if (size == ids.length) {
+                    ids = Arrays.copyOf(ids, Math.min(size * 2, capacity));
+                    counts = Arrays.copyOf(counts, ids.length);
+                }
+                index = size++;
+                ids[index] = id;
+                counts[index] = 0;
+            } else if (index < 0) {
+                index = size - 1;
+                ids[index] = id;
+            }
+
+            counts[index]++;
+            // Move up past neighbours it now outnumbers, keeping counts in descending order.
+            while (index > 0 && counts[index - 1] < counts[index]) {
+                swap(index - 1, index);
+                index--;
+            }
+        }
+
+        private int indexOf(int id) {
+            for (int i = 0; i < size; i++) {
+                if (ids[i] == id) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private void swap(int i, int j) {
+            int id = ids[i];
+            int count = counts[i];
+            ids[i] = ids[j];
+            counts[i] = counts[j];
+            ids[j] = id;
+            counts[j] = count;
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package com.iodsky.orderly.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/*
+    In-memory inverted index ranked with Okapi BM25.
+    ------------------------------------------------
+    - Every document is addressed by a dense int id, posting lists are parallel int arrays
+      (doc ids + term frequencies) so scoring never boxes or chases pointers.
+    - Updates are incremental: a document is removed from the postings of the terms it had
+      and added to the postings of its new terms; freed ids are recycled. Each document keeps
+      its slot in every posting list it is on, so leaving a list moves its last entry into
+      the freed slot instead of scanning the list.
+    - Scores are summed in an open-addressing table sized to the postings of the query terms,
+      allocated per search, so no buffer sized to the whole index is kept per thread.
+    - Readers share a read lock, writers take the write lock.
+ */
+public class InvertedIndex {
+
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Postings> postings = new HashMap<>();
+    private final Map<UUID, Integer> docIds = new HashMap<>();
+
+    private UUID[] keys = new UUID[1024];
+    private String[][] docTerms = new String[1024][];
+    // docSlots[doc][i] is the doc's slot in the postings of docTerms[doc][i].
+    private int[][] docSlots = new int[1024][];
+    private int[] docLengths = new int[1024];
+    private int[] freeDocs = new int[64];
+    private int freeCount;
+    private int maxDoc;
+    private long totalLength;
+
+    public record Hit(UUID key, float score) { }
+
+    public void put(UUID key, Map<String, Integer> termFrequencies) {
+        lock.writeLock().lock();
+        try {
+            Integer existing = docIds.get(key);
+            if (existing != null) {
+                unindex(existing);
+            }
+
+            int doc = existing != null ? existing : allocate(key);
+            String[] terms = termFrequencies.keySet().toArray(String[]::new);
+            int[] slots = new int[terms.length];
+            int length = 0;
+
+            for (int i = 0; i < terms.length; i++) {
+                int frequency = termFrequencies.get(terms[i]);
+                slots[i] = postings.computeIfAbsent(terms[i], t -> new Postings()).add(doc, i, frequency);
+                length += frequency;
+            }
+
+            docTerms[doc] = terms;
+            docSlots[doc] = slots;
+            docLengths[doc] = length;
+            totalLength += length;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(UUID key) {
+        lock.writeLock().lock();
+        try {
+            Integer doc = docIds.remove(key);
+            if (doc == null) {
+                return;
+            }
+
+            unindex(doc);
+            keys[doc] = null;
+            if (freeCount == freeDocs.length) {
+                freeDocs = Arrays.copyOf(freeDocs, freeCount * 2);
+            }
+            freeDocs[freeCount++] = doc;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return docIds.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public List<Hit> search(Collection<String> terms, int limit) {
+        lock.readLock().lock();
+        try {
+            int docCount = docIds.size();
+            if (docCount == 0 || limit <= 0) {
+                return List.of();
+            }
+
+            float averageLength = (float) totalLength / docCount;
+            List<Postings> lists = new ArrayList<>();
+            int postingCount = 0;
+            for (String term : new LinkedHashSet<>(terms)) {
+                Postings list = postings.get(term);
+                if (list != null) {
+                    lists.add(list);
+                    postingCount += list.size;
+                }
+            }
+            if (postingCount == 0) {
+                return List.of();
+            }
+
+            Scores scores = new Scores(postingCount);
+            for (Postings list : lists) {
+                float idf = (float) Math.log(1 + (docCount - list.size + 0.5) / (list.size + 0.5));
+                for (int i = 0; i < list.size; i++) {
+                    int doc = list.docs[i];
+                    int frequency = list.frequencies[i];
+                    float norm = K1 * (1 - B + B * docLengths[doc] / averageLength);
+                    scores.add(doc, idf * frequency * (K1 + 1) / (frequency + norm));
+                }
+            }
+
+            return topHits(scores, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private List<Hit> topHits(Scores table, int limit) {
+        // Min-heap of table slots ordered by score, holding at most `limit` entries.
+        float[] scores = table.scores;
+        int[] heap = new int[Math.min(limit, table.size)];
+        int heapSize = 0;
+
+        for (int slot = 0; slot < table.docs.length; slot++) {
+            if (table.docs[slot] < 0) {
+                continue;
+            }
+            if (heapSize < heap.length) {
+                heap[heapSize] = slot;
+                siftUp(heap, heapSize++, scores);
+            } else if (scores[slot] > scores[heap[0]]) {
+                heap[0] = slot;
+                siftDown(heap, heapSize, scores);
+            }
+        }
+
+        List<Hit> hits = new ArrayList<>(heapSize);
+        while (heapSize > 0) {
+            int slot = heap[0];
+            hits.add(new Hit(keys[table.docs[slot]], scores[slot]));
+            heap[0] = heap[--heapSize];
+            siftDown(heap, heapSize, scores);
+        }
+        return hits.reversed();
+    }
+
+    private static void siftUp(int[] heap, int index, float[] scores) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (scores[heap[parent]] <= scores[heap[index]]) {
+                return;
+            }
+            swap(heap, parent, index);
+            index = parent;
+        }
+    }
+
+    private static void siftDown(int[] heap, int size, float[] scores) {
+        int index = 0;
+        while (true) {
+            int smallest = index;
+            int left = 2 * index + 1;
+            int right = left + 1;
+
+            if (left < size && scores[heap[left]] < scores[heap[smallest]]) {
+                smallest = left;
+            }
+            if (right < size && scores[heap[right]] < scores[heap[smallest]]) {
+                smallest = right;
+            }
+            if (smallest == index) {
+                return;
+            }
+            swap(heap, index, smallest);
+            index = smallest;
+        }
+    }
+
+    private static void swap(int[] heap, int i, int j) {
+        int tmp = heap[i];
+        heap[i] = heap[j];
+        heap[j] = tmp;
+    }
+
+    private int allocate(UUID key) {
+        int doc;
+        if (freeCount > 0) {
+            doc = freeDocs[--freeCount];
+        } else {
+            doc = maxDoc++;
+            if (doc == keys.length) {
+                int capacity = keys.length * 2;
+                keys = Arrays.copyOf(keys, capacity);
+                docTerms = Arrays.copyOf(docTerms, capacity);
+                docSlots = Arrays.copyOf(docSlots, capacity);
+                docLengths = Arrays.copyOf(docLengths, capacity);
+            }
+        }
+
+        keys[doc] = key;
+        docIds.put(key, doc);
+        return doc;
+    }
+
+    private void unindex(int doc) {
+        String[] terms = docTerms[doc];
+        for (int i = 0; i < terms.length; i++) {
+            Postings list = postings.get(terms[i]);
+            list.removeAt(docSlots[doc][i], docSlots);
+            if (list.size == 0) {
+                postings.remove(terms[i]);
+            }
+        }
+
+        totalLength -= docLengths[doc];
+        docTerms[doc] = null;
+        docSlots[doc] = null;
+        docLengths[doc] = 0;
+    }
+
+    // termIndexes[i] is the index of this list's term in docTerms[docs[i]], to find the doc's slot entry.
+    private static final class Postings {
+        private int[] docs = new int[4];
+        private int[] frequencies = new int[4];
+        private int[] termIndexes = new int[4];
+        private int size;
+
+        int add(int doc, int termIndex, int frequency) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                frequencies = Arrays.copyOf(frequencies, size * 2);
+                termIndexes = Arrays.copyOf(termIndexes, size * 2);
+            }
+            docs[size] = doc;
+            frequencies[size] = frequency;
+            termIndexes[size] = termIndex;
+            return size++;
+        }
+
+        // Moves the last entry into the freed slot and points its doc at the new slot.
+        void removeAt(int slot, int[][] docSlots) {
+            int last = --size;
+            if (slot != last) {
+                docs[slot] = docs[last];
+                frequencies[slot] = frequencies[last];
+                termIndexes[slot] = termIndexes[last];
+                docSlots[docs[slot]][termIndexes[slot]] = slot;
+            }
+        }
+    }
+
+    // Score per doc id with linear probing; at most half full, as it holds at most postingCount docs.
+    private static final class Scores {
+        private final int[] docs;
+        private final float[] scores;
+        private final int shift;
+        private int size;
+
+        Scores(int postingCount) {
+            int capacity = Integer.highestOneBit(postingCount * 2 - 1) * 2;
+            docs = new int[capacity];
+            scores = new float[capacity];
+            shift = 32 - Integer.numberOfTrailingZeros(capacity);
+            Arrays.fill(docs, -1);
+        }
+
+        void add(int doc, float score) {
+            int mask = docs.length - 1;
+            int slot = (doc * 0x9E3779B9) >>> shift;
+            while (docs[slot] != doc) {
+                if (docs[slot] < 0) {
+                    docs[slot] = doc;
+                    size++;
+                    break;
+                }
+                slot = (slot + 1) & mask;
+            }
+            scores[slot] += score;
+        }
+    }
+}
@@ -0,0 +1,379 @@
+package com.iodsky.orderly.search;
+
+import com.iodsky.orderly.request.ProductFilter;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.util.StringUtils;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/*
+    Bitmap index answering "how many products per category / brand / price bucket
+    match the current filter" without touching the database.
+    -----------------------------------------------------------------------------
+    - Every product gets a dense int id; each category, brand and price bucket owns a
+      compressed RoaringBitmap of the ids having it, so a filter is a few container-wise ANDs
+      and memory follows the number of ids set, not the highest id.
+    - Names are mostly unique, so they get no bitmaps: the rare exact-name filter reads the
+      name ordinal stored per id instead.
+    - A value is counted with one AND-cardinality against its bitmap, or from the matching ids
+      when fewer ids match than there are values. Without filters the bitmap sizes are the counts.
+    - A price range takes the buckets it covers whole and checks the prices of the ids in the
+      at most two buckets it cuts.
+    - Facets are disjunctive: the counts of a dimension ignore that dimension's own filter,
+      which is what lets the UI show the alternatives to the selected brand or category.
+ */
+public class ProductFacetIndex {
+
+    public static final String CATEGORY = "category";
+    public static final String BRAND = "brand";
+    public static final String PRICE = "price";
+
+    private static final BigDecimal[] PRICE_BOUNDS = {
+            BigDecimal.valueOf(25), BigDecimal.valueOf(50), BigDecimal.valueOf(100),
+            BigDecimal.valueOf(250), BigDecimal.valueOf(500)
+    };
+    private static final String[] PRICE_BUCKETS = {"0-25", "25-50", "50-100", "100-250", "250-500", "500+"};
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<UUID, Integer> docIds = new HashMap<>();
+    private final Dimension names = new Dimension(false);
+    private final Dimension categories = new Dimension(true);
+    private final Dimension brands = new Dimension(true);
+    private final RoaringBitmap[] priceBuckets = new RoaringBitmap[PRICE_BUCKETS.length];
+    private final RoaringBitmap inStock = new RoaringBitmap();
+
+    private UUID[] keys = new UUID[1024];
+    private BigDecimal[] prices = new BigDecimal[1024];
+    private int[] freeDocs = new int[64];
+    private int freeCount;
+    private int maxDoc;
+
+    public record Document(String name, String category, String brand, BigDecimal price, int stock) { }
+
+    public ProductFacetIndex() {
+        Arrays.setAll(priceBuckets, i -> new RoaringBitmap());
+    }
+
+    public void put(UUID key, Document document) {
+        lock.writeLock().lock();
+        try {
+            Integer existing = docIds.get(key);
+            int doc = existing != null ? existing : allocate(key);
+
+            names.set(doc, document.name());
+            categories.set(doc, document.category());
+            brands.set(doc, document.brand());
+            setPrice(doc, document.price());
+            if (document.stock() > 0) {
+                inStock.add(doc);
+            } else {
+                inStock.remove(doc);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(UUID key) {
+        lock.writeLock().lock();
+        try {
+            Integer doc = docIds.remove(key);
+            if (doc == null) {
+                return;
+            }
+
+            names.clear(doc);
+            categories.clear(doc);
+            brands.clear(doc);
+            setPrice(doc, null);
+            inStock.remove(doc);
+            keys[doc] = null;
+
+            if (freeCount == freeDocs.length) {
+                freeDocs = Arrays.copyOf(freeDocs, freeCount * 2);
+            }
+            freeDocs[freeCount++] = doc;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void renameCategory(String from, String to) {
+        lock.writeLock().lock();
+        try {
+            categories.rename(from, to);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return docIds.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Map<String, Map<String, Long>> facets(ProductFilter filter) {
+        lock.readLock().lock();
+        try {
+            RoaringBitmap name = names.matching(filter.getName(), maxDoc);
+            RoaringBitmap category = categories.matching(filter.getCategory(), maxDoc);
+            RoaringBitmap brand = brands.matching(filter.getBrand(), maxDoc);
+            RoaringBitmap price = priceRange(filter.getMinPrice(), filter.getMaxPrice());
+            RoaringBitmap stock = filter.isInStock() ? inStock : null;
+
+            Map<String, Map<String, Long>> facets = new LinkedHashMap<>();
+            facets.put(CATEGORY, categories.count(intersect(name, brand, price, stock)));
+            facets.put(BRAND, brands.count(intersect(name, category, price, stock)));
+            facets.put(PRICE, countPrices(intersect(name, category, brand, stock)));
+            return facets;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /*
+        Null means "every product". Every bitmap only holds ids of indexed products, so there
+        is no need to AND with the live ids; a single filter is returned as is, never modified.
+     */
+    private static RoaringBitmap intersect(RoaringBitmap... filters) {
+        RoaringBitmap result = null;
+        for (RoaringBitmap filter : filters) {
+            if (filter != null) {
+                result = result == null ? filter : RoaringBitmap.and(result, filter);
+            }
+        }
+        return result;
+    }
+
+    private RoaringBitmap priceRange(BigDecimal min, BigDecimal max) {
+        if (min == null && max == null) {
+            return null;
+        }
+
+        RoaringBitmap result = new RoaringBitmap();
+        for (int bucket = 0; bucket < priceBuckets.length; bucket++) {
+            // Bucket prices are >= lower and < upper; null means unbounded.
+            BigDecimal lower = bucket > 0 ? PRICE_BOUNDS[bucket - 1] : null;
+            BigDecimal upper = bucket < PRICE_BOUNDS.length ? PRICE_BOUNDS[bucket] : null;
+
+            boolean above = min != null && upper != null && upper.compareTo(min) <= 0;
+            boolean below = max != null && lower != null && lower.compareTo(max) > 0;
+            if (above || below) {
+                continue;
+            }
+
+            boolean covered = (min == null || lower != null && lower.compareTo(min) >= 0)
+                    && (max == null || upper != null && upper.compareTo(max) <= 0);
+            if (covered) {
+                result.or(priceBuckets[bucket]);
+                continue;
+            }
+
+            for (int doc : priceBuckets[bucket]) {
+                BigDecimal price = prices[doc];
+                if ((min == null || price.compareTo(min) >= 0) && (max == null || price.compareTo(max) <= 0)) {
+                    result.add(doc);
+                }
+            }
+        }
+        return result;
+    }
+
+    private Map<String, Long> countPrices(RoaringBitmap docs) {
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (int i = 0; i < priceBuckets.length; i++) {
+            long count = docs == null
+                    ? priceBuckets[i].getLongCardinality()
+                    : RoaringBitmap.andCardinality(docs, priceBuckets[i]);
+            if (count > 0) {
+                result.put(PRICE_BUCKETS[i], count);
+            }
+        }
+        return result;
+    }
+
+    private void setPrice(int doc, BigDecimal price) {
+        BigDecimal previous = prices[doc];
+        if (previous != null) {
+            priceBuckets[bucketOf(previous)].remove(doc);
+        }
+        prices[doc] = price;
+        if (price != null) {
+            priceBuckets[bucketOf(price)].add(doc);
+        }
+    }
+
+    private static Map<String, Long> byCountDescending(Map<String, Long> counts) {
+        Map<String, Long> sorted = new LinkedHashMap<>();
+        counts.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+                .forEach(entry -> sorted.put(entry.getKey(), entry.getValue()));
+        return sorted;
+    }
+
+    private static int bucketOf(BigDecimal price) {
+        int bucket = 0;
+        while (bucket < PRICE_BOUNDS.length && price.compareTo(PRICE_BOUNDS[bucket]) >= 0) {
+            bucket++;
+        }
+        return bucket;
+    }
+
+    private int allocate(UUID key) {
+        int doc;
+        if (freeCount > 0) {
+            doc = freeDocs[--freeCount];
+        } else {
+            doc = maxDoc++;
+            if (doc == keys.length) {
+                int capacity = keys.length * 2;
+                keys = Arrays.copyOf(keys, capacity);
+                prices = Arrays.copyOf(prices, capacity);
+                names.grow(capacity);
+                categories.grow(capacity);
+                brands.grow(capacity);
+            }
+        }
+
+        keys[doc] = key;
+        docIds.put(key, doc);
+        return doc;
+    }
+
+    /*
+        One facet dimension: the distinct values, the value ordinal of every id (-1 when the id
+        has no value) and, when indexed, the ids holding each value.
+     */
+    private static final class Dimension {
+        private final boolean indexed;
+        private final Map<String, Integer> ordinals = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+        private final List<RoaringBitmap> postings = new ArrayList<>();
+        private int[] docOrdinals = new int[0];
+
+        Dimension(boolean indexed) {
+            this.indexed = indexed;
+            grow(1024);
+        }
+
+        void set(int doc, String value) {
+            clear(doc);
+            if (!StringUtils.hasText(value)) {
+                return;
+            }
+
+            int ordinal = ordinals.computeIfAbsent(value, v -> {
+                values.add(v);
+                if (indexed) {
+                    postings.add(new RoaringBitmap());
+                }
+                return values.size() - 1;
+            });
+            if (indexed) {
+                postings.get(ordinal).add(doc);
+            }
+            docOrdinals[doc] = ordinal;
+        }
+
+        void clear(int doc) {
+            int ordinal = docOrdinals[doc];
+            if (ordinal >= 0) {
+                if (indexed) {
+                    postings.get(ordinal).remove(doc);
+                }
+                docOrdinals[doc] = -1;
+            }
+        }
+
+        void rename(String from, String to) {
+            Integer ordinal = ordinals.remove(from);
+            if (ordinal == null) {
+                return;
+            }
+
+            Integer target = ordinals.get(to);
+            if (target == null) {
+                ordinals.put(to, ordinal);
+                values.set(ordinal, to);
+                return;
+            }
+
+            // The new name already exists: fold the old value's ids into it.
+            RoaringBitmap moved = postings.get(ordinal);
+            for (int doc : moved) {
+                docOrdinals[doc] = target;
+            }
+            postings.get(target).or(moved);
+            moved.clear();
+        }
+
+        // Null means "not filtered"; an unknown value matches nothing.
+        RoaringBitmap matching(String value, int maxDoc) {
+            if (!StringUtils.hasText(value)) {
+                return null;
+            }
+            Integer ordinal = ordinals.get(value);
+            if (ordinal == null) {
+                return new RoaringBitmap();
+            }
+            if (indexed) {
+                return postings.get(ordinal);
+            }
+
+            RoaringBitmap result = new RoaringBitmap();
+            for (int doc = 0; doc < maxDoc; doc++) {
+                if (docOrdinals[doc] == ordinal) {
+                    result.add(doc);
+                }
+            }
+            return result;
+        }
+
+        // Null counts every id holding a value.
+        Map<String, Long> count(RoaringBitmap docs) {
+            long[] counts = new long[values.size()];
+            if (docs == null) {
+                for (int i = 0; i < counts.length; i++) {
+                    counts[i] = postings.get(i).getLongCardinality();
+                }
+            } else if (docs.getLongCardinality() < counts.length) {
+                for (int doc : docs) {
+                    if (docOrdinals[doc] >= 0) {
+                        counts[docOrdinals[doc]]++;
+                    }
+                }
+            } else {
+                for (int i = 0; i < counts.length; i++) {
+                    counts[i] = RoaringBitmap.andCardinality(docs, postings.get(i));
+                }
+            }
+
+            Map<String, Long> result = new HashMap<>();
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] > 0) {
+                    result.put(values.get(i), counts[i]);
+                }
+            }
+            return byCountDescending(result);
+        }
+
+        void grow(int capacity) {
+            int previous = docOrdinals.length;
+            docOrdinals = Arrays.copyOf(docOrdinals, capacity);
+            Arrays.fill(docOrdinals, previous, capacity, -1);
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.iodsky.orderly.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/*
+    Prefix trie for weighted autocompletion.
+    ----------------------------------------
+    - Each node keeps its children in small sorted char/node arrays instead of maps.
+    - Each node also caches the `capacity` heaviest completions below it, so a lookup
+      is one walk down the prefix plus a copy of that list, independent of how many
+      entries share the prefix.
+    - After an insert, update or removal only the caches on the path of that key are
+      recomputed, bottom-up, from the caches of their children.
+ */
+public class SuggestionTrie {
+
+    private static final Comparator<Entry> BY_WEIGHT = Comparator.comparingLong(Entry::weight).reversed()
+            .thenComparing(Entry::key);
+
+    private final int capacity;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Node root = new Node();
+    private int size;
+
+    public record Entry(String key, String text, long weight) { }
+
+    public SuggestionTrie(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public void put(String key, String text, long weight) {
+        lock.writeLock().lock();
+        try {
+            Node[] path = new Node[key.length() + 1];
+            Node node = root;
+            path[0] = node;
+
+            for (int i = 0; i < key.length(); i++) {
+                node = node.childOrCreate(key.charAt(i));
+                path[i + 1] = node;
+            }
+
+            if (node.entry == null) {
+                size++;
+            }
+            node.entry = new Entry(key, text, weight);
+            refresh(path);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(String key) {
+        lock.writeLock().lock();
+        try {
+            Node[] path = new Node[key.length() + 1];
+            Node node = root;
+            path[0] = node;
+
+            for (int i = 0; i < key.length(); i++) {
+                node = node.child(key.charAt(i));
+                if (node == null) {
+                    return;
+                }
+                path[i + 1] = node;
+            }
+
+            if (node.entry == null) {
+                return;
+            }
+            node.entry = null;
+            size--;
+
+            for (int i = key.length(); i > 0 && path[i].isEmpty(); i--) {
+                path[i - 1].removeChild(key.charAt(i - 1));
+                path[i] = null;
+            }
+            refresh(path);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public List<Entry> suggest(String prefix, int limit) {
+        lock.readLock().lock();
+        try {
+            Node node = root;
+            for (int i = 0; i < prefix.length() && node != null; i++) {
+                node = node.child(prefix.charAt(i));
+            }
+
+            if (node == null) {
+                return List.of();
+            }
+            return List.of(Arrays.copyOf(node.top, Math.min(limit, node.topSize)));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void refresh(Node[] path) {
+        for (int i = path.length - 1; i >= 0; i--) {
+            if (path[i] != null) {
+                path[i].recomputeTop(capacity);
+            }
+        }
+    }
+
+    private static final class Node {
+        private char[] labels = new char[0];
+        private Node[] children = new Node[0];
+        private Entry entry;
+        private Entry[] top = new Entry[0];
+        private int topSize;
+
+        Node child(char label) {
+            int index = Arrays.binarySearch(labels, label);
+            return index >= 0 ? children[index] : null;
+        }
+
+        Node childOrCreate(char label) {
+            int index = Arrays.binarySearch(labels, label);
+            if (index >= 0) {
+                return children[index];
+            }
+
+            int insertAt = -index - 1;
+            Node child = new Node();
+            char[] newLabels = new char[labels.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+
+            System.arraycopy(labels, 0, newLabels, 0, insertAt);
+            System.arraycopy(children, 0, newChildren, 0, insertAt);
+            newLabels[insertAt] = label;
+            newChildren[insertAt] = child;
+            System.arraycopy(labels, insertAt, newLabels, insertAt + 1, labels.length - insertAt);
+            System.arraycopy(children, insertAt, newChildren, insertAt + 1, children.length - insertAt);
+
+            labels = newLabels;
+            children = newChildren;
+            return child;
+        }
+
+        void removeChild(char label) {
+            int index = Arrays.binarySearch(labels, label);
+            if (index < 0) {
+                return;
+            }
+
+            char[] newLabels = new char[labels.length - 1];
+            Node[] newChildren = new Node[children.length - 1];
+
+            System.arraycopy(labels, 0, newLabels, 0, index);
+            System.arraycopy(children, 0, newChildren, 0, index);
+            System.arraycopy(labels, index + 1, newLabels, index, labels.length - index - 1);
+            System.arraycopy(children, index + 1, newChildren, index, children.length - index - 1);
+
+            labels = newLabels;
+            children = newChildren;
+        }
+
+        boolean isEmpty() {
+            return entry == null && children.length == 0;
+        }
+
+        void recomputeTop(int capacity) {
+            List<Entry> candidates = new ArrayList<>();
+            if (entry != null) {
+                candidates.add(entry);
+            }
+            for (Node child : children) {
+                for (int i = 0; i < child.topSize; i++) {
+                    candidates.add(child.top[i]);
+                }
+            }
+
+            candidates.sort(BY_WEIGHT);
+            topSize = Math.min(capacity, candidates.size());
+            top = candidates.subList(0, topSize).toArray(Entry[]::new);
+        }
+    }
+}
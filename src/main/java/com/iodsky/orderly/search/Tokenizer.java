@@ -0,0 +1,63 @@
+package com.iodsky.orderly.search;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/*
+    Turns free text into index terms:
+      - Unicode compatibility decomposition with diacritics stripped ("Café" -> "cafe")
+      - lower-cased and split on anything that is not a letter or a digit
+      - common English stop words dropped
+      - plural suffixes folded ("batteries" -> "battery", "mice" stays "mice", "mouses" -> "mouse")
+    normalize() applies the same folding without dropping or stemming words, for prefix matching.
+ */
+public class Tokenizer {
+
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{Nd}]+");
+    private static final Set<String> STOP_WORDS = Set.of(
+            "a", "an", "and", "are", "as", "at", "by", "for", "from", "in", "is", "it", "of", "on", "or", "the", "to", "with");
+
+    private Tokenizer() {}
+
+    public static List<String> tokenize(String text) {
+        if (text == null || text.isBlank()) {
+            return List.of();
+        }
+
+        List<String> tokens = new ArrayList<>();
+        for (String token : SEPARATORS.split(fold(text))) {
+            if (!token.isEmpty() && !STOP_WORDS.contains(token)) {
+                tokens.add(stem(token));
+            }
+        }
+        return tokens;
+    }
+
+    public static String normalize(String text) {
+        if (text == null || text.isBlank()) {
+            return "";
+        }
+        return SEPARATORS.matcher(fold(text)).replaceAll(" ").strip();
+    }
+
+    private static String fold(String text) {
+        return DIACRITICS.matcher(Normalizer.normalize(text, Normalizer.Form.NFKD))
+                .replaceAll("")
+                .toLowerCase(Locale.ROOT);
+    }
+
+    private static String stem(String token) {
+        if (token.length() > 4 && token.endsWith("ies")) {
+            return token.substring(0, token.length() - 3) + "y";
+        }
+        if (token.length() > 3 && token.endsWith("s") && !token.endsWith("ss") && !token.endsWith("us")) {
+            return token.substring(0, token.length() - 1);
+        }
+        return token;
+    }
+}
@@ -0,0 +1,171 @@
+package com.iodsky.orderly.service;
+
+import com.iodsky.orderly.cache.HotCartStore;
+import com.iodsky.orderly.repository.CartItemRepository;
+import com.iodsky.orderly.repository.CartRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.IntSupplier;
+
+/*
+    Scheduled removal of stale cart items and empty carts.
+    ------------------------------------------------------
+    - Items not updated for the item TTL are deleted, oldest first along the updated_at index.
+      Items written before updated_at existed are stamped first, so they expire one TTL later.
+    - Empty carts older than the grace period are deleted, walking carts by id. A cart that
+      gains an item between the lookup and the delete is kept. Users get a new cart on their
+      next add, and reads of a missing cart return an empty one. Carts held by HotCartStore are
+      skipped, whatever their age: their lines may not be written yet.
+    - Every statement handles at most batch-size rows in its own transaction, pauses for
+      batch-pause afterwards and a run stops after max-batches statements, so a large backlog
+      is worked off over several runs without long locks.
+    - Rows deleted per run are recorded in orderly.carts.compaction.reclaimed, tagged by table.
+ */
+@Service
+@RequiredArgsConstructor
+public class CartCompactionService {
+
+    private final Logger logger = LoggerFactory.getLogger(CartCompactionService.class);
+
+    private final CartRepository cartRepository;
+    private final CartItemRepository cartItemRepository;
+    private final HotCartStore hotCartStore;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${orderly.cart.compaction.enabled}")
+    private boolean enabled;
+
+    @Value("${orderly.cart.compaction.item-ttl}")
+    private Duration itemTtl;
+
+    @Value("${orderly.cart.compaction.empty-cart-grace}")
+    private Duration emptyCartGrace;
+
+    @Value("${orderly.cart.compaction.batch-size}")
+    private int batchSize;
+
+    @Value("${orderly.cart.compaction.batch-pause}")
+    private Duration batchPause;
+
+    @Value("${orderly.cart.compaction.max-batches}")
+    private int maxBatches;
+
+    public record Result(int itemsDeleted, int cartsDeleted) { }
+
+    @Scheduled(fixedDelayString = "${orderly.cart.compaction.interval}",
+            initialDelayString = "${orderly.cart.compaction.interval}")
+    public void compactOnSchedule() {
+        if (!enabled) {
+            return;
+        }
+
+        try {
+            compact();
+        } catch (RuntimeException ex) {
+            logger.warn("Cart compaction failed, retrying on the next run", ex);
+        }
+    }
+
+    public Result compact() {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        Date now = new Date();
+        Budget budget = new Budget(maxBatches);
+
+        runBatches(budget, () -> cartItemRepository.stampUndatedItems(now, batchSize));
+        int items = runBatches(budget, () -> cartItemRepository.deleteItemsUpdatedBefore(
+                new Date(now.getTime() - itemTtl.toMillis()), batchSize));
+        int carts = deleteEmptyCarts(budget, new Date(now.getTime() - emptyCartGrace.toMillis()));
+
+        meterRegistry.summary("orderly.carts.compaction.reclaimed", "table", "cart_items").record(items);
+        meterRegistry.summary("orderly.carts.compaction.reclaimed", "table", "carts").record(carts);
+        sample.stop(meterRegistry.timer("orderly.carts.compaction.duration"));
+
+        if (items > 0 || carts > 0) {
+            logger.info("Cart compaction deleted {} items and {} carts", items, carts);
+        }
+        if (budget.exhausted()) {
+            logger.info("Cart compaction stopped after {} batches, continuing on the next run", maxBatches);
+        }
+        return new Result(items, carts);
+    }
+
+    // Repeats the batch until it comes back short or the budget runs out.
+    private int runBatches(Budget budget, IntSupplier batch) {
+        int total = 0;
+        while (budget.take()) {
+            int affected = batch.getAsInt();
+            total += affected;
+            pause();
+            if (affected < batchSize) {
+                break;
+            }
+        }
+        return total;
+    }
+
+    private int deleteEmptyCarts(Budget budget, Date cutoff) {
+        int total = 0;
+        UUID after = new UUID(0, 0);
+        while (budget.take()) {
+            List<UUID> ids = cartRepository.findEmptyCartIds(after, cutoff, batchSize);
+            if (ids.isEmpty()) {
+                break;
+            }
+            Set<UUID> held = hotCartStore.heldCartIds();
+            List<UUID> candidates = ids.stream().filter(id -> !held.contains(id)).toList();
+            if (!candidates.isEmpty()) {
+                total += cartRepository.deleteEmptyCarts(candidates);
+            }
+            after = ids.getLast();
+            pause();
+            if (ids.size() < batchSize) {
+                break;
+            }
+        }
+        return total;
+    }
+
+    private void pause() {
+        if (batchPause.isZero()) {
+            return;
+        }
+        try {
+            Thread.sleep(batchPause);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Cart compaction interrupted", ex);
+        }
+    }
+
+    private static final class Budget {
+        private int remaining;
+
+        private Budget(int batches) {
+            this.remaining = batches;
+        }
+
+        boolean take() {
+            if (remaining <= 0) {
+                return false;
+            }
+            remaining--;
+            return true;
+        }
+
+        boolean exhausted() {
+            return remaining <= 0;
+        }
+    }
+}
@@ -1,13 +1,30 @@
 package com.iodsky.orderly.service;
 
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
+import com.iodsky.orderly.cache.HotCartStore;
 import com.iodsky.orderly.model.CartItem;
+import com.iodsky.orderly.model.Money;
 import com.iodsky.orderly.model.Product;
 import com.iodsky.orderly.model.User;
 import com.iodsky.orderly.repository.CartItemRepository;
+import com.iodsky.orderly.request.CartItemOperation;
+import com.iodsky.orderly.retry.RetryOnConflict;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import com.iodsky.orderly.exception.InvalidQuantityException;
 import com.iodsky.orderly.exception.ResourceNotFoundException;
 import com.iodsky.orderly.model.Cart;
 import com.iodsky.orderly.repository.CartRepository;
@@ -21,6 +38,7 @@ public class CartService {
   private final CartRepository cartRepository;
   private final CartItemRepository cartItemRepository;
   private final ProductService productService;
+  private final HotCartStore hotCartStore;
 
   public Cart saveCart(Cart cart) {
     return cartRepository.save(cart);
@@ -31,74 +49,228 @@ public class CartService {
             .orElseThrow(() -> new ResourceNotFoundException("Cart not found for Id " + id));
   }
 
+  // Creates the user's cart if it does not exist yet, for paths about to modify it.
   public Cart getCartByUser(User user) {
-    return cartRepository.findByUserId(user.getId()).orElseGet(() -> saveCart(new Cart(user)));
+    return cartRepository.findByUserId(user.getId()).orElseGet(() -> {
+      cartRepository.insertIfAbsent(UUID.randomUUID(), user.getId());
+      return cartRepository.findByUserId(user.getId()).orElseThrow();
+    });
   }
 
+  /*
+      Cart contents for display in one query, without loading the cart, its items or their products.
+      A user without a cart gets no lines, which reads as an empty cart; reads never create one.
+   */
+  public List<CartRepository.CartLineView> getCartLines(User user) {
+    if (hotCartStore.isEnabled()) {
+      return withHotCart(user, HotCartStore.HotCart::lines);
+    }
+    return cartRepository.findLinesByUserId(user.getId());
+  }
+
+  // Callers flush the cart before, as for updateItems.
+  @RetryOnConflict
+  @Transactional
   public Cart clearCart(User user) {
-    Cart cart = getCartByUser(user);
+    return cartRepository.findWithItemsByUserId(user.getId())
+            .map(cart -> {
+              cart.getItems().clear();
+              return saveItems(cart);
+            })
+            .orElseGet(() -> new Cart(user));
+  }
 
-    cart.getItems().clear();
-    return cartRepository.save(cart);
+  /*
+      Applies a batch of item operations in order, in one transaction: the cart, its items
+      and their products are read in one query, the products being added in another, and
+      all changes are written in a single flush. Any failing operation rolls back the batch.
+      A batch racing another change to the cart fails on the versions and is run again.
+      Callers flush the cart before, outside of the transaction, see flushCart.
+   */
+  @RetryOnConflict
+  @Transactional
+  public Cart updateItems(User user, List<CartItemOperation> operations) {
+    Cart cart = cartRepository.findWithItemsByUserId(user.getId()).orElseGet(() -> {
+      getCartByUser(user);
+      return cartRepository.findWithItemsByUserId(user.getId()).orElseThrow();
+    });
+
+    Set<UUID> added = operations.stream()
+            .filter(operation -> operation.getType() == CartItemOperation.Type.ADD)
+            .map(CartItemOperation::getProductId)
+            .collect(Collectors.toSet());
+    Map<UUID, Product> products = productService.getProductsByIds(added).stream()
+            .collect(Collectors.toMap(Product::getId, Function.identity()));
+
+    Map<UUID, CartItem> items = cart.getItems().stream()
+            .collect(Collectors.toMap(item -> item.getProduct().getId(), Function.identity()));
+    // Removed items are re-added rather than replaced, as the insert would precede the delete.
+    Map<UUID, CartItem> removed = new HashMap<>();
+
+    for (CartItemOperation operation : operations) {
+      UUID productId = operation.getProductId();
+      CartItem item = items.get(productId);
+
+      switch (operation.getType()) {
+        case ADD -> {
+          if (item != null) {
+            item.setQuantity(item.getQuantity() + operation.getQuantity());
+          } else if (products.containsKey(productId)) {
+            item = removed.containsKey(productId) ? removed.remove(productId) : new CartItem();
+            item.setProduct(products.get(productId));
+            item.setQuantity(operation.getQuantity());
+            item.setUnitPrice(products.get(productId).getPrice());
+            cart.addItem(item);
+            items.put(productId, item);
+          } else {
+            throw new ResourceNotFoundException("Product not found for id " + productId);
+          }
+        }
+        case SET -> {
+          if (item == null) {
+            throw new ResourceNotFoundException("Cart item not found for product id " + productId);
+          }
+          if (operation.getQuantity() > 0) {
+            item.setQuantity(operation.getQuantity());
+          } else {
+            removeItem(cart, items, removed, item);
+          }
+        }
+        case REMOVE -> {
+          if (item == null) {
+            throw new ResourceNotFoundException("Cart item not found for product id " + productId);
+          }
+          removeItem(cart, items, removed, item);
+        }
+      }
+    }
+
+    return saveItems(cart);
+  }
+
+  /*
+      Makes the database hold the user's cart as they see it, see HotCartStore. Called before the
+      transaction of a change that reads the cart from the database starts, as the write takes a
+      connection of its own.
+   */
+  public void flushCart(User user) {
+    if (hotCartStore.isEnabled()) {
+      hotCartStore.flushAndEvict(user.getId());
+    }
   }
 
   public CartItem getCartItem(User user, UUID productId) {
-    return this.getCartByUser(user).getItems().stream().filter(i -> i.getProduct().getId().equals(productId))
-            .findFirst().orElseThrow(() -> new ResourceNotFoundException("Cart item not found for id " + productId));
+    Optional<CartItem> item = hotCartStore.isEnabled()
+            ? withHotCart(user, cart -> cart.get(productId)).map(this::toCartItem)
+            : cartItemRepository.findViewByUserIdAndProductId(user.getId(), productId).map(this::toCartItem);
+
+    return item.orElseThrow(() -> new ResourceNotFoundException("Cart item not found for id " + productId));
   }
 
+  // A zero or negative quantity would create a non-positive line, which checkout would order.
+  @RetryOnConflict
   public CartItem addItemToCart(User user, UUID productId, int quantity) {
-    // Get cart
-    Cart cart = this.getCartByUser(user);
-    // Get product
+    if (quantity <= 0) {
+      throw new InvalidQuantityException(productId, quantity);
+    }
     Product product = productService.getProduct(productId);
 
-    CartItem cartItem = cart.getItems()
-            .stream()
-            .filter(i -> i.getProduct().getId().equals(product.getId()))
-            .findFirst()
-            .orElse(new CartItem());
-    // If product does not exist create new cart item else increase quantity
-    if (cartItem.getId() == null) {
-      cartItem.setCart(cart);
-      cartItem.setProduct(product);
-      cartItem.setQuantity(quantity );
-      cartItem.setUnitPrice(product.getPrice());
-    } else {
-      cartItem.setQuantity(cartItem.getQuantity() + quantity);
+    if (hotCartStore.isEnabled()) {
+      HotCartStore.Line line = withHotCart(user,
+              cart -> cart.add(product, quantity, () -> getCartByUser(user).getId()));
+      return toCartItem(line, product);
     }
 
-    cart.addItem(cartItem);
-    CartItem item = cartItemRepository.save(cartItem);
-    this.saveCart(cart);
+    // The upsert only finds no row when the user has no cart yet.
+    CartItemRepository.CartItemView item = addQuantity(user, product, quantity)
+            .orElseGet(() -> {
+              getCartByUser(user);
+              return addQuantity(user, product, quantity).orElseThrow();
+            });
 
-    return item;
+    return toCartItem(item, product);
   }
 
+  @RetryOnConflict
   public void removeItemFromCart(User user, UUID productId) {
-    Cart cart = this.getCartByUser(user);
-    CartItem item = cart.getItems().stream()
-            .filter(i -> i.getProduct().getId().equals(productId))
-            .findFirst()
-            .orElseThrow(() -> new ResourceNotFoundException("Cart item not found for product id " + productId));
-    cart.removeItem(item);
-    this.saveCart(cart);
+    boolean removed = hotCartStore.isEnabled()
+            ? withHotCart(user, cart -> cart.remove(productId)).isPresent()
+            : cartItemRepository.deleteByUserIdAndProductId(user.getId(), productId).isPresent();
+
+    if (!removed) {
+      throw new ResourceNotFoundException("Cart item not found for product id " + productId);
+    }
   }
 
+  @RetryOnConflict
   public CartItem updateItemQuantity(User user, UUID productId, int quantity) {
-    Cart cart = this.getCartByUser(user);
-    CartItem item = cart.getItems().stream()
-            .filter(i -> i.getProduct().getId().equals(productId)).findFirst()
-            .orElseThrow(() -> new ResourceNotFoundException("Cart item not found for product id " + productId));
-
-    if (quantity <= 0) {
-      cart.removeItem(item);
-      cartItemRepository.delete(item);
+    Optional<CartItem> item;
+    if (hotCartStore.isEnabled()) {
+      item = withHotCart(user, cart -> cart.setQuantity(productId, quantity)).map(this::toCartItem);
+    } else if (quantity <= 0) {
+      item = cartItemRepository.deleteByUserIdAndProductId(user.getId(), productId).map(this::toCartItem);
     } else {
-      item.setQuantity(quantity);
+      item = cartItemRepository.setQuantity(user.getId(), productId, quantity).map(this::toCartItem);
+    }
+
+    return item.orElseThrow(() -> new ResourceNotFoundException("Cart item not found for product id " + productId));
+  }
+
+  /*
+      Flushes here rather than on commit, so a conflict surfaces while the transaction can still
+      roll back and clear. Losing the race to insert the same product counts as a conflict too.
+   */
+  private Cart saveItems(Cart cart) {
+    try {
+      return cartRepository.saveAndFlush(cart);
+    } catch (DataIntegrityViolationException ex) {
+      if (ex.getCause() instanceof ConstraintViolationException violation && violation.getConstraintName() != null
+              && violation.getConstraintName().toLowerCase(Locale.ROOT).contains(CartItem.PRODUCT_CONSTRAINT)) {
+        throw new ObjectOptimisticLockingFailureException(Cart.class, cart.getId(), ex);
+      }
+      throw ex;
     }
+  }
+
+  private void removeItem(Cart cart, Map<UUID, CartItem> items, Map<UUID, CartItem> removed, CartItem item) {
+    cart.getItems().remove(item);
+    items.remove(item.getProduct().getId());
+    removed.put(item.getProduct().getId(), item);
+  }
+
+  private <T> T withHotCart(User user, Function<HotCartStore.HotCart, T> action) {
+    return hotCartStore.withCart(user.getId(), () -> cartRepository.findLinesByUserId(user.getId()), action);
+  }
+
+  private Optional<CartItemRepository.CartItemView> addQuantity(User user, Product product, int quantity) {
+    return cartItemRepository.addQuantity(UUID.randomUUID(), user.getId(), product.getId(), quantity,
+            product.getPrice());
+  }
+
+  private CartItem toCartItem(CartItemRepository.CartItemView item) {
+    return toCartItem(item, productService.getProduct(item.getProductId()));
+  }
+
+  // Detached item for the response; the cart carries only its id.
+  private CartItem toCartItem(CartItemRepository.CartItemView item, Product product) {
+    return toCartItem(item.getId(), item.getCartId(), product, item.getQuantity(), item.getUnitPrice());
+  }
+
+  private CartItem toCartItem(HotCartStore.Line line) {
+    return toCartItem(line, productService.getProduct(line.productId()));
+  }
+
+  private CartItem toCartItem(HotCartStore.Line line, Product product) {
+    return toCartItem(line.itemId(), line.cartId(), product, line.quantity(), line.unitPrice());
+  }
 
-    this.saveCart(cart);
-    return item;
+  private CartItem toCartItem(UUID id, UUID cartId, Product product, int quantity, Money unitPrice) {
+    return CartItem.builder()
+            .id(id)
+            .cart(Cart.builder().id(cartId).build())
+            .product(product)
+            .quantity(quantity)
+            .unitPrice(unitPrice)
+            .build();
   }
 }
@@ -3,11 +3,14 @@ package com.iodsky.orderly.service;
 import java.util.List;
 import java.util.UUID;
 
+import com.iodsky.orderly.event.CategoryRenamedEvent;
 import com.iodsky.orderly.exception.DuplicateResourceException;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 
 import com.iodsky.orderly.dto.CategoryDto;
+import com.iodsky.orderly.dto.ResourceVersion;
 import com.iodsky.orderly.dto.mapper.CategoryMapper;
 import com.iodsky.orderly.exception.ResourceInUseException;
 import com.iodsky.orderly.exception.ResourceNotFoundException;
@@ -22,6 +25,7 @@ public class CategoryService  {
 
   private final CategoryRepository categoryRepository;
   private final CategoryMapper categoryMapper;
+  private final ApplicationEventPublisher eventPublisher;
 
   public Category addCategory(CategoryDto categoryDto) {
     try {
@@ -50,13 +54,23 @@ public class CategoryService  {
     return categoryRepository.findAll();
   }
 
+  public ResourceVersion getCategoriesVersion() {
+    CategoryRepository.CollectionVersionView version = categoryRepository.findCollectionVersion();
+    return ResourceVersion.ofCollection(version.getCount(), version.getVersionSum(), version.getLastUpdated());
+  }
+
   public Category updateCategory(UUID id, CategoryDto categoryDto) {
     try {
       Category existing = getCategoryById(id);
+      String previousName = existing.getName();
 
       existing.setName(categoryDto.getName());
 
-      return categoryRepository.save(existing);
+      Category saved = categoryRepository.save(existing);
+      if (!saved.getName().equals(previousName)) {
+        eventPublisher.publishEvent(new CategoryRenamedEvent(previousName, saved.getName()));
+      }
+      return saved;
 
     } catch (DataIntegrityViolationException ex) {
       throw new DuplicateResourceException("Category " + categoryDto.getName() + " already exists.");
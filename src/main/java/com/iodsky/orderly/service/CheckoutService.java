@@ -1,18 +1,24 @@
 package com.iodsky.orderly.service;
 
 import com.iodsky.orderly.enums.OrderStatus;
+import com.iodsky.orderly.event.OrderPlacedEvent;
 import com.iodsky.orderly.exception.EmptyCartException;
+import com.iodsky.orderly.inventory.InventoryReservations;
 import com.iodsky.orderly.model.Cart;
 import com.iodsky.orderly.model.Order;
 import com.iodsky.orderly.model.OrderItem;
-import com.iodsky.orderly.model.Product;
 import com.iodsky.orderly.model.User;
+import com.iodsky.orderly.retry.RetryOnConflict;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
 
 @Service
 @RequiredArgsConstructor
@@ -21,7 +27,14 @@ public class CheckoutService  {
     private final OrderService orderService;
     private final CartService cartService;
     private final ProductService productService;
+    private final InventoryReservations inventoryReservations;
+    private final ApplicationEventPublisher eventPublisher;
 
+    /*
+        Conflicts with a concurrent change to the cart on commit, see ConflictRetryAspect.
+        Callers flush the user's cart with CartService.flushCart before, see HotCartStore.
+     */
+    @RetryOnConflict
     @Transactional
     public Order placeOrder(User user) {
         Cart cart = cartService.getCartByUser(user);
@@ -30,6 +43,11 @@ public class CheckoutService  {
             throw new EmptyCartException(cart.getId());
         }
 
+        Map<UUID, Integer> quantities = new HashMap<>();
+        cart.getItems().forEach(item -> quantities.put(item.getProduct().getId(), item.getQuantity()));
+        // Turns away checkouts the stock cannot cover before any products row is locked.
+        inventoryReservations.holdForTransaction(quantities);
+
         Order order = Order.builder()
                 .user(user)
                 .totalAmount(cart.getTotalAmount())
@@ -38,22 +56,23 @@ public class CheckoutService  {
                 .build();
 
         cart.getItems().forEach(item -> {
-
-            Product product = productService.decreaseStock(item.getProduct().getId(), item.getQuantity());
-
             OrderItem orderItem = OrderItem.builder()
                     .order(order)
                     .price(item.getUnitPrice())
-                    .product(product)
+                    .product(item.getProduct())
                     .quantity(item.getQuantity())
                     .build();
             order.getItems().add(orderItem);
         });
+        productService.decreaseStock(quantities);
 
         cart.getItems().clear();
         cartService.saveCart(cart);
 
-        return orderService.saveOrder(order);
+        Order saved = orderService.saveOrder(order);
+        eventPublisher.publishEvent(new OrderPlacedEvent(saved.getId(), user.getId(),
+                saved.getItems().stream().map(item -> item.getProduct().getId()).toList()));
+        return saved;
     }
 
 }
@@ -42,6 +42,7 @@ public class ImageService {
     imageRepository.findById(id).ifPresentOrElse(image -> {
       imageRepository.delete(image);
       s3Service.deleteObject(FOLDER, image.getFileName());
+      productService.markImagesChanged(image.getProduct().getId());
     }, () -> {
       throw new ResourceNotFoundException("Image not found for id " + id);
     });
@@ -64,6 +65,7 @@ public class ImageService {
         savedImages.add(savedImage);
       }
 
+      productService.markImagesChanged(productId);
       return savedImages;
 }
 
@@ -79,7 +81,9 @@ public class ImageService {
       existingImage.setFileType(file.getContentType());
       existingImage.setFileName(fileName);
 
-      return imageRepository.save(existingImage);
+      Image savedImage = imageRepository.save(existingImage);
+      productService.markImagesChanged(existingImage.getProduct().getId());
+      return savedImage;
   }
 
 }
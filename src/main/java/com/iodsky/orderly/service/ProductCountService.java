@@ -0,0 +1,44 @@
+package com.iodsky.orderly.service;
+
+import com.iodsky.orderly.cache.ProductCountCache;
+import com.iodsky.orderly.repository.ProductCountEstimator;
+import com.iodsky.orderly.request.CountStrategy;
+import com.iodsky.orderly.request.ProductFilter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/*
+    Totals for product listings, see CountStrategy.
+    Planner estimates are coarse for small results, so below the threshold an exact count is
+    taken instead; it is cheap there and the total is what users compare against.
+ */
+@Service
+@RequiredArgsConstructor
+public class ProductCountService {
+
+    private final ProductService productService;
+    private final ProductCountCache productCountCache;
+    private final ProductCountEstimator productCountEstimator;
+
+    @Value("${orderly.listing.exact-count-threshold}")
+    private long exactCountThreshold;
+
+    public record Total(long value, boolean exact) { }
+
+    public Total count(ProductFilter filter, CountStrategy strategy) {
+        return switch (strategy) {
+            case EXACT -> new Total(productService.countProducts(filter), true);
+            case CACHED -> new Total(productCountCache.get(filter, () -> productService.countProducts(filter)), true);
+            case ESTIMATED -> estimate(filter);
+        };
+    }
+
+    private Total estimate(ProductFilter filter) {
+        long estimate = productCountEstimator.estimate(filter);
+        if (estimate < exactCountThreshold) {
+            return count(filter, CountStrategy.CACHED);
+        }
+        return new Total(estimate, false);
+    }
+}
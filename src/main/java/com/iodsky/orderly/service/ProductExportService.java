@@ -0,0 +1,148 @@
+package com.iodsky.orderly.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import com.iodsky.orderly.dto.ProductDto;
+import com.iodsky.orderly.dto.mapper.ProductMapper;
+import com.iodsky.orderly.model.Product;
+import com.iodsky.orderly.repository.ProductRepository;
+import com.iodsky.orderly.request.ProductFileFormat;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/*
+    Full catalog export as NDJSON (one ProductDto per line) or CSV.
+    ---------------------------------------------------------------
+    - Products are read through a forward-only cursor (ProductRepository.streamAll) and written
+      as they arrive, so memory use does not depend on the size of the catalog.
+    - Products are mapped in chunks of CLEAR_INTERVAL, so their images are batch-loaded for the
+      whole chunk (see Product.images) rather than per product; after each chunk the output is
+      flushed and the persistence context cleared.
+    - CSV columns are a superset of the bulk import columns, so an export can be imported again.
+ */
+@Service
+@RequiredArgsConstructor
+public class ProductExportService {
+
+    static final int CLEAR_INTERVAL = 500;
+
+    private static final CsvMapper CSV_MAPPER = new CsvMapper();
+    private static final CsvSchema CSV_SCHEMA = CsvSchema.builder()
+            .addColumn("id")
+            .addColumn("name")
+            .addColumn("description")
+            .addColumn("brand")
+            .addColumn("price")
+            .addColumn("stock")
+            .addColumn("category")
+            .addColumn("createdAt")
+            .addColumn("images")
+            .setUseHeader(true)
+            .build();
+
+    private final ProductRepository productRepository;
+    private final ProductMapper productMapper;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+
+    public void exportProducts(OutputStream output, ProductFileFormat format) {
+        transactionTemplate.executeWithoutResult(status -> {
+            try (Stream<Product> products = productRepository.streamAll();
+                 RowWriter writer = open(output, format)) {
+                Iterator<Product> iterator = products.iterator();
+                List<Product> chunk = new ArrayList<>(CLEAR_INTERVAL);
+
+                while (iterator.hasNext()) {
+                    chunk.add(iterator.next());
+
+                    if (chunk.size() == CLEAR_INTERVAL || !iterator.hasNext()) {
+                        for (Product product : chunk) {
+                            writer.write(productMapper.toDto(product));
+                        }
+                        writer.flush();
+                        chunk.clear();
+                        entityManager.clear();
+                    }
+                }
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        });
+    }
+
+    private RowWriter open(OutputStream output, ProductFileFormat format) throws IOException {
+        return switch (format) {
+            case CSV -> {
+                SequenceWriter rows = CSV_MAPPER.writer(CSV_SCHEMA).writeValues(output);
+                yield new RowWriter() {
+                    public void write(ProductDto product) throws IOException {
+                        rows.write(csvRow(product));
+                    }
+
+                    public void flush() throws IOException {
+                        rows.flush();
+                    }
+
+                    public void close() throws IOException {
+                        rows.close();
+                    }
+                };
+            }
+            case NDJSON -> {
+                JsonGenerator generator = objectMapper.getFactory().createGenerator(output);
+                yield new RowWriter() {
+                    public void write(ProductDto product) throws IOException {
+                        generator.writeObject(product);
+                        generator.writeRaw('\n');
+                    }
+
+                    public void flush() throws IOException {
+                        generator.flush();
+                    }
+
+                    public void close() throws IOException {
+                        generator.close();
+                    }
+                };
+            }
+        };
+    }
+
+    // Images are nested, so they go into a single cell as a JSON array.
+    private Object[] csvRow(ProductDto product) throws IOException {
+        return new Object[]{
+                product.getId(),
+                product.getName(),
+                product.getDescription(),
+                product.getBrand(),
+                product.getPrice().toString(),
+                product.getStock(),
+                product.getCategory(),
+                product.getCreatedAt() != null ? product.getCreatedAt().toInstant().toString() : null,
+                objectMapper.writeValueAsString(product.getImages())
+        };
+    }
+
+    private interface RowWriter extends AutoCloseable {
+        void write(ProductDto product) throws IOException;
+
+        void flush() throws IOException;
+
+        @Override
+        void close() throws IOException;
+    }
+}
@@ -0,0 +1,81 @@
+package com.iodsky.orderly.service;
+
+import com.iodsky.orderly.cache.ProductListingCache;
+import com.iodsky.orderly.event.CategoryRenamedEvent;
+import com.iodsky.orderly.event.ProductDeletedEvent;
+import com.iodsky.orderly.event.ProductSavedEvent;
+import com.iodsky.orderly.event.ProductsSavedEvent;
+import com.iodsky.orderly.model.Product;
+import com.iodsky.orderly.request.ProductFilter;
+import com.iodsky.orderly.search.ProductFacetIndex;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Map;
+
+/*
+    Facet counts for product listings, computed from an in-memory bitmap index
+    that is loaded at startup and kept in sync through the product and category events.
+    The index is updated before ProductListingCache moves to the new catalog version.
+ */
+@Service
+@RequiredArgsConstructor
+public class ProductFacetService {
+
+    private static final int LOAD_BATCH_SIZE = 1000;
+
+    private final Logger logger = LoggerFactory.getLogger(ProductFacetService.class);
+
+    private final ProductService productService;
+    private final ProductFacetIndex index = new ProductFacetIndex();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadIndex() {
+        long started = System.currentTimeMillis();
+        productService.forEachProduct(LOAD_BATCH_SIZE, batch -> batch.forEach(this::index));
+        logger.info("Indexed {} products for facets in {} ms", index.size(), System.currentTimeMillis() - started);
+    }
+
+    @Order(ProductListingCache.SOURCE_ORDER)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductSaved(ProductSavedEvent event) {
+        index(event.product());
+    }
+
+    @Order(ProductListingCache.SOURCE_ORDER)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductsSaved(ProductsSavedEvent event) {
+        event.products().forEach(this::index);
+    }
+
+    @Order(ProductListingCache.SOURCE_ORDER)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductDeleted(ProductDeletedEvent event) {
+        index.remove(event.productId());
+    }
+
+    @Order(ProductListingCache.SOURCE_ORDER)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCategoryRenamed(CategoryRenamedEvent event) {
+        index.renameCategory(event.previousName(), event.name());
+    }
+
+    public Map<String, Map<String, Long>> getFacets(ProductFilter filter) {
+        return index.facets(filter);
+    }
+
+    private void index(Product product) {
+        index.put(product.getId(), new ProductFacetIndex.Document(
+                product.getName(),
+                product.getCategory() != null ? product.getCategory().getName() : null,
+                product.getBrand(),
+                product.getPrice().toBigDecimal(),
+                product.getStock()));
+    }
+}
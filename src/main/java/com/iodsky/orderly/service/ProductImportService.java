@@ -0,0 +1,276 @@
+package com.iodsky.orderly.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import com.iodsky.orderly.dto.ProductImportReportDto;
+import com.iodsky.orderly.event.ProductsSavedEvent;
+import com.iodsky.orderly.model.Category;
+import com.iodsky.orderly.model.Money;
+import com.iodsky.orderly.model.Product;
+import com.iodsky.orderly.repository.ProductBatchWriter;
+import com.iodsky.orderly.request.ProductFileFormat;
+import com.iodsky.orderly.request.ProductRequest;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/*
+    Bulk product import from a CSV (with header row) or NDJSON stream.
+    ------------------------------------------------------------------
+    - The input is read one row at a time; only the current batch is held in memory.
+    - Rows are validated like POST /products; invalid and malformed rows are reported and skipped.
+    - Categories are resolved once per distinct name per import.
+    - Each batch is inserted with JDBC batching in its own transaction, so a failed batch
+      only loses its own rows and committed batches stay imported.
+    - Every committed batch is announced with one ProductsSavedEvent, which the caches and
+      search indexes apply in bulk, instead of one listener round per imported row.
+ */
+@Service
+@RequiredArgsConstructor
+public class ProductImportService {
+
+    private static final CsvMapper CSV_MAPPER = new CsvMapper();
+    private static final long PROGRESS_INTERVAL = 100_000;
+
+    private final Logger logger = LoggerFactory.getLogger(ProductImportService.class);
+
+    private final CategoryService categoryService;
+    private final ProductBatchWriter productBatchWriter;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+
+    @Value("${orderly.import.batch-size}")
+    private int batchSize;
+
+    @Value("${orderly.import.max-reported-errors}")
+    private int maxReportedErrors;
+
+    public ProductImportReportDto importProducts(InputStream input, ProductFileFormat format) {
+        Run run = new Run();
+
+        try (RowReader reader = open(input, format)) {
+            Row row;
+            while ((row = reader.next()) != null) {
+                run.rows++;
+                if (row.error() != null) {
+                    run.error(run.rows, row.error());
+                } else if (!row.values().isEmpty()) {
+                    accept(run, row.values());
+                }
+            }
+        } catch (IOException ex) {
+            run.error(run.rows + 1, "Unreadable input: " + ex.getMessage());
+        }
+        flush(run);
+
+        logger.info("Product import finished: {} rows, {} imported, {} failed in {} ms",
+                run.rows, run.imported, run.failed, run.elapsedMillis());
+        return run.report();
+    }
+
+    private void accept(Run run, JsonNode node) {
+        ProductRequest request;
+        try {
+            request = toRequest(node);
+        } catch (NumberFormatException ex) {
+            run.error(run.rows, "Invalid number: " + ex.getMessage());
+            return;
+        }
+
+        Set<ConstraintViolation<ProductRequest>> violations = validator.validate(request);
+        if (!violations.isEmpty()) {
+            run.error(run.rows, violations.stream()
+                    .map(ConstraintViolation::getMessage)
+                    .sorted()
+                    .collect(Collectors.joining(", ")));
+            return;
+        }
+
+        Category category = run.categories.computeIfAbsent(request.getCategory(), categoryService::getOrCreateCategory);
+        Date now = new Date();
+        run.batch.add(Product.builder()
+                .id(UUID.randomUUID())
+                .name(request.getName())
+                .description(request.getDescription())
+                .brand(request.getBrand())
+                .price(Money.of(request.getPrice()))
+                .stock(request.getStock())
+                .category(category)
+                .version(0L)
+                .createdAt(now)
+                .updatedAt(now)
+                .build());
+        run.batchRows.add(run.rows);
+
+        if (run.batch.size() >= batchSize) {
+            flush(run);
+        }
+    }
+
+    private void flush(Run run) {
+        if (run.batch.isEmpty()) {
+            return;
+        }
+
+        List<Product> products = List.copyOf(run.batch);
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                productBatchWriter.insert(products);
+                eventPublisher.publishEvent(new ProductsSavedEvent(products));
+            });
+            long before = run.imported;
+            run.imported += products.size();
+            if (before / PROGRESS_INTERVAL != run.imported / PROGRESS_INTERVAL) {
+                logger.info("Product import progress: {} rows read, {} imported", run.rows, run.imported);
+            }
+        } catch (DataAccessException ex) {
+            String message = "Rejected by the database: " + ex.getMostSpecificCause().getMessage();
+            run.batchRows.forEach(row -> run.error(row, message));
+        }
+
+        run.batch.clear();
+        run.batchRows.clear();
+    }
+
+    // CSV cells are all text, JSON values may be numbers; both are read through their text form.
+    private ProductRequest toRequest(JsonNode node) {
+        return ProductRequest.builder()
+                .name(text(node, "name"))
+                .description(text(node, "description"))
+                .brand(text(node, "brand"))
+                .category(text(node, "category"))
+                .price(text(node, "price") != null ? new BigDecimal(text(node, "price")) : null)
+                .stock(text(node, "stock") != null ? Integer.parseInt(text(node, "stock")) : 0)
+                .build();
+    }
+
+    private static String text(JsonNode node, String field) {
+        JsonNode value = node.get(field);
+        if (value == null || value.isNull()) {
+            return null;
+        }
+        String text = value.asText().strip();
+        return text.isEmpty() ? null : text;
+    }
+
+    private RowReader open(InputStream input, ProductFileFormat format) throws IOException {
+        return switch (format) {
+            case CSV -> {
+                MappingIterator<JsonNode> rows = CSV_MAPPER.readerFor(JsonNode.class)
+                        .with(CsvSchema.emptySchema().withHeader())
+                        .readValues(input);
+                // A row the parser rejects, such as one with too many columns, costs only that row.
+                yield new RowReader() {
+                    public Row next() throws IOException {
+                        if (!rows.hasNextValue()) {
+                            return null;
+                        }
+                        try {
+                            return new Row(rows.nextValue(), null);
+                        } catch (JsonProcessingException ex) {
+                            return new Row(null, "Malformed CSV: " + ex.getOriginalMessage());
+                        }
+                    }
+
+                    public void close() throws IOException {
+                        rows.close();
+                    }
+                };
+            }
+            // One document per line, so a malformed line costs only that row.
+            case NDJSON -> {
+                BufferedReader lines = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+                yield new RowReader() {
+                    public Row next() throws IOException {
+                        String line = lines.readLine();
+                        if (line == null) {
+                            return null;
+                        }
+                        if (line.isBlank()) {
+                            return new Row(objectMapper.createObjectNode(), null);
+                        }
+                        try {
+                            return new Row(objectMapper.readTree(line), null);
+                        } catch (JsonProcessingException ex) {
+                            return new Row(null, "Malformed JSON: " + ex.getOriginalMessage());
+                        }
+                    }
+
+                    public void close() throws IOException {
+                        lines.close();
+                    }
+                };
+            }
+        };
+    }
+
+    private record Row(JsonNode values, String error) { }
+
+    private interface RowReader extends AutoCloseable {
+        Row next() throws IOException;
+
+        @Override
+        void close() throws IOException;
+    }
+
+    private final class Run {
+        private final long startedAt = System.currentTimeMillis();
+        private final Map<String, Category> categories = new HashMap<>();
+        private final List<Product> batch = new ArrayList<>();
+        private final List<Long> batchRows = new ArrayList<>();
+        private final List<ProductImportReportDto.Error> errors = new ArrayList<>();
+        private long rows;
+        private long imported;
+        private long failed;
+
+        void error(long row, String message) {
+            failed++;
+            if (errors.size() < maxReportedErrors) {
+                errors.add(new ProductImportReportDto.Error(row, message));
+            }
+        }
+
+        long elapsedMillis() {
+            return System.currentTimeMillis() - startedAt;
+        }
+
+        ProductImportReportDto report() {
+            return ProductImportReportDto.builder()
+                    .rows(rows)
+                    .imported(imported)
+                    .failed(failed)
+                    .errors(errors)
+                    .errorsTruncated(failed > errors.size())
+                    .durationMillis(elapsedMillis())
+                    .build();
+        }
+    }
+}
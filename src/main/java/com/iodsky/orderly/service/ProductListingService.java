@@ -0,0 +1,78 @@
+package com.iodsky.orderly.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.iodsky.orderly.cache.ProductListingCache;
+import com.iodsky.orderly.dto.PaginationDto;
+import com.iodsky.orderly.dto.ProductDto;
+import com.iodsky.orderly.dto.mapper.PageMapper;
+import com.iodsky.orderly.request.CountStrategy;
+import com.iodsky.orderly.request.ProductFilter;
+import com.iodsky.orderly.request.ProductSort;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Service;
+
+import java.io.UncheckedIOException;
+import java.util.function.Function;
+
+/*
+    Assembles the GET /products response and caches it serialized, see ProductListingCache.
+ */
+@Service
+@RequiredArgsConstructor
+public class ProductListingService {
+
+    private final ProductService productService;
+    private final ProductFacetService productFacetService;
+    private final ProductCountService productCountService;
+    private final ProductListingCache productListingCache;
+    private final ObjectMapper objectMapper;
+
+    public byte[] getProductsJson(ProductFilter filter, int page, int limit, ProductSort sort, boolean facets,
+                                  CountStrategy count) {
+        ProductListingCache.Key key = productListingCache.key(filter, page, limit, sort, facets, count);
+        return productListingCache.get(key, () -> serialize(getProducts(filter, page, limit, sort, facets, count)));
+    }
+
+    public PaginationDto<ProductDto> getProducts(ProductFilter filter, int page, int limit, ProductSort sort,
+                                                 boolean facets, CountStrategy count) {
+        PaginationDto<ProductDto> response = count == CountStrategy.EXACT
+                ? PageMapper.map(productService.getProducts(filter, page, limit, sort), Function.identity())
+                : getProductsWithoutCount(filter, page, limit, sort, count);
+
+        if (facets) {
+            response.setFacets(productFacetService.getFacets(filter));
+        }
+        return response;
+    }
+
+    /*
+        Fetches the page as a slice. On the last page the total follows from the offset, so
+        the count strategy is only consulted when there are more rows (or the page is empty).
+     */
+    private PaginationDto<ProductDto> getProductsWithoutCount(ProductFilter filter, int page, int limit,
+                                                              ProductSort sort, CountStrategy count) {
+        Slice<ProductDto> slice = productService.getProductSlice(filter, page, limit, sort);
+        long offset = slice.getPageable().getOffset();
+
+        ProductCountService.Total total = !slice.hasNext() && slice.hasContent()
+                ? new ProductCountService.Total(offset + slice.getNumberOfElements(), true)
+                : productCountService.count(filter, count);
+
+        // An estimate can fall short of rows already seen.
+        long totalElements = Math.max(total.value(), offset + slice.getNumberOfElements() + (slice.hasNext() ? 1 : 0));
+        Page<ProductDto> result = new PageImpl<>(slice.getContent(), slice.getPageable(), totalElements);
+        return PageMapper.map(result, Function.identity(), total.exact());
+    }
+
+    private byte[] serialize(PaginationDto<ProductDto> response) {
+        try {
+            return objectMapper.writeValueAsBytes(response);
+        } catch (JsonProcessingException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+}
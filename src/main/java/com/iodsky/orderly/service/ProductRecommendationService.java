@@ -0,0 +1,103 @@
+package com.iodsky.orderly.service;
+
+import com.iodsky.orderly.event.OrderPlacedEvent;
+import com.iodsky.orderly.event.ProductDeletedEvent;
+import com.iodsky.orderly.model.Product;
+import com.iodsky.orderly.repository.OrderRepository;
+import com.iodsky.orderly.search.CoOccurrenceIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/*
+    "Frequently bought together", from how often two products were ordered together.
+    The model is built from all order items at startup and then updated as orders commit;
+    requests only read the precomputed top neighbours, see CoOccurrenceIndex.
+ */
+@Service
+public class ProductRecommendationService {
+
+    public static final int MAX_RELATED = 20;
+
+    private final Logger logger = LoggerFactory.getLogger(ProductRecommendationService.class);
+
+    private final ProductService productService;
+    private final OrderRepository orderRepository;
+    private final CoOccurrenceIndex index;
+    private final int maxItemsPerOrder;
+
+    public ProductRecommendationService(ProductService productService,
+                                        OrderRepository orderRepository,
+                                        @Value("${orderly.recommendations.neighbours-per-product}") int neighbours,
+                                        @Value("${orderly.recommendations.max-items-per-order}") int maxItemsPerOrder) {
+        this.productService = productService;
+        this.orderRepository = orderRepository;
+        this.index = new CoOccurrenceIndex(neighbours);
+        this.maxItemsPerOrder = maxItemsPerOrder;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void loadModel() {
+        long started = System.currentTimeMillis();
+        long orders = 0;
+
+        try (Stream<OrderRepository.OrderProductView> rows = orderRepository.streamOrderProducts()) {
+            UUID currentOrder = null;
+            List<UUID> basket = new ArrayList<>();
+
+            Iterator<OrderRepository.OrderProductView> iterator = rows.iterator();
+            while (iterator.hasNext()) {
+                OrderRepository.OrderProductView row = iterator.next();
+                if (!row.getOrderId().equals(currentOrder)) {
+                    add(basket);
+                    basket.clear();
+                    currentOrder = row.getOrderId();
+                    orders++;
+                }
+                basket.add(row.getProductId());
+            }
+            add(basket);
+        }
+
+        logger.info("Built co-occurrence model for {} products from {} orders in {} ms",
+                index.size(), orders, System.currentTimeMillis() - started);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrderPlaced(OrderPlacedEvent event) {
+        add(event.productIds());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductDeleted(ProductDeletedEvent event) {
+        index.remove(event.productId());
+    }
+
+    public List<Product> getRelatedProducts(UUID productId, int limit) {
+        productService.getProduct(productId);
+
+        // Neighbours deleted since the model learned them are left out.
+        return productService.getProductsWithDetails(index.top(productId, limit).stream()
+                .map(CoOccurrenceIndex.Neighbour::key)
+                .toList());
+    }
+
+    // Very large orders say little about any single pair and cost quadratically, so they are cut.
+    private void add(List<UUID> basket) {
+        if (basket.size() > 1) {
+            index.add(basket.size() > maxItemsPerOrder ? basket.subList(0, maxItemsPerOrder) : basket);
+        }
+    }
+}
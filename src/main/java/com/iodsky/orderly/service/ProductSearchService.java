@@ -0,0 +1,135 @@
+package com.iodsky.orderly.service;
+
+import com.iodsky.orderly.dto.ProductSearchHitDto;
+import com.iodsky.orderly.event.ProductDeletedEvent;
+import com.iodsky.orderly.event.ProductSavedEvent;
+import com.iodsky.orderly.event.ProductsSavedEvent;
+import com.iodsky.orderly.model.Product;
+import com.iodsky.orderly.search.InvertedIndex;
+import com.iodsky.orderly.search.Tokenizer;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+    Full-text product search served entirely from memory.
+    The index is loaded once at startup and then kept in sync through the product
+    events published by ProductService, so searching never touches the database.
+ */
+@Service
+@RequiredArgsConstructor
+public class ProductSearchService {
+
+    private static final int NAME_WEIGHT = 3;
+    private static final int BRAND_WEIGHT = 2;
+    private static final int DESCRIPTION_WEIGHT = 1;
+    private static final int LOAD_BATCH_SIZE = 1000;
+
+    private final Logger logger = LoggerFactory.getLogger(ProductSearchService.class);
+
+    private final ProductService productService;
+    private final InvertedIndex index = new InvertedIndex();
+    private final Map<UUID, IndexedProduct> products = new ConcurrentHashMap<>();
+
+    private record IndexedProduct(UUID id, String name, String brand, String description, String category,
+                                  BigDecimal price, int stock) {
+
+        boolean hasSameText(Product product) {
+            return Objects.equals(name, product.getName())
+                    && Objects.equals(brand, product.getBrand())
+                    && Objects.equals(description, product.getDescription());
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadIndex() {
+        long started = System.currentTimeMillis();
+        productService.forEachProduct(LOAD_BATCH_SIZE, batch -> batch.forEach(this::index));
+        logger.info("Indexed {} products for search in {} ms", index.size(), System.currentTimeMillis() - started);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductSaved(ProductSavedEvent event) {
+        index(event.product());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductsSaved(ProductsSavedEvent event) {
+        event.products().forEach(this::index);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductDeleted(ProductDeletedEvent event) {
+        products.computeIfPresent(event.productId(), (id, previous) -> {
+            index.remove(id);
+            return null;
+        });
+    }
+
+    public List<ProductSearchHitDto> search(String query, int limit) {
+        return index.search(Tokenizer.tokenize(query), limit).stream()
+                .map(hit -> toDto(products.get(hit.key()), hit.score()))
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    // Runs within the product's entry, so concurrent saves of one product update the index in the same order.
+    private void index(Product product) {
+        products.compute(product.getId(), (id, previous) -> {
+            // Price or stock updates keep the same terms, only the stored fields change.
+            if (previous == null || !previous.hasSameText(product)) {
+                index.put(id, termFrequencies(product));
+            }
+            return new IndexedProduct(
+                    id,
+                    product.getName(),
+                    product.getBrand(),
+                    product.getDescription(),
+                    product.getCategory() != null ? product.getCategory().getName() : null,
+                    product.getPrice().toBigDecimal(),
+                    product.getStock());
+        });
+    }
+
+    private static Map<String, Integer> termFrequencies(Product product) {
+        Map<String, Integer> frequencies = new HashMap<>();
+        addTerms(frequencies, product.getName(), NAME_WEIGHT);
+        addTerms(frequencies, product.getBrand(), BRAND_WEIGHT);
+        addTerms(frequencies, product.getDescription(), DESCRIPTION_WEIGHT);
+        return frequencies;
+    }
+
+    private static void addTerms(Map<String, Integer> frequencies, String text, int weight) {
+        for (String term : Tokenizer.tokenize(text)) {
+            frequencies.merge(term, weight, Integer::sum);
+        }
+    }
+
+    private static ProductSearchHitDto toDto(IndexedProduct product, float score) {
+        if (product == null) {
+            return null;
+        }
+
+        return ProductSearchHitDto.builder()
+                .id(product.id())
+                .name(product.name())
+                .brand(product.brand())
+                .category(product.category())
+                .price(product.price())
+                .stock(product.stock())
+                .score(score)
+                .build();
+    }
+}
@@ -1,47 +1,109 @@
 package com.iodsky.orderly.service;
 
+import com.iodsky.orderly.cache.ProductCache;
+import com.iodsky.orderly.dto.ProductCursor;
+import com.iodsky.orderly.dto.ProductDto;
+import com.iodsky.orderly.dto.ResourceVersion;
 import com.iodsky.orderly.dto.mapper.ProductMapper;
+import com.iodsky.orderly.event.ProductDeletedEvent;
+import com.iodsky.orderly.event.ProductImagesChangedEvent;
+import com.iodsky.orderly.event.ProductSavedEvent;
+import com.iodsky.orderly.request.ProductFilter;
 import com.iodsky.orderly.request.ProductRequest;
+import com.iodsky.orderly.request.ProductSort;
+import com.iodsky.orderly.exception.InvalidQuantityException;
 import com.iodsky.orderly.exception.ProductOutOfStockException;
 import com.iodsky.orderly.exception.ResourceInUseException;
 import com.iodsky.orderly.exception.ResourceNotFoundException;
 import com.iodsky.orderly.model.Category;
+import com.iodsky.orderly.model.Money;
 import com.iodsky.orderly.model.Product;
+import com.iodsky.orderly.repository.ProductBatchWriter;
 import com.iodsky.orderly.repository.ProductRepository;
+import com.iodsky.orderly.repository.ProductSpecifications;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
 import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class ProductService {
 
+    private static final Sort KEYSET_SORT = Sort.by("createdAt", "id");
+
     private final ProductRepository productRepository;
+    private final ProductBatchWriter productBatchWriter;
     private final ProductMapper productMapper;
     private final CategoryService categoryService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ProductCache productCache;
 
     public Product addProduct(ProductRequest request) {
         Category category = categoryService.getOrCreateCategory(request.getCategory());
         Product product = productMapper.toEntity(request);
         product.setCategory(category);
 
-        return productRepository.save(product);
+        Product saved = productRepository.save(product);
+        eventPublisher.publishEvent(new ProductSavedEvent(saved));
+        return saved;
     }
 
     public Product getProduct(UUID id) {
-        return productRepository.findById(id)
+        return productCache.get(id, key -> productRepository.findWithDetailsById(key)
+                .orElseThrow(() -> new ResourceNotFoundException("Product not found for id " + key)));
+    }
+
+    // Like getProduct for several ids, in their order: cached products plus one query for the rest.
+    public List<Product> getProductsWithDetails(List<UUID> ids) {
+        Map<UUID, Product> products = productCache.getAll(ids, missing -> productRepository
+                .findWithDetailsByIdIn(missing).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity())));
+
+        return ids.stream().map(products::get).filter(Objects::nonNull).toList();
+    }
+
+    // Managed entities in one query; ids without a product are left out.
+    public List<Product> getProductsByIds(Collection<UUID> ids) {
+        return productRepository.findAllById(ids);
+    }
+
+    public ResourceVersion getProductVersion(UUID id) {
+        return productRepository.findVersionById(id)
+                .map(version -> ResourceVersion.ofProduct(version.getVersion(), version.getCategoryVersion(),
+                        version.getUpdatedAt(), version.getCategoryUpdatedAt()))
                 .orElseThrow(() -> new ResourceNotFoundException("Product not found for id " + id));
     }
 
+    public void markImagesChanged(UUID id) {
+        productRepository.incrementVersion(id);
+        eventPublisher.publishEvent(new ProductImagesChangedEvent(id));
+    }
+
     public void deleteProductById(UUID id) {
         try {
-            productRepository.findById(id).ifPresentOrElse(productRepository::delete, () -> {
+            productRepository.findById(id).ifPresentOrElse(product -> {
+                productRepository.delete(product);
+                eventPublisher.publishEvent(new ProductDeletedEvent(id));
+            }, () -> {
                 throw new ResourceNotFoundException("Product not found for id " + id);
             });
         } catch (DataIntegrityViolationException ex) {
@@ -56,14 +118,16 @@ public class ProductService {
         existingProduct.setName(request.getName());
         existingProduct.setDescription(request.getDescription());
         existingProduct.setBrand(request.getBrand());
-        existingProduct.setPrice(request.getPrice());
+        existingProduct.setPrice(Money.of(request.getPrice()));
         existingProduct.setStock(request.getStock());
 
         Category category = categoryService.getOrCreateCategory(request.getCategory());
 
         existingProduct.setCategory(category);
 
-        return productRepository.save(existingProduct);
+        Product saved = productRepository.save(existingProduct);
+        eventPublisher.publishEvent(new ProductSavedEvent(saved));
+        return saved;
     }
 
     private String normalize(String value) {
@@ -71,42 +135,87 @@ public class ProductService {
 
     }
 
-    public Page<Product> getProducts(String name, String category, String brand, int page, int limit) {
+    public Page<ProductDto> getProducts(ProductFilter filter, int page, int limit, ProductSort sort) {
+        Pageable pageable = PageRequest.of(page, limit, sort.getSort());
 
-        Pageable pageable = PageRequest.of(page, limit);
+        return productRepository.findDtoPage(ProductSpecifications.matching(filter), pageable);
+    }
+
+    // Same rows as getProducts, without the total count.
+    public Slice<ProductDto> getProductSlice(ProductFilter filter, int page, int limit, ProductSort sort) {
+        Pageable pageable = PageRequest.of(page, limit, sort.getSort());
 
-        name = normalize(name);
-        category = normalize(category);
-        brand = normalize(brand);
+        return productRepository.findDtoSlice(ProductSpecifications.matching(filter), pageable);
+    }
 
-        if (category != null && brand != null) {
-            return productRepository.findByCategoryNameAndBrand(category, brand, pageable);
-        } else if (brand != null && name != null) {
-            return productRepository.findByBrandAndName(brand, name, pageable);
-        } else if (category != null) {
-            return productRepository.findByCategoryName(category, pageable);
-        } else if (brand != null) {
-            return productRepository.findByBrand(brand, pageable);
-        } else if (name != null) {
-            return productRepository.findByName(name, pageable);
-        } else {
-            return productRepository.findAll(pageable);
+    public long countProducts(ProductFilter filter) {
+        return productRepository.count(ProductSpecifications.matching(filter));
+    }
+
+    public Slice<ProductDto> getProductsAfter(ProductFilter filter, String cursor, int limit) {
+        Pageable pageable = PageRequest.of(0, limit, KEYSET_SORT);
+        Specification<Product> spec = ProductSpecifications.matching(filter);
+
+        cursor = normalize(cursor);
+
+        if (cursor != null) {
+            spec = spec.and(ProductSpecifications.after(ProductCursor.decode(cursor)));
         }
 
+        return productRepository.findDtoSlice(spec, pageable);
+    }
+
+    public void forEachProduct(int batchSize, Consumer<List<Product>> consumer) {
+        Pageable pageable = PageRequest.of(0, batchSize, KEYSET_SORT);
+        Slice<Product> batch = productRepository.findSlice(Specification.unrestricted(), pageable);
+
+        while (batch.hasContent()) {
+            consumer.accept(batch.getContent());
+
+            if (!batch.hasNext()) {
+                return;
+            }
+
+            ProductCursor last = ProductCursor.of(batch.getContent().getLast());
+            batch = productRepository.findSlice(ProductSpecifications.after(last), pageable);
+        }
     }
 
     public Long getProductsCountByBrandAndName(String brand, String name) {
         return productRepository.countByBrandAndName(brand, name);
     }
 
-    public Product decreaseStock(UUID id, int quantity) {
-        Product product = getProduct(id);
-
-        if (product.getStock() < quantity) {
-            throw new ProductOutOfStockException(product.getId());
+    /*
+        Takes the quantities off the products' stock in one conditional statement per product,
+        all sent as one batch, so the number of round trips does not grow with the order.
+        A product without enough stock fails the call and must fail the caller's transaction,
+        which undoes the other lines. Rows are updated in id order, so two checkouts sharing
+        products lock them in the same order and cannot deadlock.
+        Managed copies of the products keep their old stock; the events carry the stored one.
+        A zero or negative quantity passes the stock check and would raise the stock, so it is
+        rejected before anything is written.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void decreaseStock(Map<UUID, Integer> quantities) {
+        quantities.forEach((productId, quantity) -> {
+            if (quantity <= 0) {
+                throw new InvalidQuantityException(productId, quantity);
+            }
+        });
+        List<ProductBatchWriter.StockLine> lines = new TreeMap<>(quantities).entrySet().stream()
+                .map(line -> new ProductBatchWriter.StockLine(line.getKey(), line.getValue()))
+                .toList();
+
+        int[] updated = productBatchWriter.decreaseStock(lines);
+        for (int i = 0; i < lines.size(); i++) {
+            if (updated[i] == 0) {
+                throw new ProductOutOfStockException(lines.get(i).productId());
+            }
         }
 
-        product.setStock(product.getStock() - quantity);
-        return productRepository.save(product);
+        for (ProductRepository.StockView view : productRepository.findStockByIdIn(quantities.keySet())) {
+            Product stored = view.getProduct().toBuilder().stock(view.getStock()).version(view.getVersion()).build();
+            eventPublisher.publishEvent(new ProductSavedEvent(stored));
+        }
     }
 }
@@ -0,0 +1,167 @@
+package com.iodsky.orderly.service;
+
+import com.iodsky.orderly.dto.ProductSuggestionDto;
+import com.iodsky.orderly.event.ProductDeletedEvent;
+import com.iodsky.orderly.event.ProductSavedEvent;
+import com.iodsky.orderly.event.ProductsSavedEvent;
+import com.iodsky.orderly.model.Product;
+import com.iodsky.orderly.search.SuggestionTrie;
+import com.iodsky.orderly.search.Tokenizer;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/*
+    Prefix autocompletion over product names and brands, served from memory.
+    -----------------------------------------------------------------------
+    - Every product contributes its stock (plus one, so sold-out products still appear)
+      to the weight of its name and of its brand; a brand is as heavy as its catalog.
+    - Contributions are remembered per product, so an update only moves the difference
+      and a delete takes it back out.
+    - The number of distinct suggestions and their key length are capped to keep memory bounded.
+ */
+@Service
+@RequiredArgsConstructor
+public class ProductSuggestService {
+
+    public static final int MAX_SUGGESTIONS = 10;
+    private static final int LOAD_BATCH_SIZE = 1000;
+
+    private final Logger logger = LoggerFactory.getLogger(ProductSuggestService.class);
+
+    private final ProductService productService;
+    private final SuggestionTrie trie = new SuggestionTrie(MAX_SUGGESTIONS);
+    private final Map<String, Suggestion> suggestions = new HashMap<>();
+    private final Map<UUID, Contribution> contributions = new HashMap<>();
+
+    @Value("${orderly.suggest.max-entries}")
+    private int maxEntries;
+
+    @Value("${orderly.suggest.max-key-length}")
+    private int maxKeyLength;
+
+    private record Contribution(String nameKey, String brandKey, long weight) { }
+
+    private static final class Suggestion {
+        private final String text;
+        private long weight;
+        private int products;
+
+        Suggestion(String text) {
+            this.text = text;
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadSuggestions() {
+        long started = System.currentTimeMillis();
+        productService.forEachProduct(LOAD_BATCH_SIZE, batch -> batch.forEach(this::add));
+        logger.info("Loaded {} suggestions in {} ms", trie.size(), System.currentTimeMillis() - started);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductSaved(ProductSavedEvent event) {
+        add(event.product());
+    }
+
+    // Takes the lock once for the whole batch.
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onProductsSaved(ProductsSavedEvent event) {
+        event.products().forEach(this::add);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onProductDeleted(ProductDeletedEvent event) {
+        Contribution previous = contributions.remove(event.productId());
+        if (previous != null) {
+            withdraw(previous);
+        }
+    }
+
+    public List<ProductSuggestionDto> suggest(String query, int limit) {
+        String prefix = Tokenizer.normalize(query);
+        if (prefix.isEmpty()) {
+            return List.of();
+        }
+
+        return trie.suggest(truncate(prefix), Math.min(limit, MAX_SUGGESTIONS)).stream()
+                .map(entry -> ProductSuggestionDto.builder()
+                        .text(entry.text())
+                        .weight(entry.weight())
+                        .build())
+                .toList();
+    }
+
+    private synchronized void add(Product product) {
+        Contribution previous = contributions.get(product.getId());
+        Contribution current = new Contribution(
+                key(product.getName()),
+                key(product.getBrand()),
+                1L + Math.max(product.getStock(), 0));
+
+        if (current.equals(previous)) {
+            return;
+        }
+        if (previous != null) {
+            withdraw(previous);
+        }
+
+        // A product named after its brand counts once towards that suggestion.
+        String nameKey = contribute(current.nameKey(), product.getName(), current.weight());
+        String brandKey = current.brandKey().equals(current.nameKey())
+                ? null
+                : contribute(current.brandKey(), product.getBrand(), current.weight());
+        contributions.put(product.getId(), new Contribution(nameKey, brandKey, current.weight()));
+    }
+
+    // Returns the key the weight was recorded under, or null when the suggestion was not admitted.
+    private String contribute(String key, String text, long weight) {
+        if (key.isEmpty() || (!suggestions.containsKey(key) && suggestions.size() >= maxEntries)) {
+            return null;
+        }
+
+        Suggestion suggestion = suggestions.computeIfAbsent(key, k -> new Suggestion(text.strip()));
+        suggestion.weight += weight;
+        suggestion.products++;
+        trie.put(key, suggestion.text, suggestion.weight);
+        return key;
+    }
+
+    private void withdraw(Contribution contribution) {
+        withdraw(contribution.nameKey(), contribution.weight());
+        withdraw(contribution.brandKey(), contribution.weight());
+    }
+
+    private void withdraw(String key, long weight) {
+        Suggestion suggestion = key != null ? suggestions.get(key) : null;
+        if (suggestion == null) {
+            return;
+        }
+
+        suggestion.weight -= weight;
+        if (--suggestion.products == 0) {
+            suggestions.remove(key);
+            trie.remove(key);
+        } else {
+            trie.put(key, suggestion.text, suggestion.weight);
+        }
+    }
+
+    private String key(String text) {
+        return truncate(Tokenizer.normalize(text));
+    }
+
+    private String truncate(String key) {
+        return key.length() > maxKeyLength ? key.substring(0, maxKeyLength) : key;
+    }
+}
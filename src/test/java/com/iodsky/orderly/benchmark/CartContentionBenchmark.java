@@ -0,0 +1,125 @@
+package com.iodsky.orderly.benchmark;
+
+import com.iodsky.orderly.retry.ConflictRetryAspect;
+import com.iodsky.orderly.retry.RetryOnConflict;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/*
+    Cart updates from 8 threads through ConflictRetryAspect, against carts held as versioned
+    values that reject a write based on a stale version, like the @Version check on flush.
+    Compares retrying at once with the jittered backoff, for all threads on one cart and spread
+    over several; conflicts and failed (exhausted) updates are reported as secondary results.
+    Run with main() after `mvn test-compile`, or from the IDE.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(8)
+@Fork(1)
+public class CartContentionBenchmark {
+
+    private static final int MAX_ATTEMPTS = 5;
+    // Work between reading the cart and writing it, standing in for the transaction's queries.
+    private static final long WORK_TOKENS = 2_000;
+
+    @Param({"0", "20"})
+    private long initialBackoffMicros;
+
+    @Param({"1", "8"})
+    private int carts;
+
+    private Cart[] cartRows;
+    private CartUpdater updater;
+
+    private record CartState(long version, int quantity) { }
+
+    public static final class Cart {
+        private final AtomicReference<CartState> state = new AtomicReference<>(new CartState(0, 0));
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Outcomes {
+        public long conflicts;
+        public long failed;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            conflicts = 0;
+            failed = 0;
+        }
+    }
+
+    public static class CartUpdater {
+
+        @RetryOnConflict
+        public int add(Cart cart, int quantity, Outcomes outcomes) {
+            CartState read = cart.state.get();
+            Blackhole.consumeCPU(WORK_TOKENS);
+
+            CartState written = new CartState(read.version() + 1, read.quantity() + quantity);
+            if (!cart.state.compareAndSet(read, written)) {
+                outcomes.conflicts++;
+                throw new ObjectOptimisticLockingFailureException(Cart.class, cart);
+            }
+            return written.quantity();
+        }
+    }
+
+    @Setup
+    public void setup() {
+        cartRows = new Cart[carts];
+        for (int i = 0; i < carts; i++) {
+            cartRows[i] = new Cart();
+        }
+
+        Duration initialBackoff = Duration.ofNanos(TimeUnit.MICROSECONDS.toNanos(initialBackoffMicros));
+        AspectJProxyFactory factory = new AspectJProxyFactory(new CartUpdater());
+        factory.setProxyTargetClass(true);
+        factory.addAspect(new ConflictRetryAspect(MAX_ATTEMPTS, initialBackoff, initialBackoff.multipliedBy(16),
+                new SimpleMeterRegistry()));
+        updater = factory.getProxy();
+    }
+
+    @Benchmark
+    public int update(Outcomes outcomes) {
+        Cart cart = cartRows[ThreadLocalRandom.current().nextInt(carts)];
+        try {
+            return updater.add(cart, 1, outcomes);
+        } catch (ObjectOptimisticLockingFailureException ex) {
+            outcomes.failed++;
+            return -1;
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(CartContentionBenchmark.class.getSimpleName()).build()).run();
+    }
+}
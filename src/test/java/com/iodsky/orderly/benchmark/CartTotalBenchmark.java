@@ -0,0 +1,81 @@
+package com.iodsky.orderly.benchmark;
+
+import com.iodsky.orderly.model.Cart;
+import com.iodsky.orderly.model.CartItem;
+import com.iodsky.orderly.model.Money;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/*
+    Cart total in cents (Cart.getTotalAmount) against the BigDecimal stream it replaced.
+    Run with main() after `mvn test-compile`, or from the IDE; run with -prof gc to compare allocations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CartTotalBenchmark {
+
+    @Param({"3", "20", "100"})
+    private int lines;
+
+    private Cart cart;
+    private List<BigDecimalLine> bigDecimalLines;
+
+    private record BigDecimalLine(BigDecimal unitPrice, int quantity) {
+        BigDecimal getTotalPrice() {
+            return unitPrice.multiply(BigDecimal.valueOf(quantity));
+        }
+    }
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        cart = Cart.builder().items(new HashSet<>()).build();
+        bigDecimalLines = new ArrayList<>();
+
+        for (int i = 0; i < lines; i++) {
+            BigDecimal price = BigDecimal.valueOf(random.nextInt(100_000), Money.SCALE);
+            int quantity = 1 + random.nextInt(5);
+            cart.addItem(CartItem.builder().unitPrice(Money.of(price)).quantity(quantity).build());
+            bigDecimalLines.add(new BigDecimalLine(price, quantity));
+        }
+    }
+
+    @Benchmark
+    public Money money() {
+        return cart.getTotalAmount();
+    }
+
+    @Benchmark
+    public BigDecimal bigDecimal() {
+        return bigDecimalLines.stream()
+                .map(BigDecimalLine::getTotalPrice)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(CartTotalBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,311 @@
+package com.iodsky.orderly.inventory;
+
+import com.iodsky.orderly.event.ProductDeletedEvent;
+import com.iodsky.orderly.event.ProductSavedEvent;
+import com.iodsky.orderly.exception.ProductOutOfStockException;
+import com.iodsky.orderly.model.Product;
+import com.iodsky.orderly.repository.ProductRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class InventoryReservationsTest {
+
+    @Mock
+    private ProductRepository productRepository;
+
+    private SimpleMeterRegistry meterRegistry;
+    private InventoryReservations reservations;
+
+    private final UUID productA = UUID.randomUUID();
+    private final UUID productB = UUID.randomUUID();
+
+    @BeforeEach
+    void setup() {
+        meterRegistry = new SimpleMeterRegistry();
+        reservations = new InventoryReservations(true, Duration.ofMinutes(2), productRepository, meterRegistry);
+    }
+
+    @AfterEach
+    void cleanup() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    private static ProductRepository.StockLevel level(UUID id, int stock) {
+        return level(id, stock, 0);
+    }
+
+    private static ProductRepository.StockLevel level(UUID id, int stock, long version) {
+        return new ProductRepository.StockLevel() {
+            @Override
+            public UUID getId() {
+                return id;
+            }
+
+            @Override
+            public int getStock() {
+                return stock;
+            }
+
+            @Override
+            public long getVersion() {
+                return version;
+            }
+        };
+    }
+
+    private void stored(ProductRepository.StockLevel... levels) {
+        when(productRepository.findAllStockLevels()).thenReturn(List.of(levels));
+        reservations.reconcile();
+    }
+
+    private static ProductSavedEvent saved(UUID id, int stock, long version) {
+        return new ProductSavedEvent(Product.builder().id(id).stock(stock).version(version).build());
+    }
+
+    private double holds(String outcome) {
+        return meterRegistry.get("orderly.inventory.holds").tag("outcome", outcome).counter().count();
+    }
+
+    @Nested
+    @DisplayName("Hold tests")
+    class HoldTests {
+
+        @Test
+        void shouldHoldWhileStockLasts() {
+            stored(level(productA, 5));
+
+            reservations.hold(Map.of(productA, 3));
+
+            assertEquals(2, reservations.available(productA));
+            assertThrows(ProductOutOfStockException.class, () -> reservations.hold(Map.of(productA, 3)));
+            assertEquals(2, reservations.available(productA));
+            assertEquals(1, holds("granted"));
+            assertEquals(1, holds("rejected"));
+        }
+
+        @Test
+        void shouldReturnHeldLinesWhenAnotherLineIsRejected() {
+            stored(level(productA, 5), level(productB, 1));
+
+            assertThrows(ProductOutOfStockException.class,
+                    () -> reservations.hold(Map.of(productA, 2, productB, 2)));
+
+            assertEquals(5, reservations.available(productA));
+            assertEquals(1, reservations.available(productB));
+        }
+
+        @Test
+        void shouldLoadProductsOnFirstUse() {
+            when(productRepository.findStockLevelsByIdIn(List.of(productA))).thenReturn(List.of(level(productA, 4)));
+
+            reservations.hold(Map.of(productA, 1));
+            reservations.hold(Map.of(productA, 1));
+
+            assertEquals(2, reservations.available(productA));
+            verify(productRepository, times(1)).findStockLevelsByIdIn(anyCollection());
+        }
+
+        @Test
+        void shouldRejectUnknownProducts() {
+            when(productRepository.findStockLevelsByIdIn(List.of(productA))).thenReturn(List.of());
+
+            assertThrows(ProductOutOfStockException.class, () -> reservations.hold(Map.of(productA, 1)));
+        }
+
+        @Test
+        void shouldReturnQuantitiesOnRelease() {
+            stored(level(productA, 5));
+
+            InventoryReservations.Hold hold = reservations.hold(Map.of(productA, 5));
+            reservations.release(hold.id());
+            reservations.release(hold.id());
+
+            assertEquals(5, reservations.available(productA));
+            assertEquals(1, holds("released"));
+        }
+
+        @Test
+        void shouldFollowStoredStockAfterCommit() {
+            stored(level(productA, 5));
+
+            InventoryReservations.Hold hold = reservations.hold(Map.of(productA, 2));
+            reservations.onProductSaved(saved(productA, 3, 1));
+            reservations.commit(hold.id());
+
+            assertEquals(3, reservations.available(productA));
+            assertEquals(1, holds("committed"));
+        }
+
+        @Test
+        void shouldExpireAbandonedHolds() {
+            reservations = new InventoryReservations(true, Duration.ofMillis(-1), productRepository, meterRegistry);
+            stored(level(productA, 5));
+
+            reservations.hold(Map.of(productA, 5));
+            reservations.expireHolds();
+
+            assertEquals(5, reservations.available(productA));
+            assertEquals(1, holds("expired"));
+        }
+
+        @Test
+        void shouldNeverGrantMoreThanStockUnderContention() throws Exception {
+            int threads = 8;
+            int stock = 1000;
+            stored(level(productA, stock));
+
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Integer>> granted = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                granted.add(executor.submit(() -> {
+                    start.await();
+                    int count = 0;
+                    for (int attempt = 0; attempt < stock; attempt++) {
+                        try {
+                            reservations.hold(Map.of(productA, 1));
+                            count++;
+                        } catch (ProductOutOfStockException ex) {
+                            // sold out
+                        }
+                    }
+                    return count;
+                }));
+            }
+            start.countDown();
+
+            int total = 0;
+            for (Future<Integer> future : granted) {
+                total += future.get(30, TimeUnit.SECONDS);
+            }
+            executor.shutdown();
+
+            assertEquals(stock, total);
+            assertEquals(0, reservations.available(productA));
+        }
+    }
+
+    @Nested
+    @DisplayName("Transaction tests")
+    class TransactionTests {
+
+        @Test
+        void shouldReleaseHoldWhenTransactionRollsBack() {
+            stored(level(productA, 5));
+            TransactionSynchronizationManager.initSynchronization();
+
+            reservations.holdForTransaction(Map.of(productA, 2));
+            assertEquals(3, reservations.available(productA));
+
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+
+            assertEquals(5, reservations.available(productA));
+            assertEquals(1, holds("released"));
+        }
+
+        @Test
+        void shouldCommitHoldWhenTransactionCommits() {
+            stored(level(productA, 5));
+            TransactionSynchronizationManager.initSynchronization();
+
+            reservations.holdForTransaction(Map.of(productA, 2));
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+
+            assertEquals(1, holds("committed"));
+        }
+
+        @Test
+        void shouldDoNothingWhenDisabled() {
+            reservations = new InventoryReservations(false, Duration.ofMinutes(2), productRepository, meterRegistry);
+
+            reservations.holdForTransaction(Map.of(productA, 2));
+            reservations.reconcile();
+
+            assertNull(reservations.available(productA));
+            verifyNoInteractions(productRepository);
+        }
+    }
+
+    @Nested
+    @DisplayName("Reconcile tests")
+    class ReconcileTests {
+
+        @Test
+        void shouldKeepHoldsWhenStockIsReconciled() {
+            stored(level(productA, 5));
+            reservations.hold(Map.of(productA, 2));
+
+            stored(level(productA, 8));
+
+            assertEquals(6, reservations.available(productA));
+        }
+
+        @Test
+        void shouldIgnoreSnapshotsOlderThanAppliedOne() {
+            stored(level(productA, 5, 1));
+
+            reservations.onProductSaved(saved(productA, 2, 3));
+            reservations.onProductSaved(saved(productA, 4, 2));
+
+            assertEquals(2, reservations.available(productA));
+        }
+
+        @Test
+        void shouldNotRaiseStockBackOnReconcileReadBeforeLaterSave() {
+            stored(level(productA, 5, 1));
+            reservations.onProductSaved(saved(productA, 3, 2));
+
+            stored(level(productA, 5, 1));
+
+            assertEquals(3, reservations.available(productA));
+        }
+
+        @Test
+        void shouldDropProductsNoLongerStored() {
+            stored(level(productA, 5), level(productB, 5));
+
+            stored(level(productA, 5));
+
+            assertEquals(5, reservations.available(productA));
+            assertNull(reservations.available(productB));
+        }
+
+        @Test
+        void shouldDropDeletedProducts() {
+            stored(level(productA, 5));
+
+            reservations.onProductDeleted(new ProductDeletedEvent(productA));
+
+            assertNull(reservations.available(productA));
+        }
+    }
+}
@@ -0,0 +1,290 @@
+package com.iodsky.orderly.repository;
+
+import com.iodsky.orderly.model.Cart;
+import com.iodsky.orderly.model.CartItem;
+import com.iodsky.orderly.model.Category;
+import com.iodsky.orderly.model.Money;
+import com.iodsky.orderly.model.Product;
+import com.iodsky.orderly.model.User;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/*
+    Runs against H2 in PostgreSQL mode for the native ON CONFLICT statements, and outside
+    of a test transaction so that concurrent requests commit like they would in production.
+ */
+@DataJpaTest(properties = {
+        "spring.sql.init.mode=never",
+        "spring.datasource.url=jdbc:h2:mem:carts;MODE=PostgreSQL;DB_CLOSE_DELAY=-1"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class CartRepositoryTest {
+
+    private static final int REQUESTS = 8;
+
+    @Autowired
+    private CartRepository cartRepository;
+    @Autowired
+    private CartItemRepository cartItemRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private CategoryRepository categoryRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private User user;
+
+    @BeforeEach
+    void setup() {
+        user = userRepository.save(User.builder()
+                .firstName("Cart")
+                .lastName("Owner")
+                .email("owner@example.com")
+                .username("owner")
+                .password("secret")
+                .build());
+    }
+
+    @AfterEach
+    void cleanup() {
+        cartRepository.deleteAll();
+        userRepository.deleteAll();
+        productRepository.deleteAll();
+        categoryRepository.deleteAll();
+    }
+
+    @Nested
+    @DisplayName("Lazy cart creation tests")
+    class LazyCreationTests {
+
+        @Test
+        void shouldReadNoLinesWithoutCreatingCart() {
+            assertTrue(cartRepository.findLinesByUserId(user.getId()).isEmpty());
+            assertEquals(0, cartRepository.count());
+        }
+
+        @Test
+        void shouldCreateCartOnceForConcurrentFirstRequests() throws Exception {
+            ExecutorService executor = Executors.newFixedThreadPool(REQUESTS);
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Optional<Cart>>> requests = new ArrayList<>();
+
+            try {
+                for (int i = 0; i < REQUESTS; i++) {
+                    requests.add(executor.submit(() -> {
+                        start.await();
+                        cartRepository.insertIfAbsent(UUID.randomUUID(), user.getId());
+                        return cartRepository.findByUserId(user.getId());
+                    }));
+                }
+                start.countDown();
+
+                UUID cartId = requests.getFirst().get().orElseThrow().getId();
+                for (Future<Optional<Cart>> request : requests) {
+                    assertEquals(cartId, request.get().orElseThrow().getId());
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+
+            assertEquals(1, cartRepository.count());
+        }
+    }
+
+    @Nested
+    @DisplayName("Compaction tests")
+    class CompactionTests {
+
+        private final Date now = new Date();
+        private final Date cutoff = new Date(now.getTime() - 60_000);
+
+        @Test
+        void shouldDeleteItemsUpdatedBeforeCutoffOldestFirst() {
+            UUID oldest = addItem("Oldest", new Date(cutoff.getTime() - 2000));
+            UUID old = addItem("Old", new Date(cutoff.getTime() - 1000));
+            UUID fresh = addItem("Fresh", now);
+
+            assertEquals(1, cartItemRepository.deleteItemsUpdatedBefore(cutoff, 1));
+            assertFalse(cartItemRepository.existsById(oldest));
+            assertTrue(cartItemRepository.existsById(old));
+
+            assertEquals(1, cartItemRepository.deleteItemsUpdatedBefore(cutoff, 10));
+            assertEquals(0, cartItemRepository.deleteItemsUpdatedBefore(cutoff, 10));
+            assertEquals(List.of(fresh), cartItemRepository.findAll().stream().map(CartItem::getId).toList());
+        }
+
+        @Test
+        void shouldStampUndatedItemsInBatches() {
+            addItem("First", null);
+            addItem("Second", null);
+
+            assertEquals(1, cartItemRepository.stampUndatedItems(now, 1));
+            assertEquals(1, cartItemRepository.stampUndatedItems(now, 10));
+            assertEquals(0, cartItemRepository.stampUndatedItems(now, 10));
+            assertEquals(0, cartItemRepository.deleteItemsUpdatedBefore(cutoff, 10));
+        }
+
+        @Test
+        void shouldDeleteOnlyEmptyCartsCreatedBeforeCutoff() {
+            UUID cartWithItem = createCart(user, cutoff);
+            addItem("Kept", now);
+            UUID emptyOld = createCart(createUser("old"), new Date(cutoff.getTime() - 1000));
+            UUID emptyNew = createCart(createUser("new"), now);
+
+            List<UUID> ids = cartRepository.findEmptyCartIds(new UUID(0, 0), cutoff, 10);
+
+            assertEquals(List.of(emptyOld), ids);
+            assertEquals(1, cartRepository.deleteEmptyCarts(ids));
+            assertTrue(cartRepository.existsById(cartWithItem));
+            assertTrue(cartRepository.existsById(emptyNew));
+            assertFalse(cartRepository.existsById(emptyOld));
+        }
+
+        @Test
+        void shouldKeepCartThatGainedItemAfterLookup() {
+            UUID cartId = createCart(user, new Date(cutoff.getTime() - 1000));
+            List<UUID> ids = cartRepository.findEmptyCartIds(new UUID(0, 0), cutoff, 10);
+            addItem("Late", now);
+
+            assertEquals(List.of(cartId), ids);
+            assertEquals(0, cartRepository.deleteEmptyCarts(ids));
+            assertTrue(cartRepository.existsById(cartId));
+        }
+    }
+
+    @Nested
+    @DisplayName("Optimistic locking tests")
+    class OptimisticLockingTests {
+
+        @Test
+        void shouldRejectItemUpdateBasedOnStaleVersion() {
+            UUID itemId = addItem("Contended", new Date());
+            CartItem first = cartItemRepository.findById(itemId).orElseThrow();
+            CartItem second = cartItemRepository.findById(itemId).orElseThrow();
+
+            first.setQuantity(2);
+            cartItemRepository.saveAndFlush(first);
+            second.setQuantity(3);
+
+            assertThrows(ObjectOptimisticLockingFailureException.class, () -> cartItemRepository.saveAndFlush(second));
+            assertEquals(2, cartItemRepository.findById(itemId).orElseThrow().getQuantity());
+        }
+
+        @Test
+        void shouldRejectBatchOnCartChangedByConcurrentBatch() {
+            addItem("Existing", new Date());
+            Product added = createProduct("Added");
+            TransactionTemplate batch = new TransactionTemplate(transactionManager);
+            TransactionTemplate concurrentBatch = new TransactionTemplate(transactionManager);
+            concurrentBatch.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+            assertThrows(ObjectOptimisticLockingFailureException.class, () -> batch.executeWithoutResult(status -> {
+                Cart cart = cartRepository.findWithItemsByUserId(user.getId()).orElseThrow();
+
+                concurrentBatch.executeWithoutResult(concurrent -> {
+                    Cart current = cartRepository.findWithItemsByUserId(user.getId()).orElseThrow();
+                    current.addItem(CartItem.builder().product(added).quantity(1).unitPrice(Money.of(10)).build());
+                });
+
+                cart.getItems().clear();
+                cartRepository.saveAndFlush(cart);
+            }));
+            assertEquals(2, cartRepository.findLinesByUserId(user.getId()).size());
+        }
+    }
+
+    @Nested
+    @DisplayName("Item view tests")
+    class ItemViewTests {
+
+        @Test
+        void shouldReadUnitPriceOfNativeViewAsMoney() {
+            addItem("Viewed", new Date());
+            UUID productId = cartRepository.findLinesByUserId(user.getId()).getFirst().getProductId();
+
+            CartItemRepository.CartItemView view = cartItemRepository
+                    .findViewByUserIdAndProductId(user.getId(), productId).orElseThrow();
+
+            // Only the price is read: H2 returns native uuid columns as byte[], Postgres as UUID.
+            assertEquals(Money.of(10), view.getUnitPrice());
+        }
+    }
+
+    private UUID createCart(User owner, Date createdAt) {
+        cartRepository.insertIfAbsent(UUID.randomUUID(), owner.getId());
+        UUID cartId = cartRepository.findByUserId(owner.getId()).orElseThrow().getId();
+        jdbcTemplate.update("update carts set created_at = ? where id = ?", new Timestamp(createdAt.getTime()),
+                cartId);
+        return cartId;
+    }
+
+    // Adds an item to the user's cart, creating the cart on first use, with the given update time.
+    private UUID addItem(String productName, Date updatedAt) {
+        cartRepository.insertIfAbsent(UUID.randomUUID(), user.getId());
+        Product product = createProduct(productName);
+
+        // H2 has no ON CONFLICT DO UPDATE, so the item is inserted directly instead of with addQuantity.
+        UUID itemId = UUID.randomUUID();
+        UUID cartId = cartRepository.findByUserId(user.getId()).orElseThrow().getId();
+        jdbcTemplate.update("""
+                insert into cart_items (id, cart_id, product_id, quantity, unit_price, updated_at)
+                values (?, ?, ?, 1, ?, ?)""", itemId, cartId, product.getId(), BigDecimal.TEN,
+                updatedAt == null ? null : new Timestamp(updatedAt.getTime()));
+        return itemId;
+    }
+
+    private Product createProduct(String name) {
+        Category category = categoryRepository.save(Category.builder().name(name).build());
+        return productRepository.save(Product.builder()
+                .name(name)
+                .brand("Brand")
+                .description("Description")
+                .price(Money.of(10))
+                .stock(5)
+                .category(category)
+                .build());
+    }
+
+    private User createUser(String name) {
+        return userRepository.save(User.builder()
+                .firstName(name)
+                .lastName("Owner")
+                .email(name + "@example.com")
+                .username(name)
+                .password("secret")
+                .build());
+    }
+}
@@ -0,0 +1,370 @@
+package com.iodsky.orderly.repository;
+
+import com.iodsky.orderly.dto.ImageDto;
+import com.iodsky.orderly.dto.ProductDto;
+import com.iodsky.orderly.dto.mapper.ImageMapper;
+import com.iodsky.orderly.dto.mapper.ProductMapper;
+import com.iodsky.orderly.model.Category;
+import com.iodsky.orderly.model.Image;
+import com.iodsky.orderly.model.Money;
+import com.iodsky.orderly.model.Product;
+import com.iodsky.orderly.request.ProductFilter;
+import com.iodsky.orderly.request.ProductSort;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/*
+    Guards the number of SQL statements a product listing costs, so that a lazy
+    association dereferenced by ProductMapper cannot silently turn into N+1 queries.
+ */
+@DataJpaTest(properties = {
+        "spring.sql.init.mode=never",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@Import({ProductMapper.class, ImageMapper.class, ProductBatchWriter.class})
+class ProductRepositoryTest {
+
+    private static final int CATEGORIES = 4;
+    private static final int PRODUCTS = 60;
+    private static final int IMAGES_PER_PRODUCT = 2;
+    private static final int PAGE_SIZE = 50;
+
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private ProductMapper productMapper;
+    @Autowired
+    private ProductBatchWriter productBatchWriter;
+    @Autowired
+    private TestEntityManager entityManager;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setup() {
+        for (int c = 0; c < CATEGORIES; c++) {
+            Category category = entityManager.persist(Category.builder().name("Category " + c).build());
+
+            for (int p = c; p < PRODUCTS; p += CATEGORIES) {
+                Product product = entityManager.persist(Product.builder()
+                        .name("Product " + p)
+                        .brand("Brand " + p % 3)
+                        .description("Description " + p)
+                        .price(Money.of(BigDecimal.valueOf(10 + p)))
+                        .stock(p % 5)
+                        .category(category)
+                        .build());
+
+                for (int i = 0; i < IMAGES_PER_PRODUCT; i++) {
+                    entityManager.persist(Image.builder()
+                            .fileName("product-" + p + "-" + i + ".png")
+                            .fileType("image/png")
+                            .product(product)
+                            .build());
+                }
+            }
+        }
+
+        entityManager.flush();
+        entityManager.clear();
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    private List<ProductDto> map(Slice<Product> products) {
+        return products.getContent().stream().map(productMapper::toDto).toList();
+    }
+
+    // Image order within a product is not significant.
+    private static List<Map.Entry<ProductDto, Set<ImageDto>>> withImageSet(List<ProductDto> products) {
+        return products.stream()
+                .map(product -> {
+                    Set<ImageDto> images = Set.copyOf(product.getImages());
+                    product.setImages(null);
+                    return Map.entry(product, images);
+                })
+                .toList();
+    }
+
+    @Nested
+    @DisplayName("Listing statement count tests")
+    class ListingStatementCountTests {
+
+        @Test
+        void shouldLoadKeysetSliceWithImagesInTwoStatements() {
+            Slice<Product> slice = productRepository.findSlice(
+                    ProductSpecifications.matching(ProductFilter.builder().build()),
+                    PageRequest.of(0, PAGE_SIZE, Sort.by("createdAt", "id")));
+
+            List<ProductDto> dtos = map(slice);
+
+            assertEquals(PAGE_SIZE, dtos.size());
+            assertTrue(slice.hasNext());
+            assertEquals(2, statistics.getPrepareStatementCount());
+        }
+    }
+
+    @Nested
+    @DisplayName("Projection read path tests")
+    class ProjectionReadPathTests {
+
+        @Test
+        void shouldReadPageWithoutLoadingEntities() {
+            Page<ProductDto> page = productRepository.findDtoPage(
+                    ProductSpecifications.matching(ProductFilter.builder().build()), PageRequest.of(0, PAGE_SIZE));
+
+            assertEquals(PAGE_SIZE, page.getContent().size());
+            assertEquals(PRODUCTS, page.getTotalElements());
+            assertTrue(page.getContent().stream().allMatch(dto -> dto.getCategory() != null
+                    && dto.getCreatedAt() != null
+                    && dto.getImages().size() == IMAGES_PER_PRODUCT
+                    && dto.getImages().stream().allMatch(image -> image.getProductId().equals(dto.getId()))));
+            // tuple page query + count query + one IN query for images
+            assertEquals(3, statistics.getPrepareStatementCount());
+            assertEquals(0, statistics.getEntityLoadCount());
+        }
+
+        @Test
+        void shouldMatchEntityMappingForFilteredPage() {
+            ProductFilter filter = ProductFilter.builder().category("Category 2").minPrice(BigDecimal.valueOf(20)).build();
+            PageRequest pageable = PageRequest.of(0, PAGE_SIZE, Sort.by("createdAt", "id"));
+
+            List<ProductDto> projected = productRepository.findDtoPage(ProductSpecifications.matching(filter), pageable)
+                    .getContent();
+            List<ProductDto> mapped = map(productRepository.findSlice(ProductSpecifications.matching(filter), pageable));
+
+            assertFalse(projected.isEmpty());
+            assertEquals(withImageSet(mapped), withImageSet(projected));
+        }
+
+        @Test
+        void shouldReadSliceWithoutCountQuery() {
+            Slice<ProductDto> slice = productRepository.findDtoSlice(
+                    ProductSpecifications.matching(ProductFilter.builder().inStock(true).build()),
+                    PageRequest.of(0, 10, Sort.by("createdAt", "id")));
+
+            assertEquals(10, slice.getContent().size());
+            assertTrue(slice.hasNext());
+            assertTrue(slice.getContent().stream().allMatch(dto -> dto.getStock() > 0));
+            assertEquals(2, statistics.getPrepareStatementCount());
+            assertEquals(0, statistics.getEntityLoadCount());
+        }
+
+        @Test
+        void shouldReturnEmptySliceWithoutQueryingImages() {
+            Slice<ProductDto> slice = productRepository.findDtoSlice(
+                    ProductSpecifications.matching(ProductFilter.builder().brand("Unknown").build()),
+                    PageRequest.of(0, 10, Sort.by("createdAt", "id")));
+
+            assertFalse(slice.hasContent());
+            assertFalse(slice.hasNext());
+            assertEquals(1, statistics.getPrepareStatementCount());
+        }
+    }
+
+    @Nested
+    @DisplayName("Version tests")
+    class VersionTests {
+
+        private Product anyProduct() {
+            return productRepository.findAll(PageRequest.of(0, 1)).getContent().getFirst();
+        }
+
+        @Test
+        void shouldReadVersionsWithoutLoadingEntities() {
+            Product product = anyProduct();
+            entityManager.clear();
+            statistics.clear();
+
+            ProductRepository.VersionView version = productRepository.findVersionById(product.getId()).orElseThrow();
+
+            assertEquals(0L, version.getVersion());
+            assertEquals(0L, version.getCategoryVersion());
+            assertNotNull(version.getUpdatedAt());
+            assertEquals(0, statistics.getEntityLoadCount());
+        }
+
+        @Test
+        void shouldIncrementVersionOnUpdate() {
+            Product product = anyProduct();
+            product.setStock(product.getStock() + 1);
+            entityManager.flush();
+            entityManager.clear();
+
+            assertEquals(1L, productRepository.findVersionById(product.getId()).orElseThrow().getVersion());
+        }
+
+        @Test
+        void shouldIncrementVersionExplicitly() {
+            Product product = anyProduct();
+            entityManager.clear();
+
+            assertEquals(1, productRepository.incrementVersion(product.getId()));
+            assertEquals(1L, productRepository.findVersionById(product.getId()).orElseThrow().getVersion());
+        }
+    }
+
+    @Nested
+    @DisplayName("Batch insert tests")
+    class BatchInsertTests {
+
+        @Test
+        void shouldInsertProductsReadableThroughRepository() {
+            Category category = productRepository.findAll(PageRequest.of(0, 1)).getContent().getFirst().getCategory();
+            Date now = new Date();
+            Product imported = Product.builder()
+                    .id(UUID.randomUUID())
+                    .name("Imported Mouse")
+                    .description("Bulk")
+                    .brand("Logitech")
+                    .price(Money.of(new BigDecimal("19.99")))
+                    .stock(4)
+                    .category(category)
+                    .version(0L)
+                    .createdAt(now)
+                    .updatedAt(now)
+                    .build();
+            entityManager.clear();
+
+            productBatchWriter.insert(List.of(imported));
+
+            Product loaded = productRepository.findWithDetailsById(imported.getId()).orElseThrow();
+            assertEquals("Imported Mouse", loaded.getName());
+            assertEquals(Money.of(new BigDecimal("19.99")), loaded.getPrice());
+            assertEquals(category.getId(), loaded.getCategory().getId());
+            assertEquals(0L, loaded.getVersion());
+        }
+    }
+
+    @Nested
+    @DisplayName("Stock decrement tests")
+    class StockDecrementTests {
+
+        private Product withStock(int stock) {
+            return productRepository.findAll().stream()
+                    .filter(product -> product.getStock() == stock)
+                    .findFirst()
+                    .orElseThrow();
+        }
+
+        @Test
+        void shouldDecreaseEveryLineAndBumpVersion() {
+            Product first = withStock(4);
+            Product second = withStock(2);
+
+            int[] updated = productBatchWriter.decreaseStock(List.of(
+                    new ProductBatchWriter.StockLine(first.getId(), 4),
+                    new ProductBatchWriter.StockLine(second.getId(), 1)));
+
+            assertArrayEquals(new int[]{1, 1}, updated);
+            Map<UUID, Integer> stored = productRepository.findStockByIdIn(List.of(first.getId(), second.getId()))
+                    .stream()
+                    .collect(Collectors.toMap(view -> view.getProduct().getId(),
+                            ProductRepository.StockView::getStock));
+            assertEquals(Map.of(first.getId(), 0, second.getId(), 1), stored);
+            // The managed copies are not refreshed by the batch.
+            assertEquals(4, first.getStock());
+            assertEquals(1L, productRepository.findVersionById(first.getId()).orElseThrow().getVersion());
+        }
+
+        @Test
+        void shouldNotUpdateLineAskingForMoreThanStock() {
+            Product product = withStock(3);
+            Product soldOut = withStock(0);
+
+            int[] updated = productBatchWriter.decreaseStock(List.of(
+                    new ProductBatchWriter.StockLine(product.getId(), 4),
+                    new ProductBatchWriter.StockLine(soldOut.getId(), 1)));
+
+            assertArrayEquals(new int[]{0, 0}, updated);
+            assertEquals(0L, productRepository.findVersionById(product.getId()).orElseThrow().getVersion());
+            assertEquals(3, productRepository.findStockByIdIn(List.of(product.getId())).getFirst().getStock());
+        }
+    }
+
+    @Nested
+    @DisplayName("Export stream tests")
+    class ExportStreamTests {
+
+        @Test
+        @Transactional(readOnly = true)
+        void shouldStreamCatalogWithCategoriesInOneStatement() {
+            List<Product> products;
+            try (Stream<Product> stream = productRepository.streamAll()) {
+                products = stream.toList();
+            }
+
+            assertEquals(PRODUCTS, products.size());
+            assertTrue(products.stream().allMatch(product -> product.getCategory().getName() != null));
+            assertEquals(1, statistics.getPrepareStatementCount());
+
+            // images of a whole chunk come in one batch once the first one is touched
+            products.forEach(product -> assertEquals(IMAGES_PER_PRODUCT, product.getImages().size()));
+            assertEquals(2, statistics.getPrepareStatementCount());
+        }
+    }
+
+    @Nested
+    @DisplayName("Sort tests")
+    class SortTests {
+
+        private List<ProductDto> allPages(ProductSort sort) {
+            Specification<Product> all = ProductSpecifications.matching(ProductFilter.builder().build());
+            List<ProductDto> products = new ArrayList<>();
+            for (int page = 0; page * PAGE_SIZE < PRODUCTS; page++) {
+                products.addAll(productRepository.findDtoPage(all, PageRequest.of(page, PAGE_SIZE, sort.getSort()))
+                        .getContent());
+            }
+            return products;
+        }
+
+        @Test
+        void shouldBreakTiesOnIdSoPagesNeitherOverlapNorSkip() {
+            List<ProductDto> products = allPages(ProductSort.STOCK);
+
+            assertEquals(PRODUCTS, products.stream().map(ProductDto::getId).distinct().count());
+            Comparator<ProductDto> order = Comparator.comparingInt(ProductDto::getStock)
+                    .thenComparing(ProductDto::getId, Comparator.comparing(UUID::toString))
+                    .reversed();
+            assertEquals(products.stream().sorted(order).toList(), products);
+        }
+
+        @Test
+        void shouldSortByPrice() {
+            List<BigDecimal> prices = allPages(ProductSort.PRICE_DESC).stream().map(ProductDto::getPrice).toList();
+
+            assertEquals(prices.stream().sorted(Comparator.reverseOrder()).toList(), prices);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.iodsky.orderly.retry;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConflictRetryAspectTest {
+
+    private static final int MAX_ATTEMPTS = 3;
+
+    private SimpleMeterRegistry meterRegistry;
+    private Target target;
+    private Target proxy;
+
+    static class Target {
+        private final AtomicInteger calls = new AtomicInteger();
+        private int conflicts;
+
+        @RetryOnConflict
+        public String update() {
+            if (calls.incrementAndGet() <= conflicts) {
+                throw new ObjectOptimisticLockingFailureException(Object.class, "id");
+            }
+            return "updated";
+        }
+
+        @RetryOnConflict
+        public String fail() {
+            calls.incrementAndGet();
+            throw new DataIntegrityViolationException("invalid");
+        }
+
+        public String unannotated() {
+            calls.incrementAndGet();
+            throw new ObjectOptimisticLockingFailureException(Object.class, "id");
+        }
+    }
+
+    @BeforeEach
+    void setup() {
+        meterRegistry = new SimpleMeterRegistry();
+        target = new Target();
+        AspectJProxyFactory factory = new AspectJProxyFactory(target);
+        factory.setProxyTargetClass(true);
+        factory.addAspect(new ConflictRetryAspect(MAX_ATTEMPTS, Duration.ofMillis(1), Duration.ofMillis(5),
+                meterRegistry));
+        proxy = factory.getProxy();
+    }
+
+    @AfterEach
+    void cleanup() {
+        TransactionSynchronizationManager.setActualTransactionActive(false);
+    }
+
+    private double conflicts(String outcome) {
+        return meterRegistry.get("orderly.retry.conflicts").tag("outcome", outcome).counter().count();
+    }
+
+    @Nested
+    @DisplayName("Retry tests")
+    class RetryTests {
+
+        @Test
+        void shouldRetryUntilConflictIsResolved() {
+            target.conflicts = 2;
+
+            assertEquals("updated", proxy.update());
+            assertEquals(3, target.calls.get());
+            assertEquals(2, conflicts("retried"));
+        }
+
+        @Test
+        void shouldRethrowAfterMaxAttempts() {
+            target.conflicts = MAX_ATTEMPTS;
+
+            assertThrows(ObjectOptimisticLockingFailureException.class, () -> proxy.update());
+            assertEquals(MAX_ATTEMPTS, target.calls.get());
+            assertEquals(MAX_ATTEMPTS - 1, conflicts("retried"));
+            assertEquals(1, conflicts("exhausted"));
+        }
+
+        @Test
+        void shouldNotRetryOtherFailures() {
+            assertThrows(DataIntegrityViolationException.class, () -> proxy.fail());
+            assertEquals(1, target.calls.get());
+        }
+
+        @Test
+        void shouldNotRetryUnannotatedMethods() {
+            assertThrows(ObjectOptimisticLockingFailureException.class, () -> proxy.unannotated());
+            assertEquals(1, target.calls.get());
+        }
+
+        @Test
+        void shouldLeaveRetryToCallerInsideTransaction() {
+            target.conflicts = 1;
+            TransactionSynchronizationManager.setActualTransactionActive(true);
+
+            assertThrows(ObjectOptimisticLockingFailureException.class, () -> proxy.update());
+            assertEquals(1, target.calls.get());
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.iodsky.orderly.service;
+
+import com.iodsky.orderly.cache.HotCartStore;
+import com.iodsky.orderly.repository.CartItemRepository;
+import com.iodsky.orderly.repository.CartRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CartCompactionServiceTest {
+
+    private static final int BATCH_SIZE = 2;
+
+    @Mock
+    private CartRepository cartRepository;
+    @Mock
+    private CartItemRepository cartItemRepository;
+    @Mock
+    private HotCartStore hotCartStore;
+
+    private SimpleMeterRegistry meterRegistry;
+    private CartCompactionService cartCompactionService;
+
+    @BeforeEach
+    void setup() {
+        meterRegistry = new SimpleMeterRegistry();
+        cartCompactionService = new CartCompactionService(cartRepository, cartItemRepository, hotCartStore,
+                meterRegistry);
+        ReflectionTestUtils.setField(cartCompactionService, "enabled", true);
+        ReflectionTestUtils.setField(cartCompactionService, "itemTtl", Duration.ofDays(30));
+        ReflectionTestUtils.setField(cartCompactionService, "emptyCartGrace", Duration.ofHours(1));
+        ReflectionTestUtils.setField(cartCompactionService, "batchSize", BATCH_SIZE);
+        ReflectionTestUtils.setField(cartCompactionService, "batchPause", Duration.ZERO);
+        ReflectionTestUtils.setField(cartCompactionService, "maxBatches", 100);
+    }
+
+    @Nested
+    @DisplayName("Item expiry tests")
+    class ItemExpiryTests {
+
+        @Test
+        void shouldDeleteItemsInBatchesUntilBatchComesBackShort() {
+            when(cartItemRepository.deleteItemsUpdatedBefore(any(Date.class), eq(BATCH_SIZE))).thenReturn(2, 2, 1);
+            when(cartRepository.findEmptyCartIds(any(UUID.class), any(Date.class), eq(BATCH_SIZE)))
+                    .thenReturn(List.of());
+
+            CartCompactionService.Result result = cartCompactionService.compact();
+
+            assertEquals(5, result.itemsDeleted());
+            verify(cartItemRepository, times(3)).deleteItemsUpdatedBefore(any(Date.class), eq(BATCH_SIZE));
+        }
+
+        @Test
+        void shouldExpireItemsOlderThanTtl() {
+            when(cartRepository.findEmptyCartIds(any(UUID.class), any(Date.class), anyInt())).thenReturn(List.of());
+            ArgumentCaptor<Date> cutoff = ArgumentCaptor.forClass(Date.class);
+            long before = System.currentTimeMillis();
+
+            cartCompactionService.compact();
+
+            verify(cartItemRepository).deleteItemsUpdatedBefore(cutoff.capture(), eq(BATCH_SIZE));
+            long ttl = Duration.ofDays(30).toMillis();
+            assertTrue(cutoff.getValue().getTime() >= before - ttl);
+            assertTrue(cutoff.getValue().getTime() <= System.currentTimeMillis() - ttl);
+        }
+
+        @Test
+        void shouldStampUndatedItemsBeforeExpiringItems() {
+            when(cartItemRepository.stampUndatedItems(any(Date.class), eq(BATCH_SIZE))).thenReturn(2, 0);
+            when(cartRepository.findEmptyCartIds(any(UUID.class), any(Date.class), anyInt())).thenReturn(List.of());
+
+            cartCompactionService.compact();
+
+            verify(cartItemRepository, times(2)).stampUndatedItems(any(Date.class), eq(BATCH_SIZE));
+            verify(cartItemRepository).deleteItemsUpdatedBefore(any(Date.class), eq(BATCH_SIZE));
+        }
+    }
+
+    @Nested
+    @DisplayName("Empty cart tests")
+    class EmptyCartTests {
+
+        @Test
+        void shouldWalkEmptyCartsByIdAfterLastBatch() {
+            UUID first = UUID.randomUUID();
+            UUID second = UUID.randomUUID();
+            UUID third = UUID.randomUUID();
+            when(cartRepository.findEmptyCartIds(eq(new UUID(0, 0)), any(Date.class), eq(BATCH_SIZE)))
+                    .thenReturn(List.of(first, second));
+            when(cartRepository.findEmptyCartIds(eq(second), any(Date.class), eq(BATCH_SIZE)))
+                    .thenReturn(List.of(third));
+            when(cartRepository.deleteEmptyCarts(List.of(first, second))).thenReturn(2);
+            when(cartRepository.deleteEmptyCarts(List.of(third))).thenReturn(0);
+
+            CartCompactionService.Result result = cartCompactionService.compact();
+
+            assertEquals(2, result.cartsDeleted());
+            verify(cartRepository, times(2)).findEmptyCartIds(any(UUID.class), any(Date.class), eq(BATCH_SIZE));
+        }
+
+        @Test
+        void shouldSkipCartsHeldInMemory() {
+            UUID held = UUID.randomUUID();
+            UUID stale = UUID.randomUUID();
+            when(cartRepository.findEmptyCartIds(eq(new UUID(0, 0)), any(Date.class), eq(BATCH_SIZE)))
+                    .thenReturn(List.of(held, stale));
+            when(cartRepository.findEmptyCartIds(eq(stale), any(Date.class), eq(BATCH_SIZE)))
+                    .thenReturn(List.of());
+            when(hotCartStore.heldCartIds()).thenReturn(Set.of(held));
+            when(cartRepository.deleteEmptyCarts(List.of(stale))).thenReturn(1);
+
+            CartCompactionService.Result result = cartCompactionService.compact();
+
+            assertEquals(1, result.cartsDeleted());
+            verify(cartRepository, times(1)).deleteEmptyCarts(anyCollection());
+        }
+
+        @Test
+        void shouldNotDeleteWhenNoEmptyCartsFound() {
+            when(cartRepository.findEmptyCartIds(any(UUID.class), any(Date.class), eq(BATCH_SIZE)))
+                    .thenReturn(List.of());
+
+            CartCompactionService.Result result = cartCompactionService.compact();
+
+            assertEquals(0, result.cartsDeleted());
+            verify(cartRepository, never()).deleteEmptyCarts(any());
+        }
+    }
+
+    @Nested
+    @DisplayName("Throttling tests")
+    class ThrottlingTests {
+
+        @Test
+        void shouldStopAfterMaxBatches() {
+            ReflectionTestUtils.setField(cartCompactionService, "maxBatches", 3);
+            when(cartItemRepository.deleteItemsUpdatedBefore(any(Date.class), eq(BATCH_SIZE))).thenReturn(BATCH_SIZE);
+
+            CartCompactionService.Result result = cartCompactionService.compact();
+
+            assertEquals(4, result.itemsDeleted());
+            verify(cartItemRepository).stampUndatedItems(any(Date.class), eq(BATCH_SIZE));
+            verify(cartItemRepository, times(2)).deleteItemsUpdatedBefore(any(Date.class), eq(BATCH_SIZE));
+            verifyNoInteractions(cartRepository);
+        }
+
+        @Test
+        void shouldSkipScheduledRunWhenDisabled() {
+            ReflectionTestUtils.setField(cartCompactionService, "enabled", false);
+
+            cartCompactionService.compactOnSchedule();
+
+            verifyNoInteractions(cartRepository, cartItemRepository);
+        }
+
+        @Test
+        void shouldKeepSchedulingWhenRunFails() {
+            when(cartItemRepository.stampUndatedItems(any(Date.class), anyInt()))
+                    .thenThrow(new IllegalStateException("database down"));
+
+            assertDoesNotThrow(() -> cartCompactionService.compactOnSchedule());
+        }
+    }
+
+    @Nested
+    @DisplayName("Metrics tests")
+    class MetricsTests {
+
+        @Test
+        void shouldRecordRowsReclaimedPerTable() {
+            UUID cartId = UUID.randomUUID();
+            when(cartItemRepository.deleteItemsUpdatedBefore(any(Date.class), eq(BATCH_SIZE))).thenReturn(1);
+            when(cartRepository.findEmptyCartIds(any(UUID.class), any(Date.class), eq(BATCH_SIZE)))
+                    .thenReturn(List.of(cartId));
+            when(cartRepository.deleteEmptyCarts(List.of(cartId))).thenReturn(1);
+
+            cartCompactionService.compact();
+            cartCompactionService.compact();
+
+            assertEquals(2, meterRegistry.get("orderly.carts.compaction.reclaimed").tag("table", "cart_items")
+                    .summary().totalAmount());
+            assertEquals(2, meterRegistry.get("orderly.carts.compaction.reclaimed").tag("table", "carts")
+                    .summary().count());
+            assertEquals(2, meterRegistry.get("orderly.carts.compaction.duration").timer().count());
+        }
+    }
+}
@@ -1,28 +1,52 @@
 package com.iodsky.orderly.service;
 
+import com.iodsky.orderly.cache.HotCartStore;
+import com.iodsky.orderly.event.OrderPlacedEvent;
+import com.iodsky.orderly.exception.InvalidQuantityException;
 import com.iodsky.orderly.exception.ResourceNotFoundException;
 import com.iodsky.orderly.model.Cart;
 import com.iodsky.orderly.model.CartItem;
+import com.iodsky.orderly.model.Money;
 import com.iodsky.orderly.model.Product;
 import com.iodsky.orderly.model.User;
+import com.iodsky.orderly.repository.CartBatchWriter;
 import com.iodsky.orderly.repository.CartItemRepository;
 import com.iodsky.orderly.repository.CartRepository;
+import com.iodsky.orderly.request.CartItemOperation;
+import com.iodsky.orderly.request.UpdateCartItemsRequest;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import org.hibernate.exception.ConstraintViolationException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
 
 import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -34,6 +58,8 @@ class CartServiceTest {
     private ProductService productService;
     @Mock
     private CartItemRepository cartItemRepository;
+    @Mock
+    private HotCartStore hotCartStore;
 
     @InjectMocks
     private CartService cartService;
@@ -66,7 +92,7 @@ class CartServiceTest {
                 .description("Description")
                 .brand("Brand")
                 .stock(10)
-                .price(BigDecimal.valueOf(179))
+                .price(Money.of(BigDecimal.valueOf(179)))
                 .build();
 
         cartItem = CartItem.builder()
@@ -84,7 +110,7 @@ class CartServiceTest {
                 .description("Description")
                 .brand("New Brand")
                 .stock(12)
-                .price(BigDecimal.valueOf(130))
+                .price(Money.of(BigDecimal.valueOf(130)))
                 .build();
     }
 
@@ -154,16 +180,42 @@ class CartServiceTest {
 
         @Test
         void shouldCreateNewCartIfNoneExists() {
-            when(cartRepository.findByUserId(user.getId())).thenReturn(Optional.empty());
-            when(cartRepository.save(any(Cart.class))).thenAnswer(inv -> inv.getArgument(0));
+            when(cartRepository.findByUserId(user.getId()))
+                    .thenReturn(Optional.empty())
+                    .thenReturn(Optional.of(cart));
 
             Cart result = cartService.getCartByUser(user);
 
-            assertNotNull(result);
-            assertEquals(user.getId(), result.getUser().getId());
+            assertEquals(cart, result);
+            verify(cartRepository).insertIfAbsent(any(UUID.class), eq(user.getId()));
+            verify(cartRepository, never()).save(any(Cart.class));
+        }
+    }
 
-            verify(cartRepository).findByUserId(user.getId());
-            verify(cartRepository).save(any(Cart.class));
+    @Nested
+    @DisplayName("Get cart lines tests")
+    class GetCartLinesTests {
+
+        @Test
+        void shouldReadLinesInOneQuery() {
+            List<CartRepository.CartLineView> lines = List.of(mock(CartRepository.CartLineView.class));
+            when(cartRepository.findLinesByUserId(user.getId())).thenReturn(lines);
+
+            assertEquals(lines, cartService.getCartLines(user));
+
+            verify(cartRepository).findLinesByUserId(user.getId());
+            verifyNoMoreInteractions(cartRepository);
+            verifyNoInteractions(cartItemRepository, productService);
+        }
+
+        @Test
+        void shouldNotCreateCartIfNoneExists() {
+            when(cartRepository.findLinesByUserId(user.getId())).thenReturn(List.of());
+
+            assertTrue(cartService.getCartLines(user).isEmpty());
+
+            verify(cartRepository).findLinesByUserId(user.getId());
+            verifyNoMoreInteractions(cartRepository);
         }
     }
 
@@ -176,18 +228,45 @@ class CartServiceTest {
             cart.getItems().add(new CartItem());
             cart.getItems().add(new CartItem());
 
-            when(cartRepository.findByUserId(user.getId())).thenReturn(Optional.of(cart));
-            when(cartRepository.save(cart)).thenAnswer(inv -> inv.getArgument(0));
+            when(cartRepository.findWithItemsByUserId(user.getId())).thenReturn(Optional.of(cart));
+            when(cartRepository.saveAndFlush(cart)).thenAnswer(inv -> inv.getArgument(0));
 
             Cart result = cartService.clearCart(user);
 
             assertNotNull(result);
             assertTrue(result.getItems().isEmpty());
 
-            verify(cartRepository).findByUserId(user.getId());
-            verify(cartRepository).save(cart);
+            verify(cartRepository).findWithItemsByUserId(user.getId());
+            verify(cartRepository).saveAndFlush(cart);
+        }
+
+        @Test
+        void shouldReturnEmptyCartWithoutCreatingOne() {
+            when(cartRepository.findWithItemsByUserId(user.getId())).thenReturn(Optional.empty());
+
+            Cart result = cartService.clearCart(user);
+
+            assertNull(result.getId());
+            assertTrue(result.getItems().isEmpty());
+            verify(cartRepository, never()).saveAndFlush(any(Cart.class));
+            verify(cartRepository, never()).insertIfAbsent(any(UUID.class), any(UUID.class));
         }
+    }
+
+    private CartItemRepository.CartItemView view(Product product, int quantity) {
+        return new CartItemRepository.CartItemView() {
+            public UUID getId() { return cartItem.getId(); }
+            public UUID getCartId() { return cartId; }
+            public UUID getProductId() { return product.getId(); }
+            public int getQuantity() { return quantity; }
+            public BigDecimal getUnitPriceAmount() { return product.getPrice().toBigDecimal(); }
+        };
+    }
 
+    private Optional<CartItemRepository.CartItemView> upsert(Product product, int quantity) {
+        return cartItemRepository.addQuantity(
+                any(UUID.class), eq(user.getId()), eq(product.getId()), eq(quantity),
+                eq(product.getPrice()));
     }
 
     @Nested
@@ -196,21 +275,23 @@ class CartServiceTest {
 
         @Test
         void shouldReturnCartItemIfFound() {
-            when(cartRepository.findByUserId(user.getId()))
-                    .thenReturn(Optional.of(cart));
+            when(cartItemRepository.findViewByUserIdAndProductId(user.getId(), product.getId()))
+                    .thenReturn(Optional.of(view(product, 1)));
+            when(productService.getProduct(product.getId()))
+                    .thenReturn(product);
 
             CartItem result = cartService.getCartItem(user, product.getId());
 
             assertNotNull(result);
             assertEquals(product.getId(), result.getProduct().getId());
-            verify(cartRepository).findByUserId(user.getId());
+            assertEquals(cartId, result.getCart().getId());
+            verifyNoInteractions(cartRepository);
         }
 
         @Test
         void shouldThrowIfCartItemNotFound() {
-            cart.getItems().clear();
-            when(cartRepository.findByUserId(user.getId()))
-                    .thenReturn(Optional.of(cart));
+            when(cartItemRepository.findViewByUserIdAndProductId(user.getId(), cartId))
+                    .thenReturn(Optional.empty());
 
             assertThrows(
                     ResourceNotFoundException.class,
@@ -225,14 +306,10 @@ class CartServiceTest {
 
         @Test
         void shouldAddNewItemIfNotExists() {
-            when(cartRepository.findByUserId(user.getId()))
-                    .thenReturn(Optional.of(cart));
             when(productService.getProduct(newProduct.getId()))
                     .thenReturn(newProduct);
-            when(cartItemRepository.save(any(CartItem.class)))
-                    .thenAnswer(inv -> inv.getArgument(0));
-            when(cartRepository.save(cart))
-                    .thenReturn(cart);
+            when(upsert(newProduct, 2))
+                    .thenReturn(Optional.of(view(newProduct, 2)));
 
             CartItem result = cartService.addItemToCart(user, newProduct.getId(), 2);
 
@@ -241,28 +318,52 @@ class CartServiceTest {
             assertEquals(newProduct, result.getProduct());
             assertEquals(newProduct.getPrice(), result.getUnitPrice());
 
-            verify(cartRepository).findByUserId(user.getId());
             verify(productService).getProduct(newProduct.getId());
-            verify(cartItemRepository).save(any(CartItem.class));
-            verify(cartRepository).save(cart);
+            verifyNoInteractions(cartRepository);
+        }
+
+        @Test
+        void shouldRejectNonPositiveQuantity() {
+            assertThrows(InvalidQuantityException.class,
+                    () -> cartService.addItemToCart(user, product.getId(), 0));
+            assertThrows(InvalidQuantityException.class,
+                    () -> cartService.addItemToCart(user, product.getId(), -3));
+
+            verifyNoInteractions(productService, cartItemRepository, cartRepository);
         }
 
         @Test
         void shouldIncreaseQuantityIfItemAlreadyExists() {
-            when(cartRepository.findByUserId(user.getId()))
-                    .thenReturn(Optional.of(cart));
             when(productService.getProduct(product.getId()))
                     .thenReturn(product);
-            when(cartItemRepository.save(cartItem))
-                    .thenReturn(cartItem);
-            when(cartRepository.save(cart))
-                    .thenReturn(cart);
+            when(upsert(product, 3))
+                    .thenReturn(Optional.of(view(product, 4)));
 
             CartItem result = cartService.addItemToCart(user, product.getId(), 3);
 
             assertEquals(4, result.getQuantity());
-            verify(cartItemRepository).save(cartItem);
-            verify(cartRepository).save(cart);
+            verify(cartItemRepository, never()).save(any(CartItem.class));
+            verify(cartRepository, never()).save(any(Cart.class));
+        }
+
+        @Test
+        void shouldCreateCartAndRetryIfUserHasNone() {
+            when(productService.getProduct(product.getId()))
+                    .thenReturn(product);
+            when(upsert(product, 1))
+                    .thenReturn(Optional.empty())
+                    .thenReturn(Optional.of(view(product, 1)));
+            when(cartRepository.findByUserId(user.getId()))
+                    .thenReturn(Optional.empty())
+                    .thenReturn(Optional.of(cart));
+
+            CartItem result = cartService.addItemToCart(user, product.getId(), 1);
+
+            assertEquals(1, result.getQuantity());
+            verify(cartRepository).insertIfAbsent(any(UUID.class), eq(user.getId()));
+            verify(cartItemRepository, times(2))
+                    .addQuantity(any(UUID.class), eq(user.getId()), eq(product.getId()), eq(1),
+                            eq(product.getPrice()));
         }
     }
 
@@ -272,23 +373,19 @@ class CartServiceTest {
 
         @Test
         void shouldRemoveItemIfExists() {
-            when(cartRepository.findByUserId(user.getId()))
-                    .thenReturn(Optional.of(cart));
-            when(cartRepository.save(any(Cart.class)))
-                    .thenReturn(cart);
+            when(cartItemRepository.deleteByUserIdAndProductId(user.getId(), product.getId()))
+                    .thenReturn(Optional.of(view(product, 1)));
 
             cartService.removeItemFromCart(user, product.getId());
 
-            assertTrue(cart.getItems().isEmpty());
-            verify(cartRepository).findByUserId(user.getId());
-            verify(cartRepository).save(cart);
+            verify(cartItemRepository).deleteByUserIdAndProductId(user.getId(), product.getId());
+            verifyNoInteractions(cartRepository);
         }
 
         @Test
         void shouldThrowExceptionIfItemNotFound() {
-            cart.getItems().clear();
-            when(cartRepository.findByUserId(user.getId()))
-                    .thenReturn(Optional.of(cart));
+            when(cartItemRepository.deleteByUserIdAndProductId(user.getId(), product.getId()))
+                    .thenReturn(Optional.empty());
 
             assertThrows(
                     ResourceNotFoundException.class,
@@ -303,42 +400,325 @@ class CartServiceTest {
 
         @Test
         void shouldUpdateQuantityIfGreaterThanZero() {
-            when(cartRepository.findByUserId(user.getId()))
-                    .thenReturn(Optional.of(cart));
-            when(cartRepository.save(cart))
-                    .thenReturn(cart);
+            when(cartItemRepository.setQuantity(user.getId(), product.getId(), 5))
+                    .thenReturn(Optional.of(view(product, 5)));
+            when(productService.getProduct(product.getId()))
+                    .thenReturn(product);
 
             CartItem result = cartService.updateItemQuantity(user, product.getId(), 5);
 
             assertEquals(5, result.getQuantity());
-            verify(cartRepository).findByUserId(user.getId());
-            verify(cartRepository).save(cart);
+            verify(cartItemRepository).setQuantity(user.getId(), product.getId(), 5);
+            verifyNoInteractions(cartRepository);
         }
 
         @Test
         void shouldRemoveItemIfQuantityIsZeroOrLess() {
-            when(cartRepository.findByUserId(user.getId()))
-                    .thenReturn(Optional.of(cart));
-            when(cartRepository.save(cart))
-                    .thenReturn(cart);
+            when(cartItemRepository.deleteByUserIdAndProductId(user.getId(), product.getId()))
+                    .thenReturn(Optional.of(view(product, 1)));
+            when(productService.getProduct(product.getId()))
+                    .thenReturn(product);
 
-            CartItem result = cartService.updateItemQuantity(user, product.getId(), 0);
+            cartService.updateItemQuantity(user, product.getId(), 0);
 
-            assertFalse(cart.getItems().contains(result));
-            verify(cartItemRepository).delete(cartItem);
-            verify(cartRepository).save(cart);
+            verify(cartItemRepository).deleteByUserIdAndProductId(user.getId(), product.getId());
+            verify(cartItemRepository, never()).setQuantity(any(UUID.class), any(UUID.class), anyInt());
         }
 
         @Test
         void shouldThrowExceptionIfItemNotFound() {
-            cart.getItems().clear();
-            when(cartRepository.findByUserId(user.getId()))
-                    .thenReturn(Optional.of(cart));
+            when(cartItemRepository.setQuantity(user.getId(), product.getId(), 2))
+                    .thenReturn(Optional.empty());
 
             assertThrows(
                     ResourceNotFoundException.class,
-                    () -> cartService.updateItemQuantity(user, product.getId(), anyInt())
+                    () -> cartService.updateItemQuantity(user, product.getId(), 2)
             );
         }
     }
-}
\ No newline at end of file
+
+    @Nested
+    @DisplayName("Update items tests")
+    class UpdateItemsTests {
+
+        private final Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+
+        @BeforeEach
+        void setup() {
+            lenient().when(cartRepository.findWithItemsByUserId(user.getId())).thenReturn(Optional.of(cart));
+            lenient().when(cartRepository.saveAndFlush(cart)).thenReturn(cart);
+        }
+
+        private CartItemOperation operation(CartItemOperation.Type type, Product product, int quantity) {
+            return CartItemOperation.builder().type(type).productId(product.getId()).quantity(quantity).build();
+        }
+
+        private Set<String> violations(List<CartItemOperation> operations) {
+            UpdateCartItemsRequest request = new UpdateCartItemsRequest();
+            request.setOperations(operations);
+            return validator.validate(request).stream()
+                    .map(violation -> violation.getPropertyPath().toString())
+                    .collect(Collectors.toSet());
+        }
+
+        @Test
+        void shouldRejectNonPositiveQuantityToAdd() {
+            assertEquals(Set.of("operations[0].quantityValid", "operations[1].quantityValid"), violations(List.of(
+                    operation(CartItemOperation.Type.ADD, product, 0),
+                    operation(CartItemOperation.Type.ADD, product, -2),
+                    operation(CartItemOperation.Type.SET, product, 0))));
+        }
+
+        @Test
+        void shouldRejectTooManyOperations() {
+            List<CartItemOperation> operations = Collections.nCopies(UpdateCartItemsRequest.MAX_OPERATIONS + 1,
+                    operation(CartItemOperation.Type.ADD, product, 1));
+
+            assertEquals(Set.of("operations"), violations(operations));
+        }
+
+        @Test
+        void shouldApplyOperationsWithOneProductLookupAndOneSave() {
+            when(productService.getProductsByIds(Set.of(newProduct.getId(), product.getId())))
+                    .thenReturn(List.of(newProduct, product));
+
+            Cart result = cartService.updateItems(user, List.of(
+                    operation(CartItemOperation.Type.ADD, newProduct, 2),
+                    operation(CartItemOperation.Type.ADD, product, 1),
+                    operation(CartItemOperation.Type.ADD, newProduct, 1)));
+
+            assertEquals(2, result.getItems().size());
+            assertEquals(2, cartItem.getQuantity());
+            CartItem added = result.getItems().stream()
+                    .filter(item -> item.getProduct() == newProduct)
+                    .findFirst()
+                    .orElseThrow();
+            assertEquals(3, added.getQuantity());
+            assertEquals(newProduct.getPrice(), added.getUnitPrice());
+
+            verify(productService, times(1)).getProductsByIds(anyCollection());
+            verify(cartRepository, times(1)).saveAndFlush(cart);
+            verifyNoInteractions(cartItemRepository);
+        }
+
+        @Test
+        void shouldSetAndRemoveItems() {
+            when(productService.getProductsByIds(Set.of())).thenReturn(List.of());
+
+            Cart result = cartService.updateItems(user, List.of(
+                    operation(CartItemOperation.Type.SET, product, 4),
+                    operation(CartItemOperation.Type.SET, product, 0)));
+
+            assertTrue(result.getItems().isEmpty());
+        }
+
+        @Test
+        void shouldReuseRemovedItemWhenProductIsAddedAgain() {
+            when(productService.getProductsByIds(Set.of(product.getId()))).thenReturn(List.of(product));
+
+            Cart result = cartService.updateItems(user, List.of(
+                    operation(CartItemOperation.Type.REMOVE, product, 1),
+                    operation(CartItemOperation.Type.ADD, product, 5)));
+
+            assertEquals(Set.of(cartItem), result.getItems());
+            assertEquals(5, cartItem.getQuantity());
+        }
+
+        @Test
+        void shouldFailBatchOnUnknownProduct() {
+            when(productService.getProductsByIds(Set.of(newProduct.getId()))).thenReturn(List.of());
+
+            assertThrows(
+                    ResourceNotFoundException.class,
+                    () -> cartService.updateItems(user, List.of(operation(CartItemOperation.Type.ADD, newProduct, 1)))
+            );
+            verify(cartRepository, never()).save(any(Cart.class));
+        }
+
+        @Test
+        void shouldFailBatchOnMissingItem() {
+            when(productService.getProductsByIds(Set.of())).thenReturn(List.of());
+
+            assertThrows(
+                    ResourceNotFoundException.class,
+                    () -> cartService.updateItems(user,
+                            List.of(operation(CartItemOperation.Type.REMOVE, newProduct, 1)))
+            );
+        }
+
+        @Test
+        void shouldReportLostRaceForSameProductAsConflict() {
+            when(productService.getProductsByIds(Set.of(newProduct.getId()))).thenReturn(List.of(newProduct));
+            when(cartRepository.saveAndFlush(cart)).thenThrow(new DataIntegrityViolationException("duplicate",
+                    new ConstraintViolationException("duplicate", null, CartItem.PRODUCT_CONSTRAINT)));
+
+            assertThrows(
+                    ObjectOptimisticLockingFailureException.class,
+                    () -> cartService.updateItems(user, List.of(operation(CartItemOperation.Type.ADD, newProduct, 1)))
+            );
+        }
+
+        @Test
+        void shouldRethrowOtherIntegrityViolations() {
+            when(productService.getProductsByIds(Set.of(newProduct.getId()))).thenReturn(List.of(newProduct));
+            when(cartRepository.saveAndFlush(cart)).thenThrow(new DataIntegrityViolationException("product gone",
+                    new ConstraintViolationException("product gone", null, "fk_cart_items_product")));
+
+            assertThrows(
+                    DataIntegrityViolationException.class,
+                    () -> cartService.updateItems(user, List.of(operation(CartItemOperation.Type.ADD, newProduct, 1)))
+            );
+        }
+    }
+
+    @Nested
+    @DisplayName("Write-behind cart store tests")
+    class WriteBehindTests {
+
+        private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        private CartBatchWriter cartBatchWriter;
+        private HotCartStore store;
+        private CartService writeBehindCartService;
+
+        @BeforeEach
+        void setup() {
+            cartBatchWriter = mock(CartBatchWriter.class);
+            store = new HotCartStore(true, Duration.ofMinutes(30), cartBatchWriter, cartRepository, transactionManager,
+                    new SimpleMeterRegistry());
+            writeBehindCartService = new CartService(cartRepository, cartItemRepository, productService, store);
+
+            List<CartRepository.CartLineView> emptyCart = List.of(emptyCartLine());
+            lenient().when(cartRepository.findLinesByUserId(user.getId())).thenReturn(emptyCart);
+            lenient().when(productService.getProduct(product.getId())).thenReturn(product);
+        }
+
+        private CartRepository.CartLineView emptyCartLine() {
+            CartRepository.CartLineView line = mock(CartRepository.CartLineView.class);
+            lenient().when(line.getCartId()).thenReturn(cartId);
+            return line;
+        }
+
+        @SuppressWarnings("unchecked")
+        private List<CartBatchWriter.Line> writtenLines() {
+            ArgumentCaptor<List<CartBatchWriter.Line>> lines = ArgumentCaptor.forClass(List.class);
+            verify(cartBatchWriter).write(lines.capture(), anyList());
+            return lines.getValue();
+        }
+
+        @Test
+        void shouldLoadCartOnceAndKeepChangesInMemory() {
+            writeBehindCartService.addItemToCart(user, product.getId(), 2);
+            writeBehindCartService.updateItemQuantity(user, product.getId(), 5);
+
+            assertEquals(5, writeBehindCartService.getCartItem(user, product.getId()).getQuantity());
+            verify(cartRepository, times(1)).findLinesByUserId(user.getId());
+            verifyNoInteractions(cartItemRepository, cartBatchWriter);
+        }
+
+        @Test
+        void shouldCoalesceChangesIntoOneWritePerLine() {
+            writeBehindCartService.addItemToCart(user, product.getId(), 2);
+            writeBehindCartService.addItemToCart(user, product.getId(), 3);
+
+            store.flush();
+
+            List<CartBatchWriter.Line> lines = writtenLines();
+            assertEquals(1, lines.size());
+            assertEquals(5, lines.getFirst().quantity());
+            assertEquals(cartId, lines.getFirst().cartId());
+        }
+
+        @Test
+        void shouldWriteRemovedLinesAsDeletes() {
+            writeBehindCartService.addItemToCart(user, product.getId(), 1);
+            store.flush();
+            writeBehindCartService.removeItemFromCart(user, product.getId());
+
+            store.flush();
+
+            verify(cartBatchWriter).write(List.of(), List.of(new CartBatchWriter.Removal(cartId, product.getId())));
+        }
+
+        @Test
+        void shouldRetryFailedWritesOnNextFlush() {
+            writeBehindCartService.addItemToCart(user, product.getId(), 1);
+            doThrow(new DataAccessResourceFailureException("connection lost"))
+                    .doReturn(Set.of())
+                    .when(cartBatchWriter).write(anyList(), anyList());
+
+            store.flush();
+            store.flush();
+
+            verify(cartBatchWriter, times(2)).write(anyList(), anyList());
+        }
+
+        @Test
+        @SuppressWarnings("unchecked")
+        void shouldRecreateCartDeletedWhileHeldAndRewriteItsLines() {
+            UUID recreatedId = UUID.randomUUID();
+            writeBehindCartService.addItemToCart(user, product.getId(), 2);
+            when(cartBatchWriter.write(anyList(), anyList())).thenReturn(Set.of(cartId)).thenReturn(Set.of());
+            when(cartRepository.findIdByUserId(user.getId())).thenReturn(Optional.of(recreatedId));
+
+            store.flush();
+
+            ArgumentCaptor<List<CartBatchWriter.Line>> lines = ArgumentCaptor.forClass(List.class);
+            verify(cartBatchWriter, times(2)).write(lines.capture(), anyList());
+            verify(cartRepository).insertIfAbsent(any(UUID.class), eq(user.getId()));
+            CartBatchWriter.Line rewritten = lines.getAllValues().get(1).getFirst();
+            assertEquals(recreatedId, rewritten.cartId());
+            assertEquals(2, rewritten.quantity());
+            assertEquals(recreatedId, writeBehindCartService.getCartLines(user).getFirst().getCartId());
+            assertEquals(Set.of(recreatedId), store.heldCartIds());
+        }
+
+        @Test
+        void shouldFlushAndReloadCartBeforeCheckout() {
+            writeBehindCartService.addItemToCart(user, product.getId(), 1);
+
+            writeBehindCartService.flushCart(user);
+            writeBehindCartService.getCartLines(user);
+
+            assertEquals(1, writtenLines().size());
+            verify(cartRepository, times(2)).findLinesByUserId(user.getId());
+        }
+
+        @Test
+        void shouldDropOrderedLinesAndWriteTheirRemovalWithOtherChangesOnNextFlush() {
+            Product other = Product.builder().id(UUID.randomUUID()).name("Other").price(Money.of(5)).build();
+            when(productService.getProduct(other.getId())).thenReturn(other);
+            writeBehindCartService.addItemToCart(user, product.getId(), 1);
+            writeBehindCartService.addItemToCart(user, other.getId(), 2);
+
+            store.onOrderPlaced(new OrderPlacedEvent(UUID.randomUUID(), user.getId(), List.of(product.getId())));
+            verifyNoInteractions(cartBatchWriter);
+            store.flush();
+
+            List<CartBatchWriter.Line> lines = writtenLines();
+            assertEquals(List.of(other.getId()), lines.stream().map(CartBatchWriter.Line::productId).toList());
+            assertEquals(2, lines.getFirst().quantity());
+            verify(cartBatchWriter).write(anyList(), eq(List.of(new CartBatchWriter.Removal(cartId, product.getId()))));
+            assertThrows(ResourceNotFoundException.class,
+                    () -> writeBehindCartService.getCartItem(user, product.getId()));
+            assertEquals(2, writeBehindCartService.getCartItem(user, other.getId()).getQuantity());
+            verify(cartRepository, times(1)).findLinesByUserId(user.getId());
+        }
+
+        @Test
+        void shouldCreateCartOnFirstAddOnly() {
+            when(cartRepository.findLinesByUserId(user.getId())).thenReturn(List.of());
+            when(cartRepository.findByUserId(user.getId()))
+                    .thenReturn(Optional.empty())
+                    .thenReturn(Optional.of(cart));
+
+            assertTrue(writeBehindCartService.getCartLines(user).isEmpty());
+            verify(cartRepository, never()).insertIfAbsent(any(UUID.class), any(UUID.class));
+
+            CartItem item = writeBehindCartService.addItemToCart(user, product.getId(), 1);
+
+            assertEquals(cartId, item.getCart().getId());
+            verify(cartRepository).insertIfAbsent(any(UUID.class), eq(user.getId()));
+            assertEquals(1, writeBehindCartService.getCartLines(user).size());
+        }
+    }
+}
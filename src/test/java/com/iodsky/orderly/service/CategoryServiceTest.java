@@ -1,7 +1,9 @@
 package com.iodsky.orderly.service;
 
 import com.iodsky.orderly.dto.CategoryDto;
+import com.iodsky.orderly.dto.ResourceVersion;
 import com.iodsky.orderly.dto.mapper.CategoryMapper;
+import com.iodsky.orderly.event.CategoryRenamedEvent;
 import com.iodsky.orderly.exception.DuplicateResourceException;
 import com.iodsky.orderly.exception.ResourceInUseException;
 import com.iodsky.orderly.exception.ResourceNotFoundException;
@@ -15,9 +17,11 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.dao.DataIntegrityViolationException;
 
 import java.util.Collections;
+import java.util.Date;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -33,6 +37,8 @@ class CategoryServiceTest {
     private CategoryRepository categoryRepository;
     @Mock
     private CategoryMapper categoryMapper;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
 
     @InjectMocks
     private CategoryService categoryService;
@@ -64,6 +70,51 @@ class CategoryServiceTest {
                 .build();
     }
 
+    @Nested
+    @DisplayName("Categories version test")
+    class getCategoriesVersionTest {
+
+        @Test
+        void shouldBuildEtagFromAggregateVersion() {
+            Date lastUpdated = new Date(5_000);
+            CategoryRepository.CollectionVersionView view = mock(CategoryRepository.CollectionVersionView.class);
+            when(view.getCount()).thenReturn(2L);
+            when(view.getVersionSum()).thenReturn(7L);
+            when(view.getLastUpdated()).thenReturn(lastUpdated);
+            when(categoryRepository.findCollectionVersion()).thenReturn(view);
+
+            ResourceVersion version = categoryService.getCategoriesVersion();
+
+            assertEquals("\"2.7.5000\"", version.etag());
+            assertEquals(lastUpdated, version.lastModified());
+            verify(categoryRepository, never()).findAll();
+        }
+
+        @Test
+        void shouldMatchVersionComputedFromLoadedCategories() {
+            Category other = Category.builder().name("Other").version(7L).updatedAt(new Date(5_000)).build();
+            existingCategory.setVersion(0L);
+            existingCategory.setUpdatedAt(new Date(4_000));
+
+            CategoryRepository.CollectionVersionView view = mock(CategoryRepository.CollectionVersionView.class);
+            when(view.getCount()).thenReturn(2L);
+            when(view.getVersionSum()).thenReturn(7L);
+            when(view.getLastUpdated()).thenReturn(new Date(5_000));
+            when(categoryRepository.findCollectionVersion()).thenReturn(view);
+
+            assertEquals(ResourceVersion.of(List.of(existingCategory, other)), categoryService.getCategoriesVersion());
+        }
+
+        @Test
+        void shouldHandleEmptyCatalog() {
+            CategoryRepository.CollectionVersionView view = mock(CategoryRepository.CollectionVersionView.class);
+            when(view.getCount()).thenReturn(0L);
+            when(categoryRepository.findCollectionVersion()).thenReturn(view);
+
+            assertEquals(ResourceVersion.of(List.of()), categoryService.getCategoriesVersion());
+        }
+    }
+
     @Nested
     @DisplayName("Create category test")
     class addCategoryTest {
@@ -191,6 +242,7 @@ class CategoryServiceTest {
 
             verify(categoryRepository).findById(randId);
             verify(categoryRepository).save(any());
+            verify(eventPublisher).publishEvent(new CategoryRenamedEvent("Test Category", "Updated Category"));
         }
 
         @Test
@@ -1,16 +1,21 @@
 package com.iodsky.orderly.service;
 
 import com.iodsky.orderly.enums.OrderStatus;
+import com.iodsky.orderly.event.OrderPlacedEvent;
 import com.iodsky.orderly.exception.EmptyCartException;
+import com.iodsky.orderly.exception.ProductOutOfStockException;
+import com.iodsky.orderly.inventory.InventoryReservations;
 import com.iodsky.orderly.model.*;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 
 import java.math.BigDecimal;
 import java.util.*;
@@ -31,6 +36,12 @@ class CheckoutServiceTest {
     @Mock
     private ProductService productService;
 
+    @Mock
+    private InventoryReservations inventoryReservations;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
     @InjectMocks
     private CheckoutService checkoutService;
 
@@ -49,7 +60,7 @@ class CheckoutServiceTest {
         product = Product.builder()
                 .id(UUID.randomUUID())
                 .name("Test Product")
-                .price(BigDecimal.valueOf(50))
+                .price(Money.of(BigDecimal.valueOf(50)))
                 .stock(10)
                 .build();
 
@@ -81,14 +92,12 @@ class CheckoutServiceTest {
                     () -> checkoutService.placeOrder(user));
 
             verify(cartService).getCartByUser(user);
-            verifyNoInteractions(productService, orderService);
+            verifyNoInteractions(inventoryReservations, productService, orderService, eventPublisher);
         }
 
         @Test
         void shouldPlaceOrder() {
             when(cartService.getCartByUser(user)).thenReturn(cart);
-            when(productService.decreaseStock(product.getId(), cartItem.getQuantity()))
-                    .thenReturn(product);
             when(cartService.saveCart(cart)).thenReturn(cart);
             when(orderService.saveOrder(any(Order.class)))
                     .thenAnswer(inv -> inv.getArgument(0));
@@ -98,7 +107,7 @@ class CheckoutServiceTest {
             assertNotNull(result);
             assertEquals(user, result.getUser());
             assertEquals(OrderStatus.PROCESSING, result.getOrderStatus());
-            assertEquals(BigDecimal.valueOf(100), result.getTotalAmount());
+            assertEquals(Money.of(100), result.getTotalAmount());
             assertEquals(1, result.getItems().size());
 
             OrderItem orderItem = result.getItems().iterator().next();
@@ -109,9 +118,39 @@ class CheckoutServiceTest {
             assertTrue(cart.getItems().isEmpty());
 
             verify(cartService).getCartByUser(user);
-            verify(productService).decreaseStock(product.getId(), cartItem.getQuantity());
+            verify(cartService, never()).flushCart(user);
+            InOrder stock = inOrder(inventoryReservations, productService);
+            stock.verify(inventoryReservations).holdForTransaction(Map.of(product.getId(), cartItem.getQuantity()));
+            stock.verify(productService).decreaseStock(Map.of(product.getId(), cartItem.getQuantity()));
             verify(cartService).saveCart(cart);
             verify(orderService).saveOrder(any(Order.class));
+            verify(eventPublisher)
+                    .publishEvent(new OrderPlacedEvent(result.getId(), user.getId(), List.of(product.getId())));
+        }
+
+        @Test
+        void shouldNotPlaceOrderWhenStockIsInsufficient() {
+            when(cartService.getCartByUser(user)).thenReturn(cart);
+            doThrow(new ProductOutOfStockException(product.getId()))
+                    .when(productService).decreaseStock(Map.of(product.getId(), cartItem.getQuantity()));
+
+            assertThrows(ProductOutOfStockException.class, () -> checkoutService.placeOrder(user));
+
+            assertEquals(1, cart.getItems().size());
+            verify(cartService, never()).saveCart(any(Cart.class));
+            verifyNoInteractions(orderService, eventPublisher);
+        }
+
+        @Test
+        void shouldNotTouchStockWhenHoldIsRejected() {
+            when(cartService.getCartByUser(user)).thenReturn(cart);
+            doThrow(new ProductOutOfStockException(product.getId()))
+                    .when(inventoryReservations).holdForTransaction(Map.of(product.getId(), cartItem.getQuantity()));
+
+            assertThrows(ProductOutOfStockException.class, () -> checkoutService.placeOrder(user));
+
+            verifyNoInteractions(productService, orderService, eventPublisher);
+            verify(cartService, never()).saveCart(any(Cart.class));
         }
     }
 }
\ No newline at end of file
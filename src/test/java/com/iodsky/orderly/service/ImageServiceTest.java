@@ -51,6 +51,7 @@ class ImageServiceTest {
         this.randId = UUID.randomUUID();
 
         this.product = new Product();
+        this.product.setId(UUID.randomUUID());
         
         this.file1 = new MockMultipartFile("file1", "file1.png", "image/png", "data1".getBytes());
         this.file2 = new MockMultipartFile("file2", "file2.jpg", "image/jpeg", "data2".getBytes());
@@ -125,6 +126,7 @@ class ImageServiceTest {
             verify(imageRepository).findById(randId);
             verify(imageRepository).delete(image1);
             verify(s3Service).deleteObject(anyString(), anyString());
+            verify(productService).markImagesChanged(product.getId());
         }
 
         @Test
@@ -167,6 +169,7 @@ class ImageServiceTest {
             verify(productService).getProduct(randId);
             verify(imageRepository, times(2)).save(any(Image.class));
             verify(s3Service, times(2)).putObject(any(MultipartFile.class), eq("product-images"), anyString());
+            verify(productService).markImagesChanged(randId);
         }
 
         @Test
@@ -210,6 +213,7 @@ class ImageServiceTest {
             verify(imageRepository).save(any(Image.class));
             verify(s3Service).deleteObject("product-images", oldFileName);
             verify(s3Service).putObject(eq(file2), eq("product-images"), anyString());
+            verify(productService).markImagesChanged(product.getId());
 
         }
 
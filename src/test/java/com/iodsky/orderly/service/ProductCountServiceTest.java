@@ -0,0 +1,148 @@
+package com.iodsky.orderly.service;
+
+import com.iodsky.orderly.cache.ProductCountCache;
+import com.iodsky.orderly.event.CategoryRenamedEvent;
+import com.iodsky.orderly.event.ProductDeletedEvent;
+import com.iodsky.orderly.event.ProductSavedEvent;
+import com.iodsky.orderly.model.Product;
+import com.iodsky.orderly.repository.ProductCountEstimator;
+import com.iodsky.orderly.request.CountStrategy;
+import com.iodsky.orderly.request.ProductFilter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ProductCountServiceTest {
+
+    @Mock
+    private ProductService productService;
+    @Mock
+    private ProductCountEstimator productCountEstimator;
+    @Spy
+    private ProductCountCache productCountCache =
+            new ProductCountCache(100, Duration.ofMinutes(1), new SimpleMeterRegistry());
+
+    @InjectMocks
+    private ProductCountService productCountService;
+
+    private ProductFilter filter;
+
+    @BeforeEach
+    void setup() {
+        ReflectionTestUtils.setField(productCountService, "exactCountThreshold", 1000L);
+        filter = ProductFilter.builder().brand("Logitech").minPrice(BigDecimal.TEN).build();
+    }
+
+    @Nested
+    @DisplayName("Exact count tests")
+    class ExactCountTests {
+
+        @Test
+        void shouldCountOnEveryRequest() {
+            when(productService.countProducts(filter)).thenReturn(42L);
+
+            productCountService.count(filter, CountStrategy.EXACT);
+            ProductCountService.Total total = productCountService.count(filter, CountStrategy.EXACT);
+
+            assertEquals(new ProductCountService.Total(42, true), total);
+            verify(productService, times(2)).countProducts(filter);
+            verifyNoInteractions(productCountEstimator);
+        }
+    }
+
+    @Nested
+    @DisplayName("Cached count tests")
+    class CachedCountTests {
+
+        @Test
+        void shouldReuseCountForEquivalentFilter() {
+            when(productService.countProducts(any(ProductFilter.class))).thenReturn(42L);
+            ProductFilter equivalent = ProductFilter.builder()
+                    .brand("Logitech")
+                    .name("")
+                    .minPrice(new BigDecimal("10.0"))
+                    .build();
+
+            productCountService.count(filter, CountStrategy.CACHED);
+            ProductCountService.Total total = productCountService.count(equivalent, CountStrategy.CACHED);
+
+            assertEquals(new ProductCountService.Total(42, true), total);
+            verify(productService, times(1)).countProducts(any(ProductFilter.class));
+        }
+
+        @Test
+        void shouldKeepDifferentFiltersApart() {
+            productCountService.count(filter, CountStrategy.CACHED);
+            productCountService.count(ProductFilter.builder().brand("Razer").build(), CountStrategy.CACHED);
+
+            verify(productService, times(2)).countProducts(any(ProductFilter.class));
+        }
+
+        private void assertRecountedAfter(Runnable change) {
+            productCountService.count(filter, CountStrategy.CACHED);
+            change.run();
+            productCountService.count(filter, CountStrategy.CACHED);
+
+            verify(productService, times(2)).countProducts(filter);
+        }
+
+        @Test
+        void shouldRecountAfterProductSaved() {
+            assertRecountedAfter(() -> productCountCache.onProductSaved(
+                    new ProductSavedEvent(Product.builder().id(UUID.randomUUID()).build())));
+        }
+
+        @Test
+        void shouldRecountAfterProductDeleted() {
+            assertRecountedAfter(() -> productCountCache.onProductDeleted(new ProductDeletedEvent(UUID.randomUUID())));
+        }
+
+        @Test
+        void shouldRecountAfterCategoryRenamed() {
+            assertRecountedAfter(() -> productCountCache.onCategoryRenamed(
+                    new CategoryRenamedEvent("Peripherals", "Accessories")));
+        }
+    }
+
+    @Nested
+    @DisplayName("Estimated count tests")
+    class EstimatedCountTests {
+
+        @Test
+        void shouldReturnPlannerEstimateForLargeResults() {
+            when(productCountEstimator.estimate(filter)).thenReturn(250_000L);
+
+            ProductCountService.Total total = productCountService.count(filter, CountStrategy.ESTIMATED);
+
+            assertEquals(new ProductCountService.Total(250_000, false), total);
+            verify(productService, never()).countProducts(any(ProductFilter.class));
+        }
+
+        @Test
+        void shouldCountExactlyBelowThreshold() {
+            when(productCountEstimator.estimate(filter)).thenReturn(80L);
+            when(productService.countProducts(filter)).thenReturn(73L);
+
+            ProductCountService.Total total = productCountService.count(filter, CountStrategy.ESTIMATED);
+
+            assertEquals(new ProductCountService.Total(73, true), total);
+        }
+    }
+}
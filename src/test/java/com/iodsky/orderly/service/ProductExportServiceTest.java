@@ -0,0 +1,157 @@
+package com.iodsky.orderly.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.iodsky.orderly.dto.mapper.ImageMapper;
+import com.iodsky.orderly.dto.mapper.ProductMapper;
+import com.iodsky.orderly.model.Category;
+import com.iodsky.orderly.model.Image;
+import com.iodsky.orderly.model.Money;
+import com.iodsky.orderly.model.Product;
+import com.iodsky.orderly.repository.ProductRepository;
+import com.iodsky.orderly.request.ProductFileFormat;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ProductExportServiceTest {
+
+    @Mock
+    private ProductRepository productRepository;
+    @Mock
+    private EntityManager entityManager;
+    @Spy
+    private ProductMapper productMapper = new ProductMapper(new ImageMapper());
+    @Spy
+    private TransactionTemplate transactionTemplate = new TransactionTemplate(mock(PlatformTransactionManager.class));
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
+
+    @InjectMocks
+    private ProductExportService productExportService;
+
+    private Category peripherals;
+    private Product mouse;
+
+    @BeforeEach
+    void setup() {
+        peripherals = Category.builder().id(UUID.randomUUID()).name("Peripherals").build();
+        mouse = product("Wireless Mouse", "Ergonomic, \"quiet\" mouse");
+
+        Image image = Image.builder().id(UUID.randomUUID()).fileName("mouse.png").fileType("image/png").product(mouse).build();
+        mouse.getImages().add(image);
+    }
+
+    private Product product(String name, String description) {
+        return Product.builder()
+                .id(UUID.randomUUID())
+                .name(name)
+                .description(description)
+                .brand("Logitech")
+                .price(Money.of(new BigDecimal("25.50")))
+                .stock(3)
+                .category(peripherals)
+                .images(new ArrayList<>())
+                .createdAt(new Date(0))
+                .build();
+    }
+
+    private String export(ProductFileFormat format) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        productExportService.exportProducts(output, format);
+        return output.toString(StandardCharsets.UTF_8);
+    }
+
+    @Nested
+    @DisplayName("NDJSON export tests")
+    class NdjsonExportTests {
+
+        @Test
+        void shouldWriteOneProductPerLine() throws Exception {
+            when(productRepository.streamAll()).thenReturn(Stream.of(mouse, product("Gaming Mouse", "Wired")));
+
+            List<String> lines = export(ProductFileFormat.NDJSON).lines().toList();
+
+            assertEquals(2, lines.size());
+            JsonNode first = objectMapper.readTree(lines.getFirst());
+            assertEquals("Wireless Mouse", first.get("name").asText());
+            assertEquals("Peripherals", first.get("category").asText());
+            assertEquals("mouse.png", first.at("/images/0/fileName").asText());
+            assertEquals("Gaming Mouse", objectMapper.readTree(lines.get(1)).get("name").asText());
+        }
+    }
+
+    @Nested
+    @DisplayName("CSV export tests")
+    class CsvExportTests {
+
+        @Test
+        void shouldWriteHeaderAndQuotedRows() {
+            when(productRepository.streamAll()).thenReturn(Stream.of(mouse));
+
+            List<String> lines = export(ProductFileFormat.CSV).lines().toList();
+
+            assertEquals("id,name,description,brand,price,stock,category,createdAt,images", lines.getFirst());
+            assertTrue(lines.get(1).contains("\"Wireless Mouse\",\"Ergonomic, \"\"quiet\"\" mouse\",Logitech"));
+            assertTrue(lines.get(1).contains("25.50"));
+            assertTrue(lines.get(1).contains("1970-01-01T00:00:00Z"));
+            assertTrue(lines.get(1).contains("mouse.png"));
+        }
+
+        @Test
+        void shouldWriteOnlyHeaderForEmptyCatalog() {
+            when(productRepository.streamAll()).thenReturn(Stream.empty());
+
+            assertEquals(1, export(ProductFileFormat.CSV).lines().count());
+        }
+    }
+
+    @Nested
+    @DisplayName("Memory bound tests")
+    class MemoryBoundTests {
+
+        @Test
+        void shouldClearPersistenceContextPeriodically() {
+            int count = ProductExportService.CLEAR_INTERVAL * 2 + 1;
+            when(productRepository.streamAll())
+                    .thenReturn(IntStream.range(0, count).mapToObj(i -> product("Product " + i, "Description")));
+
+            assertEquals(count, export(ProductFileFormat.NDJSON).lines().count());
+            verify(entityManager, times(3)).clear();
+        }
+
+        @Test
+        void shouldCloseCursorAfterExport() {
+            Stream<Product> products = Stream.of(mouse);
+            Runnable onClose = mock(Runnable.class);
+            when(productRepository.streamAll()).thenReturn(products.onClose(onClose));
+
+            export(ProductFileFormat.NDJSON);
+
+            verify(onClose).run();
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.iodsky.orderly.service;
+
+import com.iodsky.orderly.event.CategoryRenamedEvent;
+import com.iodsky.orderly.event.ProductDeletedEvent;
+import com.iodsky.orderly.event.ProductSavedEvent;
+import com.iodsky.orderly.event.ProductsSavedEvent;
+import com.iodsky.orderly.model.Category;
+import com.iodsky.orderly.model.Money;
+import com.iodsky.orderly.model.Product;
+import com.iodsky.orderly.request.ProductFilter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ProductFacetServiceTest {
+
+    @Mock
+    private ProductService productService;
+
+    @InjectMocks
+    private ProductFacetService productFacetService;
+
+    private Category peripherals;
+    private Product mouse;
+    private Product keyboard;
+    private Product headset;
+    private Product monitor;
+
+    @BeforeEach
+    void setup() {
+        peripherals = Category.builder().name("Peripherals").build();
+        Category displays = Category.builder().name("Displays").build();
+
+        mouse = product("Wireless Mouse", "Logitech", peripherals, 20, 5);
+        keyboard = product("Wireless Keyboard", "Logitech", peripherals, 60, 0);
+        headset = product("Gaming Headset", "Razer", peripherals, 120, 3);
+        monitor = product("Curved Monitor", "Dell", displays, 300, 1);
+
+        List.of(mouse, keyboard, headset, monitor)
+                .forEach(p -> productFacetService.onProductSaved(new ProductSavedEvent(p)));
+    }
+
+    private Product product(String name, String brand, Category category, int price, int stock) {
+        return Product.builder()
+                .id(UUID.randomUUID())
+                .name(name)
+                .brand(brand)
+                .category(category)
+                .price(Money.of(BigDecimal.valueOf(price)))
+                .stock(stock)
+                .build();
+    }
+
+    @Nested
+    @DisplayName("Get facets tests")
+    class GetFacetsTests {
+
+        @Test
+        void shouldCountWholeCatalogWithoutFilter() {
+            Map<String, Map<String, Long>> facets = productFacetService.getFacets(ProductFilter.builder().build());
+
+            assertEquals(Map.of("Peripherals", 3L, "Displays", 1L), facets.get("category"));
+            assertEquals(Map.of("Logitech", 2L, "Razer", 1L, "Dell", 1L), facets.get("brand"));
+            assertEquals(Map.of("0-25", 1L, "50-100", 1L, "100-250", 1L, "250-500", 1L), facets.get("price"));
+        }
+
+        @Test
+        void shouldOrderValuesByCountDescending() {
+            Map<String, Map<String, Long>> facets = productFacetService.getFacets(ProductFilter.builder().build());
+
+            assertEquals("Logitech", facets.get("brand").keySet().iterator().next());
+        }
+
+        @Test
+        void shouldNotNarrowDimensionByItsOwnFilter() {
+            Map<String, Map<String, Long>> facets = productFacetService.getFacets(
+                    ProductFilter.builder().brand("Logitech").build());
+
+            assertEquals(Map.of("Logitech", 2L, "Razer", 1L, "Dell", 1L), facets.get("brand"));
+            assertEquals(Map.of("Peripherals", 2L), facets.get("category"));
+            assertEquals(Map.of("0-25", 1L, "50-100", 1L), facets.get("price"));
+        }
+
+        @Test
+        void shouldApplyPriceRangeAndStockToOtherDimensions() {
+            Map<String, Map<String, Long>> facets = productFacetService.getFacets(
+                    ProductFilter.builder().minPrice(BigDecimal.valueOf(50)).inStock(true).build());
+
+            assertEquals(Map.of("Razer", 1L, "Dell", 1L), facets.get("brand"));
+            assertEquals(Map.of("0-25", 1L, "100-250", 1L, "250-500", 1L), facets.get("price"));
+        }
+
+        @Test
+        void shouldCheckPricesOfBucketsCutByRange() {
+            Map<String, Map<String, Long>> facets = productFacetService.getFacets(
+                    ProductFilter.builder().minPrice(BigDecimal.valueOf(70)).maxPrice(BigDecimal.valueOf(200)).build());
+
+            assertEquals(Map.of("Razer", 1L), facets.get("brand"));
+        }
+
+        @Test
+        void shouldFilterByExactName() {
+            Map<String, Map<String, Long>> facets = productFacetService.getFacets(
+                    ProductFilter.builder().name("Wireless Mouse").build());
+
+            assertEquals(Map.of("Logitech", 1L), facets.get("brand"));
+            assertEquals(Map.of("0-25", 1L), facets.get("price"));
+        }
+
+        @Test
+        void shouldMatchNothingForUnknownValue() {
+            Map<String, Map<String, Long>> facets = productFacetService.getFacets(
+                    ProductFilter.builder().category("Furniture").build());
+
+            assertTrue(facets.get("brand").isEmpty());
+            assertEquals(Map.of("Peripherals", 3L, "Displays", 1L), facets.get("category"));
+        }
+    }
+
+    @Nested
+    @DisplayName("Incremental update tests")
+    class IncrementalUpdateTests {
+
+        @Test
+        void shouldMoveUpdatedProductBetweenValues() {
+            keyboard.setBrand("Razer");
+            keyboard.setPrice(Money.of(BigDecimal.valueOf(10)));
+            productFacetService.onProductSaved(new ProductSavedEvent(keyboard));
+
+            Map<String, Map<String, Long>> facets = productFacetService.getFacets(ProductFilter.builder().build());
+
+            assertEquals(Map.of("Logitech", 1L, "Razer", 2L, "Dell", 1L), facets.get("brand"));
+            assertEquals(2L, facets.get("price").get("0-25"));
+            assertNull(facets.get("price").get("50-100"));
+        }
+
+        @Test
+        void shouldIndexSavedBatch() {
+            Product webcam = product("HD Webcam", "Logitech", peripherals, 80, 4);
+            Product speaker = product("Desk Speaker", "Razer", peripherals, 90, 2);
+
+            productFacetService.onProductsSaved(new ProductsSavedEvent(List.of(webcam, speaker)));
+
+            Map<String, Map<String, Long>> facets = productFacetService.getFacets(ProductFilter.builder().build());
+            assertEquals(Map.of("Logitech", 3L, "Razer", 2L, "Dell", 1L), facets.get("brand"));
+        }
+
+        @Test
+        void shouldDropDeletedProduct() {
+            productFacetService.onProductDeleted(new ProductDeletedEvent(monitor.getId()));
+
+            Map<String, Map<String, Long>> facets = productFacetService.getFacets(ProductFilter.builder().build());
+
+            assertEquals(Map.of("Peripherals", 3L), facets.get("category"));
+            assertNull(facets.get("brand").get("Dell"));
+        }
+
+        @Test
+        void shouldFollowCategoryRename() {
+            productFacetService.onCategoryRenamed(new CategoryRenamedEvent("Peripherals", "Accessories"));
+
+            Map<String, Map<String, Long>> facets = productFacetService.getFacets(
+                    ProductFilter.builder().category("Accessories").build());
+
+            assertEquals(Map.of("Logitech", 2L, "Razer", 1L), facets.get("brand"));
+        }
+
+        @Test
+        void shouldMergeCategoryRenamedOntoExistingOne() {
+            productFacetService.onCategoryRenamed(new CategoryRenamedEvent("Displays", "Peripherals"));
+
+            Map<String, Map<String, Long>> facets = productFacetService.getFacets(ProductFilter.builder().build());
+
+            assertEquals(Map.of("Peripherals", 4L), facets.get("category"));
+        }
+    }
+
+    @Nested
+    @DisplayName("Load index tests")
+    class LoadIndexTests {
+
+        @Test
+        void shouldIndexEveryBatchFromCatalog() {
+            Product chair = product("Office Chair", "Ikea", null, 150, 2);
+
+            doAnswer(inv -> {
+                Consumer<List<Product>> consumer = inv.getArgument(1);
+                consumer.accept(List.of(chair));
+                return null;
+            }).when(productService).forEachProduct(anyInt(), any());
+
+            productFacetService.loadIndex();
+
+            assertEquals(1L, productFacetService.getFacets(ProductFilter.builder().build()).get("brand").get("Ikea"));
+            verify(productService).forEachProduct(anyInt(), any());
+        }
+    }
+}
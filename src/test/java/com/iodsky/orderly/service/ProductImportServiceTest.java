@@ -0,0 +1,239 @@
+package com.iodsky.orderly.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.iodsky.orderly.dto.ProductImportReportDto;
+import com.iodsky.orderly.event.ProductsSavedEvent;
+import com.iodsky.orderly.model.Category;
+import com.iodsky.orderly.model.Money;
+import com.iodsky.orderly.model.Product;
+import com.iodsky.orderly.repository.ProductBatchWriter;
+import com.iodsky.orderly.request.ProductFileFormat;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ProductImportServiceTest {
+
+    @Mock
+    private CategoryService categoryService;
+    @Mock
+    private ProductBatchWriter productBatchWriter;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+    @Spy
+    private TransactionTemplate transactionTemplate = new TransactionTemplate(mock(PlatformTransactionManager.class));
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
+    @Spy
+    private Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+
+    @InjectMocks
+    private ProductImportService productImportService;
+
+    @BeforeEach
+    void setup() {
+        ReflectionTestUtils.setField(productImportService, "batchSize", 2);
+        ReflectionTestUtils.setField(productImportService, "maxReportedErrors", 10);
+
+        lenient().when(categoryService.getOrCreateCategory(anyString()))
+                .thenAnswer(inv -> Category.builder().id(UUID.randomUUID()).name(inv.getArgument(0)).build());
+    }
+
+    private InputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Product> inserted() {
+        ArgumentCaptor<List<Product>> batches = ArgumentCaptor.forClass(List.class);
+        verify(productBatchWriter, atLeastOnce()).insert(batches.capture());
+        return batches.getAllValues().stream().flatMap(List::stream).toList();
+    }
+
+    @Nested
+    @DisplayName("CSV import tests")
+    class CsvImportTests {
+
+        @Test
+        void shouldImportRowsInBatches() {
+            String csv = """
+                    name,description,brand,price,stock,category
+                    Wireless Mouse,"Ergonomic, wireless",Logitech,25.50,3,Peripherals
+                    Gaming Mouse,Wired mouse,Razer,49,0,Peripherals
+                    Curved Monitor,27 inch,Dell,299.99,5,Displays
+                    """;
+
+            ProductImportReportDto report = productImportService.importProducts(stream(csv), ProductFileFormat.CSV);
+
+            assertEquals(3, report.getRows());
+            assertEquals(3, report.getImported());
+            assertEquals(0, report.getFailed());
+            verify(productBatchWriter, times(2)).insert(anyList());
+
+            Product mouse = inserted().getFirst();
+            assertEquals("Ergonomic, wireless", mouse.getDescription());
+            assertEquals(Money.of(new BigDecimal("25.50")), mouse.getPrice());
+            assertEquals(3, mouse.getStock());
+            assertEquals(0L, mouse.getVersion());
+            assertNotNull(mouse.getId());
+            assertNotNull(mouse.getCreatedAt());
+        }
+
+        @Test
+        void shouldResolveEachCategoryOnce() {
+            String csv = """
+                    name,description,brand,price,stock,category
+                    Wireless Mouse,Mouse,Logitech,25,3,Peripherals
+                    Gaming Mouse,Mouse,Razer,49,0,Peripherals
+                    Office Mouse,Mouse,HP,15,9,Peripherals
+                    """;
+
+            productImportService.importProducts(stream(csv), ProductFileFormat.CSV);
+
+            verify(categoryService, times(1)).getOrCreateCategory("Peripherals");
+            assertEquals(1, inserted().stream().map(Product::getCategory).distinct().count());
+        }
+
+        @Test
+        void shouldReportInvalidRowsAndImportTheRest() {
+            String csv = """
+                    name,description,brand,price,stock,category
+                    Wireless Mouse,Mouse,Logitech,25,3,Peripherals
+                    ,Mouse,Razer,-1,0,Peripherals
+                    Gaming Mouse,Mouse,Razer,abc,0,Peripherals
+                    """;
+
+            ProductImportReportDto report = productImportService.importProducts(stream(csv), ProductFileFormat.CSV);
+
+            assertEquals(3, report.getRows());
+            assertEquals(1, report.getImported());
+            assertEquals(2, report.getFailed());
+            assertEquals(2, report.getErrors().get(0).row());
+            assertEquals("Price must be positive, Product name is required", report.getErrors().get(0).message());
+            assertEquals(3, report.getErrors().get(1).row());
+            assertTrue(report.getErrors().get(1).message().startsWith("Invalid number"));
+        }
+
+        @Test
+        void shouldReportMalformedRowsAndImportTheRest() {
+            String csv = """
+                    name,description,brand,price,stock,category
+                    Wireless Mouse,Mouse,Logitech,25,3,Peripherals
+                    Broken,Mouse,Razer,10,1,Peripherals,extra
+                    Gaming Mouse,Mouse,Razer,49,0,Peripherals
+                    """;
+
+            ProductImportReportDto report = productImportService.importProducts(stream(csv), ProductFileFormat.CSV);
+
+            assertEquals(3, report.getRows());
+            assertEquals(2, report.getImported());
+            assertEquals(1, report.getFailed());
+            assertEquals(2, report.getErrors().getFirst().row());
+            assertTrue(report.getErrors().getFirst().message().startsWith("Malformed CSV"));
+            assertEquals(List.of("Wireless Mouse", "Gaming Mouse"), inserted().stream().map(Product::getName).toList());
+        }
+    }
+
+    @Nested
+    @DisplayName("NDJSON import tests")
+    class NdjsonImportTests {
+
+        @Test
+        void shouldImportEachLineAndSkipMalformedOnes() {
+            String ndjson = """
+                    {"name":"Wireless Mouse","description":"Mouse","brand":"Logitech","price":25.5,"stock":3,"category":"Peripherals"}
+                    {"name":"Broken",
+
+                    {"name":"Gaming Mouse","description":"Mouse","brand":"Razer","price":"49","category":"Peripherals"}
+                    """;
+
+            ProductImportReportDto report = productImportService.importProducts(stream(ndjson), ProductFileFormat.NDJSON);
+
+            assertEquals(4, report.getRows());
+            assertEquals(2, report.getImported());
+            assertEquals(1, report.getFailed());
+            assertEquals(2, report.getErrors().getFirst().row());
+            assertEquals(List.of("Wireless Mouse", "Gaming Mouse"), inserted().stream().map(Product::getName).toList());
+        }
+    }
+
+    @Nested
+    @DisplayName("Batch outcome tests")
+    class BatchOutcomeTests {
+
+        private final String csv = """
+                name,description,brand,price,stock,category
+                Wireless Mouse,Mouse,Logitech,25,3,Peripherals
+                Gaming Mouse,Mouse,Razer,49,0,Peripherals
+                Office Mouse,Mouse,HP,15,9,Peripherals
+                """;
+
+        @Test
+        void shouldPublishOneSavedEventPerBatch() {
+            productImportService.importProducts(stream(csv), ProductFileFormat.CSV);
+
+            ArgumentCaptor<ProductsSavedEvent> events = ArgumentCaptor.forClass(ProductsSavedEvent.class);
+            verify(eventPublisher, times(2)).publishEvent(events.capture());
+            assertEquals(List.of(2, 1), events.getAllValues().stream().map(event -> event.products().size()).toList());
+        }
+
+        @Test
+        void shouldReportRowsOfRejectedBatchAndContinue() {
+            doThrow(new DataIntegrityViolationException("value too long"))
+                    .doNothing()
+                    .when(productBatchWriter).insert(anyList());
+
+            ProductImportReportDto report = productImportService.importProducts(stream(csv), ProductFileFormat.CSV);
+
+            assertEquals(1, report.getImported());
+            assertEquals(2, report.getFailed());
+            assertEquals(List.of(1L, 2L), report.getErrors().stream().map(ProductImportReportDto.Error::row).toList());
+            verify(eventPublisher, times(1)).publishEvent(any(ProductsSavedEvent.class));
+        }
+
+        @Test
+        void shouldCapReportedErrors() {
+            ReflectionTestUtils.setField(productImportService, "maxReportedErrors", 1);
+            String invalid = """
+                    name,description,brand,price,stock,category
+                    ,,,,,
+                    ,,,,,
+                    """;
+
+            ProductImportReportDto report = productImportService.importProducts(stream(invalid), ProductFileFormat.CSV);
+
+            assertEquals(2, report.getFailed());
+            assertEquals(1, report.getErrors().size());
+            assertTrue(report.isErrorsTruncated());
+            verifyNoInteractions(productBatchWriter);
+        }
+    }
+}
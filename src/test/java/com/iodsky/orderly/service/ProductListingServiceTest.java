@@ -0,0 +1,276 @@
+package com.iodsky.orderly.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.iodsky.orderly.cache.ProductListingCache;
+import com.iodsky.orderly.dto.PaginationDto;
+import com.iodsky.orderly.dto.ProductDto;
+import com.iodsky.orderly.event.CategoryRenamedEvent;
+import com.iodsky.orderly.event.ProductDeletedEvent;
+import com.iodsky.orderly.event.ProductImagesChangedEvent;
+import com.iodsky.orderly.event.ProductSavedEvent;
+import com.iodsky.orderly.model.Product;
+import com.iodsky.orderly.request.CountStrategy;
+import com.iodsky.orderly.request.ProductFilter;
+import com.iodsky.orderly.request.ProductSort;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.SliceImpl;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ProductListingServiceTest {
+
+    @Mock
+    private ProductService productService;
+    @Mock
+    private ProductFacetService productFacetService;
+    @Mock
+    private ProductCountService productCountService;
+    @Spy
+    private ProductListingCache productListingCache =
+            new ProductListingCache(1024 * 1024, Duration.ofMinutes(1), new SimpleMeterRegistry());
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
+
+    @InjectMocks
+    private ProductListingService productListingService;
+
+    private ProductFilter filter;
+    private ProductDto product;
+
+    @BeforeEach
+    void setup() {
+        filter = ProductFilter.builder().category("Peripherals").minPrice(BigDecimal.TEN).build();
+        product = ProductDto.builder()
+                .id(UUID.randomUUID())
+                .name("Wireless Mouse")
+                .category("Peripherals")
+                .price(BigDecimal.valueOf(25))
+                .images(List.of())
+                .build();
+
+        lenient().when(productService.getProducts(any(ProductFilter.class), anyInt(), anyInt(), any(ProductSort.class)))
+                .thenAnswer(inv -> new PageImpl<>(List.of(product), PageRequest.of(0, 10), 1));
+        lenient().when(productFacetService.getFacets(any(ProductFilter.class)))
+                .thenReturn(Map.of("brand", Map.of("Logitech", 1L)));
+    }
+
+    private byte[] json(ProductFilter filter, int page, int limit, ProductSort sort, boolean facets) {
+        return productListingService.getProductsJson(filter, page, limit, sort, facets, CountStrategy.EXACT);
+    }
+
+    private byte[] json(ProductFilter filter, int page, int limit, boolean facets) {
+        return json(filter, page, limit, ProductSort.NEWEST, facets);
+    }
+
+    private PaginationDto<ProductDto> listing(int page, CountStrategy count) {
+        return productListingService.getProducts(filter, page, 10, ProductSort.NEWEST, false, count);
+    }
+
+    private void verifyPagesLoaded(int times) {
+        verify(productService, times(times))
+                .getProducts(any(ProductFilter.class), anyInt(), anyInt(), any(ProductSort.class));
+    }
+
+    @Nested
+    @DisplayName("Get products json tests")
+    class GetProductsJsonTests {
+
+        @Test
+        void shouldSerializePageWithFacets() throws Exception {
+            JsonNode body = objectMapper.readTree(json(filter, 0, 10, true));
+
+            assertEquals("Wireless Mouse", body.at("/content/0/name").asText());
+            assertEquals(1, body.at("/totalElements").asInt());
+            assertEquals(1, body.at("/facets/brand/Logitech").asInt());
+        }
+
+        @Test
+        void shouldOmitFacetsWhenNotRequested() throws Exception {
+            JsonNode body = objectMapper.readTree(json(filter, 0, 10, false));
+
+            assertFalse(body.has("facets"));
+            verifyNoInteractions(productFacetService);
+        }
+
+        @Test
+        void shouldServeRepeatedRequestFromCache() throws Exception {
+            byte[] first = json(filter, 0, 10, true);
+            byte[] second = json(filter, 0, 10, true);
+
+            assertSame(first, second);
+            verifyPagesLoaded(1);
+            verify(objectMapper, times(1)).writeValueAsBytes(any());
+        }
+
+        @Test
+        void shouldShareEntryBetweenEquivalentFilters() {
+            ProductFilter equivalent = ProductFilter.builder()
+                    .category("Peripherals")
+                    .brand(" ")
+                    .minPrice(new BigDecimal("10.00"))
+                    .build();
+
+            json(filter, 0, 10, true);
+            json(equivalent, 0, 10, true);
+
+            verifyPagesLoaded(1);
+        }
+
+        @Test
+        void shouldKeepDifferentPagesApart() {
+            json(filter, 0, 10, true);
+            json(filter, 1, 10, true);
+            json(filter, 0, 20, true);
+
+            verifyPagesLoaded(3);
+        }
+
+        @Test
+        void shouldKeepSortOrdersApart() {
+            json(filter, 0, 10, ProductSort.NEWEST, true);
+            json(filter, 0, 10, ProductSort.PRICE_ASC, true);
+
+            verify(productService).getProducts(filter, 0, 10, ProductSort.NEWEST);
+            verify(productService).getProducts(filter, 0, 10, ProductSort.PRICE_ASC);
+        }
+
+        @Test
+        void shouldKeepCountStrategiesApart() {
+            when(productService.getProductSlice(any(ProductFilter.class), anyInt(), anyInt(), any(ProductSort.class)))
+                    .thenReturn(new SliceImpl<>(List.of(product), PageRequest.of(0, 10), false));
+
+            json(filter, 0, 10, false);
+            productListingService.getProductsJson(filter, 0, 10, ProductSort.NEWEST, false, CountStrategy.ESTIMATED);
+
+            verifyPagesLoaded(1);
+            verify(productService).getProductSlice(filter, 0, 10, ProductSort.NEWEST);
+        }
+    }
+
+    @Nested
+    @DisplayName("Count strategy tests")
+    class CountStrategyTests {
+
+        private List<ProductDto> products(int count) {
+            return Collections.nCopies(count, product);
+        }
+
+        @Test
+        void shouldReportExactTotalByDefault() {
+            assertTrue(listing(0, CountStrategy.EXACT).isTotalExact());
+            verifyNoInteractions(productCountService);
+        }
+
+        @Test
+        void shouldDeriveTotalFromLastPageWithoutCounting() {
+            when(productService.getProductSlice(filter, 2, 10, ProductSort.NEWEST))
+                    .thenReturn(new SliceImpl<>(products(4), PageRequest.of(2, 10), false));
+
+            PaginationDto<ProductDto> response = listing(2, CountStrategy.ESTIMATED);
+
+            assertEquals(24, response.getTotalElements());
+            assertTrue(response.isTotalExact());
+            assertTrue(response.isLast());
+            verifyNoInteractions(productCountService);
+            verifyPagesLoaded(0);
+        }
+
+        @Test
+        void shouldUseEstimateWhenMoreRowsFollow() {
+            when(productService.getProductSlice(filter, 0, 10, ProductSort.NEWEST))
+                    .thenReturn(new SliceImpl<>(products(10), PageRequest.of(0, 10), true));
+            when(productCountService.count(filter, CountStrategy.ESTIMATED))
+                    .thenReturn(new ProductCountService.Total(5000, false));
+
+            PaginationDto<ProductDto> response = listing(0, CountStrategy.ESTIMATED);
+
+            assertEquals(5000, response.getTotalElements());
+            assertFalse(response.isTotalExact());
+            assertFalse(response.isLast());
+        }
+
+        @Test
+        void shouldNotReportTotalBelowRowsAlreadySeen() {
+            when(productService.getProductSlice(filter, 3, 10, ProductSort.NEWEST))
+                    .thenReturn(new SliceImpl<>(products(10), PageRequest.of(3, 10), true));
+            when(productCountService.count(filter, CountStrategy.ESTIMATED))
+                    .thenReturn(new ProductCountService.Total(12, false));
+
+            PaginationDto<ProductDto> response = listing(3, CountStrategy.ESTIMATED);
+
+            assertEquals(41, response.getTotalElements());
+            assertFalse(response.isLast());
+        }
+    }
+
+    @Nested
+    @DisplayName("Catalog version tests")
+    class CatalogVersionTests {
+
+        private void assertReloadedAfter(Runnable change) {
+            json(filter, 0, 10, true);
+            change.run();
+            json(filter, 0, 10, true);
+
+            verifyPagesLoaded(2);
+        }
+
+        @Test
+        void shouldReloadAfterProductSaved() {
+            assertReloadedAfter(() -> productListingCache.onProductSaved(
+                    new ProductSavedEvent(Product.builder().id(product.getId()).build())));
+        }
+
+        @Test
+        void shouldReloadAfterProductDeleted() {
+            assertReloadedAfter(() -> productListingCache.onProductDeleted(new ProductDeletedEvent(product.getId())));
+        }
+
+        @Test
+        void shouldReloadAfterImagesChanged() {
+            assertReloadedAfter(() -> productListingCache.onProductImagesChanged(
+                    new ProductImagesChangedEvent(product.getId())));
+        }
+
+        @Test
+        void shouldReloadAfterCategoryRenamed() {
+            assertReloadedAfter(() -> productListingCache.onCategoryRenamed(
+                    new CategoryRenamedEvent("Peripherals", "Accessories")));
+        }
+
+        @Test
+        void shouldNotServeResponseComputedBeforeChangeCommitted() {
+            ProductListingCache.Key staleKey =
+                    productListingCache.key(filter, 0, 10, ProductSort.NEWEST, true, CountStrategy.EXACT);
+            productListingCache.onProductSaved(new ProductSavedEvent(Product.builder().id(product.getId()).build()));
+            productListingCache.get(staleKey, () -> new byte[]{'x'});
+
+            byte[] body = json(filter, 0, 10, true);
+
+            assertNotEquals('x', body[0]);
+        }
+    }
+}
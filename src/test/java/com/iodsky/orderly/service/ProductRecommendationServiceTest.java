@@ -0,0 +1,177 @@
+package com.iodsky.orderly.service;
+
+import com.iodsky.orderly.event.OrderPlacedEvent;
+import com.iodsky.orderly.event.ProductDeletedEvent;
+import com.iodsky.orderly.exception.ResourceNotFoundException;
+import com.iodsky.orderly.model.Product;
+import com.iodsky.orderly.repository.OrderRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ProductRecommendationServiceTest {
+
+    private static final int NEIGHBOURS = 3;
+    private static final int MAX_ITEMS_PER_ORDER = 4;
+
+    @Mock
+    private ProductService productService;
+    @Mock
+    private OrderRepository orderRepository;
+
+    private ProductRecommendationService productRecommendationService;
+
+    private UUID mouse;
+    private UUID mousePad;
+    private UUID keyboard;
+    private UUID monitor;
+
+    @BeforeEach
+    void setup() {
+        productRecommendationService = new ProductRecommendationService(
+                productService, orderRepository, NEIGHBOURS, MAX_ITEMS_PER_ORDER);
+
+        mouse = UUID.randomUUID();
+        mousePad = UUID.randomUUID();
+        keyboard = UUID.randomUUID();
+        monitor = UUID.randomUUID();
+
+        lenient().when(productService.getProductsWithDetails(anyList())).thenAnswer(inv -> inv.<List<UUID>>getArgument(0)
+                .stream().map(id -> Product.builder().id(id).build()).toList());
+    }
+
+    private void order(UUID... products) {
+        productRecommendationService.onOrderPlaced(
+                new OrderPlacedEvent(UUID.randomUUID(), UUID.randomUUID(), List.of(products)));
+    }
+
+    private List<UUID> related(UUID product, int limit) {
+        return productRecommendationService.getRelatedProducts(product, limit).stream().map(Product::getId).toList();
+    }
+
+    private OrderRepository.OrderProductView row(UUID orderId, UUID productId) {
+        return new OrderRepository.OrderProductView() {
+            public UUID getOrderId() {
+                return orderId;
+            }
+
+            public UUID getProductId() {
+                return productId;
+            }
+        };
+    }
+
+    @Nested
+    @DisplayName("Related products tests")
+    class RelatedProductsTests {
+
+        @Test
+        void shouldRankByTimesOrderedTogether() {
+            order(mouse, mousePad, keyboard);
+            order(mouse, mousePad);
+            order(mouse, keyboard, mousePad);
+            order(mouse, monitor);
+
+            assertEquals(List.of(mousePad, keyboard, monitor), related(mouse, 10));
+            assertEquals(List.of(mousePad), related(mouse, 1));
+            assertEquals(List.of(mouse, keyboard), related(mousePad, 10));
+        }
+
+        @Test
+        void shouldIgnoreSingleItemOrdersAndDuplicateLines() {
+            order(mouse);
+            order(mouse, mouse, keyboard);
+
+            assertEquals(List.of(keyboard), related(mouse, 10));
+            assertTrue(related(monitor, 10).isEmpty());
+        }
+
+        @Test
+        void shouldKeepOnlyStrongestNeighbours() {
+            order(mouse, mousePad);
+            order(mouse, mousePad);
+            order(mouse, keyboard);
+            order(mouse, monitor);
+            UUID cable = UUID.randomUUID();
+            order(mouse, cable);
+
+            List<UUID> related = related(mouse, 10);
+
+            assertEquals(NEIGHBOURS, related.size());
+            assertEquals(mousePad, related.getFirst());
+            assertEquals(cable, related.get(1));
+        }
+
+        @Test
+        void shouldSkipDeletedProducts() {
+            order(mouse, mousePad, keyboard);
+            productRecommendationService.onProductDeleted(new ProductDeletedEvent(mousePad));
+
+            assertEquals(List.of(keyboard), related(mouse, 10));
+        }
+
+        @Test
+        void shouldLoadNeighboursInOneCall() {
+            order(mouse, mousePad, keyboard, monitor);
+
+            related(mouse, 10);
+
+            verify(productService).getProduct(mouse);
+            verify(productService, times(1)).getProductsWithDetails(anyList());
+            verifyNoMoreInteractions(productService);
+        }
+
+        @Test
+        void shouldRejectUnknownProduct() {
+            when(productService.getProduct(monitor)).thenThrow(new ResourceNotFoundException("Product not found"));
+
+            assertThrows(ResourceNotFoundException.class, () -> related(monitor, 10));
+        }
+    }
+
+    @Nested
+    @DisplayName("Load model tests")
+    class LoadModelTests {
+
+        @Test
+        void shouldGroupConsecutiveRowsByOrder() {
+            UUID first = UUID.randomUUID();
+            UUID second = UUID.randomUUID();
+            when(orderRepository.streamOrderProducts()).thenReturn(Stream.of(
+                    row(first, mouse), row(first, mousePad),
+                    row(second, keyboard), row(second, monitor)));
+
+            productRecommendationService.loadModel();
+
+            assertEquals(List.of(mousePad), related(mouse, 10));
+            assertEquals(List.of(monitor), related(keyboard, 10));
+        }
+
+        @Test
+        void shouldCutVeryLargeOrders() {
+            UUID orderId = UUID.randomUUID();
+            List<UUID> products = IntStream.range(0, MAX_ITEMS_PER_ORDER + 2).mapToObj(i -> UUID.randomUUID()).toList();
+            when(orderRepository.streamOrderProducts())
+                    .thenReturn(products.stream().map(product -> row(orderId, product)));
+
+            productRecommendationService.loadModel();
+
+            assertEquals(MAX_ITEMS_PER_ORDER - 1, related(products.getFirst(), 10).size());
+            assertTrue(related(products.getLast(), 10).isEmpty());
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.iodsky.orderly.service;
+
+import com.iodsky.orderly.dto.ProductSearchHitDto;
+import com.iodsky.orderly.event.ProductDeletedEvent;
+import com.iodsky.orderly.event.ProductSavedEvent;
+import com.iodsky.orderly.model.Category;
+import com.iodsky.orderly.model.Money;
+import com.iodsky.orderly.model.Product;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ProductSearchServiceTest {
+
+    @Mock
+    private ProductService productService;
+
+    @InjectMocks
+    private ProductSearchService productSearchService;
+
+    private Product mouse;
+    private Product keyboard;
+    private Product wiredMouse;
+
+    @BeforeEach
+    void setup() {
+        Category peripherals = Category.builder().name("Peripherals").build();
+
+        mouse = product("Wireless Mouse", "Logitech", "Ergonomic wireless mouse with USB receiver", peripherals);
+        keyboard = product("Wireless Keyboard", "Logitech", "Slim keyboard, Bluetooth and USB", peripherals);
+        wiredMouse = product("Gaming Mouse", "Razer", "Wired mouse for gaming", peripherals);
+
+        List.of(mouse, keyboard, wiredMouse)
+                .forEach(p -> productSearchService.onProductSaved(new ProductSavedEvent(p)));
+    }
+
+    private Product product(String name, String brand, String description, Category category) {
+        return Product.builder()
+                .id(UUID.randomUUID())
+                .name(name)
+                .brand(brand)
+                .description(description)
+                .category(category)
+                .price(Money.of(BigDecimal.valueOf(25)))
+                .stock(3)
+                .build();
+    }
+
+    private List<UUID> ids(List<ProductSearchHitDto> hits) {
+        return hits.stream().map(ProductSearchHitDto::getId).toList();
+    }
+
+    @Nested
+    @DisplayName("Search tests")
+    class SearchTests {
+
+        @Test
+        void shouldRankDocumentsMatchingAllTermsFirst() {
+            List<ProductSearchHitDto> hits = productSearchService.search("wireless mouse", 10);
+
+            assertEquals(3, hits.size());
+            assertEquals(mouse.getId(), hits.getFirst().getId());
+            assertTrue(hits.get(0).getScore() > hits.get(1).getScore());
+        }
+
+        @Test
+        void shouldNormalizeCaseDiacriticsAndPlurals() {
+            List<ProductSearchHitDto> hits = productSearchService.search("MÍCE? no, Keyboards!", 10);
+
+            assertEquals(List.of(keyboard.getId()), ids(hits));
+        }
+
+        @Test
+        void shouldMatchOnBrand() {
+            assertEquals(List.of(wiredMouse.getId()), ids(productSearchService.search("razer", 10)));
+        }
+
+        @Test
+        void shouldLimitNumberOfHits() {
+            assertEquals(1, productSearchService.search("mouse", 1).size());
+        }
+
+        @Test
+        void shouldReturnNothingForUnknownTerms() {
+            assertTrue(productSearchService.search("monitor", 10).isEmpty());
+            assertTrue(productSearchService.search("  ", 10).isEmpty());
+        }
+    }
+
+    @Nested
+    @DisplayName("Incremental update tests")
+    class IncrementalUpdateTests {
+
+        @Test
+        void shouldReindexUpdatedProduct() {
+            keyboard.setName("Mechanical Keyboard");
+            keyboard.setDescription("Clicky switches");
+            productSearchService.onProductSaved(new ProductSavedEvent(keyboard));
+
+            assertFalse(ids(productSearchService.search("wireless", 10)).contains(keyboard.getId()));
+            assertEquals(List.of(keyboard.getId()), ids(productSearchService.search("mechanical", 10)));
+        }
+
+        @Test
+        void shouldReindexRenameWithCollidingHash() {
+            Product first = product("Aa", "Acme", "Gadget", null);
+            Product renamed = first.toBuilder().name("BB").build();
+            productSearchService.onProductSaved(new ProductSavedEvent(first));
+
+            productSearchService.onProductSaved(new ProductSavedEvent(renamed));
+
+            assertTrue(productSearchService.search("aa", 10).isEmpty());
+            assertEquals(List.of(first.getId()), ids(productSearchService.search("bb", 10)));
+        }
+
+        @Test
+        void shouldKeepPostingsConsistentWhenDocumentsLeaveMidList() {
+            productSearchService.onProductDeleted(new ProductDeletedEvent(mouse.getId()));
+            keyboard.setDescription("Slim keyboard");
+            productSearchService.onProductSaved(new ProductSavedEvent(keyboard));
+            productSearchService.onProductDeleted(new ProductDeletedEvent(wiredMouse.getId()));
+
+            assertEquals(List.of(keyboard.getId()), ids(productSearchService.search("wireless logitech", 10)));
+            assertTrue(productSearchService.search("usb", 10).isEmpty());
+            assertTrue(productSearchService.search("mouse", 10).isEmpty());
+        }
+
+        @Test
+        void shouldRefreshStoredFieldsOnStockChange() {
+            mouse.setStock(0);
+            productSearchService.onProductSaved(new ProductSavedEvent(mouse));
+
+            assertEquals(0, productSearchService.search("ergonomic", 10).getFirst().getStock());
+        }
+
+        @Test
+        void shouldRemoveDeletedProduct() {
+            productSearchService.onProductDeleted(new ProductDeletedEvent(wiredMouse.getId()));
+
+            assertTrue(productSearchService.search("razer", 10).isEmpty());
+            assertEquals(2, productSearchService.search("mouse wireless", 10).size());
+        }
+    }
+
+    @Nested
+    @DisplayName("Load index tests")
+    class LoadIndexTests {
+
+        @Test
+        void shouldIndexEveryBatchFromCatalog() {
+            Product monitor = product("Curved Monitor", "Dell", "27 inch display", null);
+
+            doAnswer(inv -> {
+                Consumer<List<Product>> consumer = inv.getArgument(1);
+                consumer.accept(List.of(monitor));
+                return null;
+            }).when(productService).forEachProduct(anyInt(), any());
+
+            productSearchService.loadIndex();
+
+            assertEquals(List.of(monitor.getId()), ids(productSearchService.search("monitor", 10)));
+            verify(productService).forEachProduct(anyInt(), any());
+        }
+    }
+}
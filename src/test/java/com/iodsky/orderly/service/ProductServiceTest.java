@@ -1,34 +1,72 @@
 package com.iodsky.orderly.service;
 
+import com.iodsky.orderly.cache.ProductCache;
+import com.iodsky.orderly.dto.ProductCursor;
+import com.iodsky.orderly.dto.ProductDto;
+import com.iodsky.orderly.dto.ResourceVersion;
 import com.iodsky.orderly.dto.mapper.ProductMapper;
+import com.iodsky.orderly.event.ProductDeletedEvent;
+import com.iodsky.orderly.event.ProductImagesChangedEvent;
+import com.iodsky.orderly.event.ProductSavedEvent;
+import com.iodsky.orderly.exception.InvalidCursorException;
+import com.iodsky.orderly.exception.InvalidQuantityException;
 import com.iodsky.orderly.exception.ProductOutOfStockException;
 import com.iodsky.orderly.exception.ResourceInUseException;
 import com.iodsky.orderly.exception.ResourceNotFoundException;
 import com.iodsky.orderly.model.Category;
+import com.iodsky.orderly.model.Money;
 import com.iodsky.orderly.model.Product;
+import com.iodsky.orderly.repository.ProductBatchWriter;
 import com.iodsky.orderly.repository.ProductRepository;
+import com.iodsky.orderly.request.ProductFilter;
+import com.iodsky.orderly.request.ProductSort;
 import com.iodsky.orderly.request.ProductRequest;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatchers;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 
 import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -38,14 +76,21 @@ class ProductServiceTest {
     @Mock
     private ProductRepository productRepository;
     @Mock
+    private ProductBatchWriter productBatchWriter;
+    @Mock
     private CategoryService categoryService;
     @Mock
     private ProductMapper productMapper;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+    @Spy
+    private ProductCache productCache = new ProductCache(100, Duration.ofMinutes(1), new SimpleMeterRegistry());
 
     @InjectMocks
     private ProductService productService; // Service to test
 
     private Product existingProduct;
+    private ProductDto existingDto;
     private Category testCategory;
     private ProductRequest newProduct;
     private Category newCategory;
@@ -69,10 +114,18 @@ class ProductServiceTest {
                 .brand("Test Brand")
                 .description("Test Description")
                 .category(testCategory)
-                .price(BigDecimal.valueOf(100))
+                .price(Money.of(BigDecimal.valueOf(100)))
                 .stock(5)
                 .build();
 
+        this.existingDto = ProductDto
+                .builder()
+                .id(randId)
+                .name(existingProduct.getName())
+                .category(testCategory.getName())
+                .images(List.of())
+                .build();
+
         this.newProduct = ProductRequest
                 .builder()
                 .name("New Product")
@@ -124,6 +177,7 @@ class ProductServiceTest {
             verify(productRepository).save(existingProduct);
 
             verify(productRepository).save(argThat(p -> p.getCategory().getName().equals(testCategory.getName())));
+            verify(eventPublisher).publishEvent(new ProductSavedEvent(existingProduct));
         }
 
         @Test
@@ -151,19 +205,19 @@ class ProductServiceTest {
     class findProductTest {
         @Test
         void shouldReturnProductIfFound() {
-            when(productRepository.findById(randId)).thenReturn(Optional.of(existingProduct));
+            when(productRepository.findWithDetailsById(randId)).thenReturn(Optional.of(existingProduct));
 
             final Product result = productService.getProduct(randId);
 
             assertNotNull(result);
             assertEquals(existingProduct, result);
 
-            verify(productRepository).findById(randId);
+            verify(productRepository).findWithDetailsById(randId);
         }
 
         @Test
         void shouldThrowExceptionIfProductNotFound() {
-            when(productRepository.findById(randId)).thenReturn(Optional.empty());
+            when(productRepository.findWithDetailsById(randId)).thenReturn(Optional.empty());
 
             ResourceNotFoundException ex = assertThrows(
                     ResourceNotFoundException.class,
@@ -171,9 +225,131 @@ class ProductServiceTest {
             );
 
             assertTrue(ex.getMessage().contains(randId.toString()));
-            verify(productRepository).findById(randId);
+            verify(productRepository).findWithDetailsById(randId);
         }
 
+        @Test
+        void shouldServeRepeatedLookupsFromCache() {
+            when(productRepository.findWithDetailsById(randId)).thenReturn(Optional.of(existingProduct));
+
+            productService.getProduct(randId);
+            Product result = productService.getProduct(randId);
+
+            assertEquals(existingProduct, result);
+            verify(productRepository, times(1)).findWithDetailsById(randId);
+        }
+
+        @Test
+        void shouldReloadAfterProductChangeIsCommitted() {
+            when(productRepository.findWithDetailsById(randId)).thenReturn(Optional.of(existingProduct));
+
+            productService.getProduct(randId);
+            productCache.onProductSaved(new ProductSavedEvent(existingProduct));
+            productService.getProduct(randId);
+
+            verify(productRepository, times(2)).findWithDetailsById(randId);
+        }
+
+        @Test
+        void shouldNotCacheMissingProduct() {
+            when(productRepository.findWithDetailsById(randId)).thenReturn(Optional.empty());
+
+            assertThrows(ResourceNotFoundException.class, () -> productService.getProduct(randId));
+            assertThrows(ResourceNotFoundException.class, () -> productService.getProduct(randId));
+
+            verify(productRepository, times(2)).findWithDetailsById(randId);
+        }
+
+        @Test
+        void shouldLoadOnlyUncachedProductsInOneQueryKeepingOrder() {
+            Product other = Product.builder().id(UUID.randomUUID()).name("Other").build();
+            UUID missing = UUID.randomUUID();
+            when(productRepository.findWithDetailsById(randId)).thenReturn(Optional.of(existingProduct));
+            when(productRepository.findWithDetailsByIdIn(Set.of(other.getId(), missing))).thenReturn(List.of(other));
+            productService.getProduct(randId);
+
+            List<Product> result = productService.getProductsWithDetails(List.of(other.getId(), missing, randId));
+
+            assertEquals(List.of(other, existingProduct), result);
+            verify(productRepository, times(1)).findWithDetailsByIdIn(anyCollection());
+        }
+
+        @Test
+        void shouldLoadOnceForConcurrentMisses() throws Exception {
+            CountDownLatch loading = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            when(productRepository.findWithDetailsById(randId)).thenAnswer(inv -> {
+                loading.countDown();
+                release.await();
+                return Optional.of(existingProduct);
+            });
+
+            ExecutorService executor = Executors.newFixedThreadPool(8);
+            try {
+                List<Future<Product>> results = new ArrayList<>();
+                results.add(executor.submit(() -> productService.getProduct(randId)));
+                loading.await();
+                for (int i = 0; i < 7; i++) {
+                    results.add(executor.submit(() -> productService.getProduct(randId)));
+                }
+                release.countDown();
+
+                for (Future<Product> result : results) {
+                    assertEquals(existingProduct, result.get());
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+
+            verify(productRepository, times(1)).findWithDetailsById(randId);
+        }
+
+    }
+
+    @Nested
+    @DisplayName("Product version tests")
+    class productVersionTest {
+
+        @Test
+        void shouldCombineProductAndCategoryVersions() {
+            Date updatedAt = new Date(1_000);
+            Date categoryUpdatedAt = new Date(2_000);
+            ProductRepository.VersionView view = mock(ProductRepository.VersionView.class);
+            when(view.getVersion()).thenReturn(3L);
+            when(view.getCategoryVersion()).thenReturn(1L);
+            when(view.getUpdatedAt()).thenReturn(updatedAt);
+            when(view.getCategoryUpdatedAt()).thenReturn(categoryUpdatedAt);
+            when(productRepository.findVersionById(randId)).thenReturn(Optional.of(view));
+
+            ResourceVersion version = productService.getProductVersion(randId);
+
+            assertEquals("\"3.1\"", version.etag());
+            assertEquals(categoryUpdatedAt, version.lastModified());
+            verify(productRepository, never()).findWithDetailsById(any());
+        }
+
+        @Test
+        void shouldMatchVersionOfLoadedProduct() {
+            existingProduct.setVersion(3L);
+            testCategory.setVersion(1L);
+
+            assertEquals("\"3.1\"", ResourceVersion.of(existingProduct).etag());
+        }
+
+        @Test
+        void shouldThrowExceptionIfProductNotFound() {
+            when(productRepository.findVersionById(randId)).thenReturn(Optional.empty());
+
+            assertThrows(ResourceNotFoundException.class, () -> productService.getProductVersion(randId));
+        }
+
+        @Test
+        void shouldIncrementVersionAndPublishEventWhenImagesChange() {
+            productService.markImagesChanged(randId);
+
+            verify(productRepository).incrementVersion(randId);
+            verify(eventPublisher).publishEvent(new ProductImagesChangedEvent(randId));
+        }
     }
 
     @Nested
@@ -187,6 +363,7 @@ class ProductServiceTest {
 
             verify(productRepository).findById(randId);
             verify(productRepository).delete(existingProduct);
+            verify(eventPublisher).publishEvent(new ProductDeletedEvent(randId));
         }
 
         @Test
@@ -200,7 +377,7 @@ class ProductServiceTest {
 
             assertTrue(ex.getMessage().contains(randId.toString()));
             verify(productRepository).findById(randId);
-            verify(productRepository, never()).delete(any());
+            verify(productRepository, never()).delete(any(Product.class));
         }
 
         @Test
@@ -215,7 +392,8 @@ class ProductServiceTest {
 
             assertTrue(ex.getMessage().contains(randId.toString()));
             verify(productRepository).findById(randId);
-            verify(productRepository).delete(any());
+            verify(productRepository).delete(any(Product.class));
+            verifyNoInteractions(eventPublisher);
         }
 
     }
@@ -237,13 +415,14 @@ class ProductServiceTest {
             assertEquals(updatedProduct.getBrand(), updated.getBrand());
             assertEquals(updatedProduct.getDescription(), updated.getDescription());
             assertEquals(updatedProduct.getCategory(), updated.getCategory().getName());
-            assertEquals(updatedProduct.getPrice(), updated.getPrice());
+            assertEquals(Money.of(updatedProduct.getPrice()), updated.getPrice());
             assertEquals(updatedProduct.getStock(), updated.getStock());
 
 
             verify(productRepository).findById(randId);
             verify(categoryService).getOrCreateCategory(anyString());
             verify(productRepository).save(existingProduct);
+            verify(eventPublisher).publishEvent(new ProductSavedEvent(existingProduct));
         }
 
         @Test
@@ -266,101 +445,160 @@ class ProductServiceTest {
     @DisplayName("Get products test")
     class getProductsTest {
 
+        private final Pageable pageable = PageRequest.of(0, 10, Sort.by(Sort.Direction.DESC, "createdAt", "id"));
+
+        @Mock
+        private Root<Product> root;
+        @Mock
+        private Join<Object, Object> categoryJoin;
+        @Mock
+        private CriteriaQuery<?> query;
+        @Mock
+        private CriteriaBuilder cb;
+
+        private Predicate toPredicate(Specification<Product> spec) {
+            return spec.toPredicate(root, query, cb);
+        }
+
         @Test
-        void shouldReturnProductsByCategoryAndBrand() {
-            Pageable pageable = PageRequest.of(0, 10);
-            Page<Product> expectedPage = new PageImpl<>(List.of(existingProduct), pageable, 1);
+        void shouldReturnFilteredProductsWithSingleQuery() {
+            Page<ProductDto> expectedPage = new PageImpl<>(List.of(existingDto), pageable, 1);
+            ProductFilter filter = ProductFilter.builder().category("Test Category").brand("Test Brand").build();
 
-            when(productRepository.findByCategoryNameAndBrand("Test Category", "Test Brand", pageable))
+            when(productRepository.findDtoPage(ArgumentMatchers.<Specification<Product>>any(), eq(pageable)))
                     .thenReturn(expectedPage);
 
-            Page<Product> result = productService.getProducts(null, "Test Category", "Test Brand", 0, 10);
+            Page<ProductDto> result = productService.getProducts(filter, 0, 10, ProductSort.NEWEST);
 
             assertEquals(1, result.getTotalElements());
             assertEquals(1, result.getContent().size());
-            verify(productRepository).findByCategoryNameAndBrand("Test Category", "Test Brand", pageable);
+            verify(productRepository).findDtoPage(ArgumentMatchers.<Specification<Product>>any(), eq(pageable));
             verifyNoMoreInteractions(productRepository);
         }
 
         @Test
-        void shouldReturnProductsByBrandAndName() {
-            Pageable pageable = PageRequest.of(0, 10);
-            Page<Product> expectedPage = new PageImpl<>(List.of(existingProduct), pageable, 1);
+        void shouldCombineNameAndCategoryFilters() {
+            ProductFilter filter = ProductFilter.builder().name("Test Product").category("Test Category").build();
+            ArgumentCaptor<Specification<Product>> spec = ArgumentCaptor.captor();
 
-            when(productRepository.findByBrandAndName("Test Brand", "Test Product", pageable))
-                    .thenReturn(expectedPage);
+            when(productRepository.findDtoPage(spec.capture(), eq(pageable))).thenReturn(Page.empty(pageable));
+            doReturn(categoryJoin).when(root).join("category");
 
-            Page<Product> result = productService.getProducts("Test Product", null, "Test Brand", 0, 10);
+            productService.getProducts(filter, 0, 10, ProductSort.NEWEST);
+            toPredicate(spec.getValue());
 
-            assertEquals(1, result.getTotalElements());
-            assertEquals(1, result.getContent().size());
-            verify(productRepository).findByBrandAndName("Test Brand", "Test Product", pageable);
-            verifyNoMoreInteractions(productRepository);
+            verify(cb).equal(root.get("name"), "Test Product");
+            verify(cb).equal(categoryJoin.get("name"), "Test Category");
+            verify(cb, never()).greaterThan(any(), anyInt());
         }
 
         @Test
-        void shouldReturnProductsByCategory() {
-            Pageable pageable = PageRequest.of(0, 10);
-            Page<Product> expectedPage = new PageImpl<>(List.of(existingProduct), pageable, 1);
+        void shouldApplyPriceRangeAndStockFilters() {
+            ProductFilter filter = ProductFilter.builder()
+                    .minPrice(BigDecimal.TEN)
+                    .maxPrice(BigDecimal.valueOf(100))
+                    .inStock(true)
+                    .build();
+            ArgumentCaptor<Specification<Product>> spec = ArgumentCaptor.captor();
+
+            when(productRepository.findDtoPage(spec.capture(), eq(pageable))).thenReturn(Page.empty(pageable));
+
+            productService.getProducts(filter, 0, 10, ProductSort.NEWEST);
+            toPredicate(spec.getValue());
+
+            verify(cb).greaterThanOrEqualTo(root.<Money>get("price"), Money.of(BigDecimal.TEN));
+            verify(cb).lessThanOrEqualTo(root.<Money>get("price"), Money.of(100));
+            verify(cb).greaterThan(root.<Integer>get("stock"), 0);
+            verify(root, never()).join(anyString());
+        }
 
-            when(productRepository.findByCategoryName("Test Category", pageable))
-                    .thenReturn(expectedPage);
+        @Test
+        void shouldReturnAllProductsIfNoFiltersProvided() {
+            ArgumentCaptor<Specification<Product>> spec = ArgumentCaptor.captor();
 
-            Page<Product> result = productService.getProducts(null, "Test Category", null, 0, 10);
+            when(productRepository.findDtoPage(spec.capture(), eq(pageable))).thenReturn(Page.empty(pageable));
 
-            assertEquals(1, result.getTotalElements());
-            assertEquals(1, result.getContent().size());
-            verify(productRepository).findByCategoryName("Test Category", pageable);
-            verifyNoMoreInteractions(productRepository);
+            productService.getProducts(ProductFilter.builder().build(), 0, 10, ProductSort.NEWEST);
+            toPredicate(spec.getValue());
+
+            verify(cb).and();
+            verifyNoMoreInteractions(cb);
         }
+    }
+
+    @Nested
+    @DisplayName("Get products by cursor test")
+    class getProductsAfterTest {
+
+        private final Pageable pageable = PageRequest.of(0, 10, Sort.by("createdAt", "id"));
+        private final ProductFilter filter = ProductFilter.builder().brand("Test Brand").build();
 
         @Test
-        void shouldReturnProductsByBrand() {
-            Pageable pageable = PageRequest.of(0, 10);
-            Page<Product> expectedPage = new PageImpl<>(List.of(existingProduct), pageable, 1);
+        void shouldReturnFirstSliceIfCursorIsBlank() {
+            Slice<ProductDto> expectedSlice = new SliceImpl<>(List.of(existingDto), pageable, true);
 
-            when(productRepository.findByBrand("Test Brand", pageable))
-                    .thenReturn(expectedPage);
+            when(productRepository.findDtoSlice(ArgumentMatchers.<Specification<Product>>any(), eq(pageable)))
+                    .thenReturn(expectedSlice);
 
-            Page<Product> result = productService.getProducts(null, null, "Test Brand", 0, 10);
+            Slice<ProductDto> result = productService.getProductsAfter(filter, "", 10);
 
-            assertEquals(1, result.getTotalElements());
+            assertTrue(result.hasNext());
             assertEquals(1, result.getContent().size());
-            verify(productRepository).findByBrand("Test Brand", pageable);
+            verify(productRepository).findDtoSlice(ArgumentMatchers.<Specification<Product>>any(), eq(pageable));
             verifyNoMoreInteractions(productRepository);
         }
 
         @Test
-        void shouldReturnProductsByName() {
-            Pageable pageable = PageRequest.of(0, 10);
-            Page<Product> expectedPage = new PageImpl<>(List.of(existingProduct), pageable, 1);
+        void shouldSeekPastCursorPosition() {
+            String cursor = new ProductCursor(new Date(), randId).encode();
+            Slice<ProductDto> expectedSlice = new SliceImpl<>(List.of(existingDto), pageable, false);
 
-            when(productRepository.findByName("Test Product", pageable))
-                    .thenReturn(expectedPage);
+            when(productRepository.findDtoSlice(ArgumentMatchers.<Specification<Product>>any(), eq(pageable)))
+                    .thenReturn(expectedSlice);
 
-            Page<Product> result = productService.getProducts("Test Product", null, null, 0, 10);
+            Slice<ProductDto> result = productService.getProductsAfter(filter, cursor, 10);
 
-            assertEquals(1, result.getTotalElements());
-            assertEquals(1, result.getContent().size());
-            verify(productRepository).findByName("Test Product", pageable);
+            assertFalse(result.hasNext());
+            verify(productRepository).findDtoSlice(ArgumentMatchers.<Specification<Product>>any(), eq(pageable));
             verifyNoMoreInteractions(productRepository);
         }
 
         @Test
-        void shouldReturnAllProductsIfNoFiltersProvided() {
-            Pageable pageable = PageRequest.of(0, 10);
-            Page<Product> expectedPage = new PageImpl<>(List.of(existingProduct), pageable, 1);
+        void shouldThrowExceptionIfCursorIsMalformed() {
+            assertThrows(
+                    InvalidCursorException.class,
+                    () -> productService.getProductsAfter(filter, "not-a-cursor", 10)
+            );
 
-            when(productRepository.findAll(pageable))
-                    .thenReturn(expectedPage);
+            verifyNoInteractions(productRepository);
+        }
+    }
 
-            Page<Product> result = productService.getProducts(null, null, null, 0, 10);
+    @Nested
+    @DisplayName("Get product slice test")
+    class getProductSliceTest {
 
-            assertEquals(1, result.getTotalElements());
-            assertEquals(1, result.getContent().size());
-            verify(productRepository).findAll(pageable);
+        private final ProductFilter filter = ProductFilter.builder().brand("Test Brand").build();
+
+        @Test
+        void shouldFetchPageWithoutCounting() {
+            Pageable pageable = PageRequest.of(2, 10, Sort.by("price", "id"));
+            when(productRepository.findDtoSlice(ArgumentMatchers.<Specification<Product>>any(), eq(pageable)))
+                    .thenReturn(new SliceImpl<>(List.of(existingDto), pageable, false));
+
+            Slice<ProductDto> result = productService.getProductSlice(filter, 2, 10, ProductSort.PRICE_ASC);
+
+            assertEquals(1, result.getNumberOfElements());
+            verify(productRepository).findDtoSlice(ArgumentMatchers.<Specification<Product>>any(), eq(pageable));
             verifyNoMoreInteractions(productRepository);
         }
+
+        @Test
+        void shouldCountMatchingProducts() {
+            when(productRepository.count(ArgumentMatchers.<Specification<Product>>any())).thenReturn(7L);
+
+            assertEquals(7L, productService.countProducts(filter));
+        }
     }
 
     @Nested
@@ -384,44 +622,70 @@ class ProductServiceTest {
     @DisplayName("Decrease stock test")
     class decreaseStockTest {
 
-        @Test
-        void shouldDecreaseStockWhenSufficientQuantityAvailable() {
-            when(productRepository.findById(randId)).thenReturn(Optional.of(existingProduct));
-            when(productRepository.save(any(Product.class))).thenAnswer(inv -> inv.getArgument(0));
+        private UUID otherId;
 
-            Product updated = productService.decreaseStock(randId, 3);
+        @BeforeEach
+        void setup() {
+            otherId = UUID.randomUUID();
+        }
 
-            assertEquals(2, updated.getStock());
-            verify(productRepository).findById(randId);
-            verify(productRepository).save(existingProduct);
+        private ProductRepository.StockView stockView(Product product, int stock) {
+            ProductRepository.StockView view = mock(ProductRepository.StockView.class);
+            when(view.getProduct()).thenReturn(product);
+            when(view.getStock()).thenReturn(stock);
+            when(view.getVersion()).thenReturn(4L);
+            return view;
         }
 
         @Test
-        void shouldThrowExceptionWhenStockIsInsufficient() {
-            when(productRepository.findById(randId)).thenReturn(Optional.of(existingProduct));
+        void shouldDecreaseAllLinesInOneBatchInIdOrder() {
+            Map<UUID, Integer> quantities = Map.of(randId, 3, otherId, 1);
+            List<ProductBatchWriter.StockLine> lines = new TreeMap<>(quantities).entrySet().stream()
+                    .map(line -> new ProductBatchWriter.StockLine(line.getKey(), line.getValue()))
+                    .toList();
+            when(productBatchWriter.decreaseStock(lines)).thenReturn(new int[]{1, 1});
+            ProductRepository.StockView view = stockView(existingProduct, 2);
+            when(productRepository.findStockByIdIn(quantities.keySet())).thenReturn(List.of(view));
+
+            productService.decreaseStock(quantities);
+
+            verify(productBatchWriter).decreaseStock(lines);
+            verify(productRepository, never()).save(any());
+            ArgumentCaptor<ProductSavedEvent> event = ArgumentCaptor.forClass(ProductSavedEvent.class);
+            verify(eventPublisher).publishEvent(event.capture());
+            assertEquals(randId, event.getValue().product().getId());
+            assertEquals(2, event.getValue().product().getStock());
+            assertEquals(4L, event.getValue().product().getVersion());
+            assertEquals(5, existingProduct.getStock());
+        }
+
+        @Test
+        void shouldThrowExceptionWhenAnyLineHasInsufficientStock() {
+            Map<UUID, Integer> quantities = Map.of(randId, 6);
+            when(productBatchWriter.decreaseStock(List.of(new ProductBatchWriter.StockLine(randId, 6))))
+                    .thenReturn(new int[]{0});
 
             ProductOutOfStockException ex = assertThrows(
                     ProductOutOfStockException.class,
-                    () -> productService.decreaseStock(randId, 6)
+                    () -> productService.decreaseStock(quantities)
             );
 
             assertTrue(ex.getMessage().contains(randId.toString()));
-            verify(productRepository).findById(randId);
-            verify(productRepository, never()).save(any());
+            verify(productRepository, never()).findStockByIdIn(any());
+            verifyNoInteractions(eventPublisher);
         }
 
         @Test
-        void shouldThrowExceptionWhenProductNotFound() {
-            when(productRepository.findById(randId)).thenReturn(Optional.empty());
+        void shouldRejectNonPositiveQuantityBeforeWriting() {
+            Map<UUID, Integer> quantities = Map.of(randId, 2, otherId, -1);
 
-            ResourceNotFoundException ex = assertThrows(
-                    ResourceNotFoundException.class,
-                    () -> productService.decreaseStock(randId, 5)
+            InvalidQuantityException ex = assertThrows(
+                    InvalidQuantityException.class,
+                    () -> productService.decreaseStock(quantities)
             );
 
-            assertTrue(ex.getMessage().contains(randId.toString()));
-            verify(productRepository).findById(randId);
-            verify(productRepository, never()).save(any());
+            assertTrue(ex.getMessage().contains(otherId.toString()));
+            verifyNoInteractions(productBatchWriter, eventPublisher);
         }
     }
 
@@ -0,0 +1,174 @@
+package com.iodsky.orderly.service;
+
+import com.iodsky.orderly.dto.ProductSuggestionDto;
+import com.iodsky.orderly.event.ProductDeletedEvent;
+import com.iodsky.orderly.event.ProductSavedEvent;
+import com.iodsky.orderly.model.Money;
+import com.iodsky.orderly.model.Product;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ProductSuggestServiceTest {
+
+    @Mock
+    private ProductService productService;
+
+    @InjectMocks
+    private ProductSuggestService productSuggestService;
+
+    private Product mouse;
+    private Product keyboard;
+    private Product gamingMouse;
+
+    @BeforeEach
+    void setup() {
+        ReflectionTestUtils.setField(productSuggestService, "maxEntries", 100);
+        ReflectionTestUtils.setField(productSuggestService, "maxKeyLength", 64);
+
+        mouse = product("Wireless Mouse", "Logitech", 4);
+        keyboard = product("Wireless Keyboard", "Logitech", 20);
+        gamingMouse = product("Gaming Mouse", "Razer", 9);
+
+        List.of(mouse, keyboard, gamingMouse)
+                .forEach(p -> productSuggestService.onProductSaved(new ProductSavedEvent(p)));
+    }
+
+    private Product product(String name, String brand, int stock) {
+        return Product.builder()
+                .id(UUID.randomUUID())
+                .name(name)
+                .brand(brand)
+                .price(Money.of(BigDecimal.valueOf(25)))
+                .stock(stock)
+                .build();
+    }
+
+    private List<String> texts(List<ProductSuggestionDto> suggestions) {
+        return suggestions.stream().map(ProductSuggestionDto::getText).toList();
+    }
+
+    @Nested
+    @DisplayName("Suggest tests")
+    class SuggestTests {
+
+        @Test
+        void shouldRankCompletionsByStock() {
+            assertEquals(List.of("Wireless Keyboard", "Wireless Mouse"),
+                    texts(productSuggestService.suggest("wire", 10)));
+        }
+
+        @Test
+        void shouldWeighBrandsByTheirWholeCatalog() {
+            List<ProductSuggestionDto> suggestions = productSuggestService.suggest("LOGI", 10);
+
+            assertEquals(List.of("Logitech"), texts(suggestions));
+            assertEquals(5 + 21, suggestions.getFirst().getWeight());
+        }
+
+        @Test
+        void shouldNormalizeCaseDiacriticsAndSpacing() {
+            assertEquals(List.of("Wireless Keyboard"), texts(productSuggestService.suggest("  Wíreless   K", 10)));
+        }
+
+        @Test
+        void shouldLimitNumberOfSuggestions() {
+            assertEquals(List.of("Wireless Keyboard"), texts(productSuggestService.suggest("w", 1)));
+        }
+
+        @Test
+        void shouldReturnNothingForUnknownOrBlankPrefix() {
+            assertTrue(productSuggestService.suggest("monitor", 10).isEmpty());
+            assertTrue(productSuggestService.suggest(" ", 10).isEmpty());
+        }
+    }
+
+    @Nested
+    @DisplayName("Incremental update tests")
+    class IncrementalUpdateTests {
+
+        @Test
+        void shouldReorderWhenStockChanges() {
+            keyboard.setStock(0);
+            productSuggestService.onProductSaved(new ProductSavedEvent(keyboard));
+
+            assertEquals(List.of("Wireless Mouse", "Wireless Keyboard"),
+                    texts(productSuggestService.suggest("wire", 10)));
+            assertEquals(5 + 1, productSuggestService.suggest("logitech", 10).getFirst().getWeight());
+        }
+
+        @Test
+        void shouldReplaceRenamedProduct() {
+            mouse.setName("Trackball");
+            productSuggestService.onProductSaved(new ProductSavedEvent(mouse));
+
+            assertEquals(List.of("Wireless Keyboard"), texts(productSuggestService.suggest("wire", 10)));
+            assertEquals(List.of("Trackball"), texts(productSuggestService.suggest("track", 10)));
+        }
+
+        @Test
+        void shouldRemoveDeletedProductAndOrphanedBrand() {
+            productSuggestService.onProductDeleted(new ProductDeletedEvent(gamingMouse.getId()));
+
+            assertTrue(productSuggestService.suggest("gam", 10).isEmpty());
+            assertTrue(productSuggestService.suggest("raz", 10).isEmpty());
+        }
+
+        @Test
+        void shouldCountProductNamedAfterItsBrandOnce() {
+            Product razer = product("Razer", "Razer", 0);
+            productSuggestService.onProductSaved(new ProductSavedEvent(razer));
+            productSuggestService.onProductDeleted(new ProductDeletedEvent(gamingMouse.getId()));
+
+            List<ProductSuggestionDto> suggestions = productSuggestService.suggest("razer", 10);
+            assertEquals(List.of("Razer"), texts(suggestions));
+            assertEquals(1, suggestions.getFirst().getWeight());
+        }
+
+        @Test
+        void shouldStopAdmittingSuggestionsAtCapacity() {
+            ReflectionTestUtils.setField(productSuggestService, "maxEntries", 5);
+            productSuggestService.onProductSaved(new ProductSavedEvent(product("Curved Monitor", "Dell", 1)));
+
+            assertTrue(productSuggestService.suggest("curved", 10).isEmpty());
+        }
+    }
+
+    @Nested
+    @DisplayName("Load suggestions tests")
+    class LoadSuggestionsTests {
+
+        @Test
+        void shouldLoadEveryBatchFromCatalog() {
+            Product monitor = product("Curved Monitor", "Dell", 2);
+
+            doAnswer(inv -> {
+                Consumer<List<Product>> consumer = inv.getArgument(1);
+                consumer.accept(List.of(monitor));
+                return null;
+            }).when(productService).forEachProduct(anyInt(), any());
+
+            productSuggestService.loadSuggestions();
+
+            assertEquals(List.of("Curved Monitor"), texts(productSuggestService.suggest("cur", 10)));
+            verify(productService).forEachProduct(anyInt(), any());
+        }
+    }
+}